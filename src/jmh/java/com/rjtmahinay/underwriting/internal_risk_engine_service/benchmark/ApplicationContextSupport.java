@@ -0,0 +1,41 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.InternalRiskEngineServiceApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Starts the service without its web server, on the in-memory H2 database, for persistence benchmarks.
+ */
+public final class ApplicationContextSupport {
+
+    private ApplicationContextSupport() {
+    }
+
+    /**
+     * @param arguments extra {@code --name=value} arguments; like the logging overrides they take
+     *                  precedence over {@code application.yaml}
+     */
+    public static ConfigurableApplicationContext start(String... arguments) {
+        String[] args = new String[arguments.length + 3];
+        args[0] = "--logging.level.root=WARN";
+        args[1] = "--logging.level.com.rjtmahinay.underwriting=WARN";
+        args[2] = "--logging.level.io.r2dbc.h2=WARN";
+        System.arraycopy(arguments, 0, args, 3, arguments.length);
+        return new SpringApplicationBuilder(InternalRiskEngineServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+
+    /**
+     * Removes everything but the sample rows from {@code data.sql}, so iterations start from the same table size.
+     */
+    public static void resetAssessments(ConfigurableApplicationContext context) {
+        context.getBean(DatabaseClient.class)
+                .sql("DELETE FROM risk_assessments WHERE id > 5")
+                .then()
+                .block();
+    }
+}
@@ -0,0 +1,109 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.ScoreMemoizer;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.ScoringRuleSetProvider;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Shared fixtures for the JMH benchmarks.
+ */
+public final class BenchmarkSupport {
+
+    /**
+     * Which optional inputs are present, so that every null branch of the scoring rules gets measured.
+     */
+    public enum Profile {
+        FULL,
+        NO_COLLATERAL,
+        NO_CREDIT_SCORE
+    }
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Raises the root log level so that per-call logging does not dominate the measurement.
+     */
+    public static void quietLogging() {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+    }
+
+    /**
+     * A memoizer that always calls the scorer, so scoring benchmarks measure the arithmetic itself.
+     */
+    public static ScoreMemoizer unmemoized() {
+        RiskEngineProperties properties = new RiskEngineProperties();
+        properties.getScoring().getMemo().setEnabled(false);
+        return new ScoreMemoizer(properties, new SimpleMeterRegistry());
+    }
+
+    /**
+     * The scoring rules packaged with the application.
+     */
+    public static ScoringRuleSetProvider defaultRules() {
+        return new ScoringRuleSetProvider(new RiskEngineProperties(), new DefaultResourceLoader());
+    }
+
+    public static LoanApplication sampleApplication(LoanType loanType, Profile profile) {
+        boolean secured = profile != Profile.NO_COLLATERAL;
+        return LoanApplication.builder()
+                .id(1L)
+                .applicantName("John Doe")
+                .email("john.doe@email.com")
+                .age(35)
+                .annualIncome(new BigDecimal("75000.00"))
+                .loanAmount(new BigDecimal("250000.00"))
+                .loanType(loanType)
+                .loanTermMonths(360)
+                .creditScore(profile == Profile.NO_CREDIT_SCORE ? null : 720)
+                .employmentYears(5)
+                .monthlyDebtPayments(new BigDecimal("1200.00"))
+                .downPayment(new BigDecimal("50000.00"))
+                .hasCollateral(secured)
+                .collateralValue(secured ? new BigDecimal("300000.00") : null)
+                .build();
+    }
+
+    /**
+     * Reproducible mix of applications across loan types, bands and optional inputs.
+     */
+    public static List<LoanApplication> randomApplications(int count, long seed) {
+        Random random = new Random(seed);
+        List<LoanApplication> applications = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BigDecimal loanAmount = BigDecimal.valueOf(1_000_00L + random.nextInt(500_000_00), 2);
+            boolean secured = random.nextBoolean();
+            applications.add(LoanApplication.builder()
+                    .id((long) i + 1)
+                    .applicantName("Applicant " + i)
+                    .email("applicant" + i + "@email.com")
+                    .age(18 + random.nextInt(60))
+                    .annualIncome(BigDecimal.valueOf(20_000_00L + random.nextInt(300_000_00), 2))
+                    .loanAmount(loanAmount)
+                    .loanType(LoanType.values()[random.nextInt(LoanType.values().length)])
+                    .loanTermMonths(12 + random.nextInt(348))
+                    .creditScore(random.nextInt(10) == 0 ? null : 300 + random.nextInt(551))
+                    .employmentYears(random.nextInt(10) == 0 ? null : random.nextInt(15))
+                    .monthlyDebtPayments(BigDecimal.valueOf(random.nextInt(5_000_00), 2))
+                    .downPayment(BigDecimal.valueOf(random.nextInt(100_000_00), 2))
+                    .hasCollateral(secured)
+                    .collateralValue(secured ? loanAmount.multiply(BigDecimal.valueOf(50 + random.nextInt(150), 2))
+                            .setScale(2, RoundingMode.HALF_UP) : null)
+                    .build());
+        }
+        return applications;
+    }
+}
@@ -0,0 +1,84 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.BenchmarkSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of the request and response bodies, using the same
+ * {@link ObjectMapper} defaults that Spring Boot configures for WebFlux.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private LoanApplication loanApplication;
+    private RiskAssessment riskAssessment;
+    private byte[] loanApplicationJson;
+    private byte[] riskAssessmentJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        loanApplication = BenchmarkSupport.sampleApplication(LoanType.MORTGAGE, BenchmarkSupport.Profile.FULL);
+        riskAssessment = RiskAssessment.builder()
+                .id(1L)
+                .loanApplicationId(1L)
+                .riskScore(275)
+                .riskLevel(RiskLevel.LOW)
+                .approvalRecommendation(true)
+                .recommendedInterestRate(new BigDecimal("9.50"))
+                .debtToIncomeRatio(new BigDecimal("0.1920"))
+                .loanToValueRatio(new BigDecimal("1.0000"))
+                .creditScoreFactor(100)
+                .incomeFactor(75)
+                .employmentFactor(50)
+                .collateralFactor(150)
+                .loanTypeFactor(150)
+                .reasonCodes(AssessmentReasons.encode(ReasonCode.UNSECURED_LOAN.mask(), 0))
+                .createdAt(LocalDateTime.of(2025, 10, 21, 21, 23, 30))
+                .build();
+        loanApplicationJson = objectMapper.writeValueAsBytes(loanApplication);
+        riskAssessmentJson = objectMapper.writeValueAsBytes(riskAssessment);
+    }
+
+    @Benchmark
+    public byte[] serializeLoanApplication() throws IOException {
+        return objectMapper.writeValueAsBytes(loanApplication);
+    }
+
+    @Benchmark
+    public LoanApplication deserializeLoanApplication() throws IOException {
+        return objectMapper.readValue(loanApplicationJson, LoanApplication.class);
+    }
+
+    @Benchmark
+    public byte[] serializeRiskAssessment() throws IOException {
+        return objectMapper.writeValueAsBytes(riskAssessment);
+    }
+
+    @Benchmark
+    public RiskAssessment deserializeRiskAssessment() throws IOException {
+        return objectMapper.readValue(riskAssessmentJson, RiskAssessment.class);
+    }
+}
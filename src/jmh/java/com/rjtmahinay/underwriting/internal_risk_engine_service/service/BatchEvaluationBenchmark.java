@@ -0,0 +1,88 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.ApplicationContextSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.BenchmarkSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.BatchEvaluationResult;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second through {@code /batch-evaluate}'s service layer for 100k applications: the original
+ * score-then-save-each-row flow versus {@link BatchEvaluationService}. Both write to the in-memory H2
+ * database the service runs on; the table is reset after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@OperationsPerInvocation(BatchEvaluationBenchmark.APPLICATIONS)
+public class BatchEvaluationBenchmark {
+
+    static final int APPLICATIONS = 100_000;
+
+    private ConfigurableApplicationContext context;
+    private RiskScoringService riskScoringService;
+    private UnderwritingService underwritingService;
+    private BatchEvaluationService batchEvaluationService;
+    private List<LoanApplication> applications;
+
+    @Setup
+    public void setUp() {
+        context = ApplicationContextSupport.start();
+        riskScoringService = context.getBean(RiskScoringService.class);
+        underwritingService = context.getBean(UnderwritingService.class);
+        batchEvaluationService = context.getBean(BatchEvaluationService.class);
+        applications = BenchmarkSupport.randomApplications(APPLICATIONS, 42L);
+        for (LoanApplication application : applications) {
+            // risk_assessments.loan_application_id references the sample applications
+            application.setId(application.getId() % 5 + 1);
+            // The worst factors add up to 1025, which the risk_score CHECK constraint rejects
+            if (riskScoringService.calculateRiskAssessment(application).getRiskScore() > 1000) {
+                application.setEmploymentYears(5);
+            }
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void resetTable() {
+        ApplicationContextSupport.resetAssessments(context);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public RiskAssessment rowAtATime() {
+        return Flux.fromIterable(applications)
+                .map(riskScoringService::calculateRiskAssessment)
+                .flatMap(underwritingService::saveRiskAssessment)
+                .blockLast();
+    }
+
+    @Benchmark
+    public BatchEvaluationResult chunkedPipeline() {
+        return batchEvaluationService.evaluate(Flux.fromIterable(applications)).blockLast();
+    }
+}
@@ -0,0 +1,111 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.BenchmarkSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-application cost of scoring a large batch: one {@code LoanApplication} at a time through
+ * {@link RiskScoringService} versus the columnar scalar and vector implementations.
+ * <p>
+ * Setup fails if the columnar results differ from {@link RiskScoringService#calculateRiskAssessment},
+ * so every run also checks parity over the benchmark data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(ColumnarScoringBenchmark.BATCH_SIZE)
+public class ColumnarScoringBenchmark {
+
+    static final int BATCH_SIZE = 100_000;
+
+    private List<LoanApplication> applications;
+    private RiskScoringService bigDecimalScoring;
+    private RiskScoringService fixedPointScoring;
+    private ColumnarLoanBatch batch;
+    private ColumnarRiskScores scores;
+    private ColumnarRiskScorer scalarScorer;
+    private ColumnarRiskScorer vectorScorer;
+    private CompiledRuleSet rules;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        applications = BenchmarkSupport.randomApplications(BATCH_SIZE, 42L);
+        ScoringRuleSetProvider ruleSetProvider = BenchmarkSupport.defaultRules();
+        rules = ruleSetProvider.current();
+        bigDecimalScoring = new RiskScoringService(new RiskEngineProperties(), new FixedPointRiskScorer(),
+                BenchmarkSupport.unmemoized(), ruleSetProvider);
+        RiskEngineProperties fixedPoint = new RiskEngineProperties();
+        fixedPoint.getScoring().setEngine(RiskEngineProperties.ScoringEngine.FIXED_POINT);
+        fixedPointScoring = new RiskScoringService(fixedPoint, new FixedPointRiskScorer(),
+                BenchmarkSupport.unmemoized(), ruleSetProvider);
+        batch = ColumnarLoanBatch.of(applications);
+        scores = new ColumnarRiskScores(BATCH_SIZE);
+        scalarScorer = new ScalarColumnarRiskScorer();
+        vectorScorer = new VectorColumnarRiskScorer();
+
+        verifyParity(scalarScorer);
+        verifyParity(vectorScorer);
+    }
+
+    @Benchmark
+    public void perApplicationBigDecimal(Blackhole blackhole) {
+        for (LoanApplication application : applications) {
+            blackhole.consume(bigDecimalScoring.calculateRiskAssessment(application));
+        }
+    }
+
+    @Benchmark
+    public void perApplicationFixedPoint(Blackhole blackhole) {
+        for (LoanApplication application : applications) {
+            blackhole.consume(fixedPointScoring.calculateRiskAssessment(application));
+        }
+    }
+
+    @Benchmark
+    public ColumnarRiskScores columnarScalar() {
+        scalarScorer.score(batch, scores, rules);
+        return scores;
+    }
+
+    @Benchmark
+    public ColumnarRiskScores columnarVector() {
+        vectorScorer.score(batch, scores, rules);
+        return scores;
+    }
+
+    private void verifyParity(ColumnarRiskScorer scorer) {
+        ColumnarRiskScores result = new ColumnarRiskScores(BATCH_SIZE);
+        scorer.score(batch, result, rules);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            var expected = bigDecimalScoring.calculateRiskAssessment(applications.get(i));
+            if (expected.getRiskScore() != result.getRiskScores()[i]
+                    || expected.getIncomeFactor() != result.getIncomeFactors()[i]
+                    || expected.getCollateralFactor() != result.getCollateralFactors()[i]
+                    || expected.getApprovalRecommendation() != result.getApprovalRecommendations()[i]
+                    || expected.getDebtToIncomeRatio().unscaledValue().longValue() != result.getDebtToIncomeBasisPoints()[i]) {
+                throw new IllegalStateException(scorer.getClass().getSimpleName()
+                        + " differs from RiskScoringService for " + applications.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.ApplicationContextSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.BenchmarkSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the stage meters and trace of {@code /evaluate}: every stage with and without its
+ * {@link EvaluationMetrics} instrumentation, recording into the service's Prometheus registry. The
+ * applications cycle through every loan type and risk level, so recording hits all the tagged meters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluationMetricsBenchmark {
+
+    private static final int APPLICATIONS = 1024;
+
+    private ConfigurableApplicationContext context;
+    private EvaluationMetrics evaluationMetrics;
+    private RiskScoringService riskScoringService;
+    private ObjectMapper objectMapper;
+    private ObjectMapper timedObjectMapper;
+    private List<LoanApplication> applications;
+    private byte[][] applicationJson;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = ApplicationContextSupport.start();
+        evaluationMetrics = context.getBean(EvaluationMetrics.class);
+        riskScoringService = context.getBean(RiskScoringService.class);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        timedObjectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(evaluationMetrics.decodeTimingModule())
+                .build();
+        applications = BenchmarkSupport.randomApplications(APPLICATIONS, 42L);
+        applicationJson = new byte[APPLICATIONS][];
+        for (int i = 0; i < APPLICATIONS; i++) {
+            applicationJson[i] = objectMapper.writeValueAsBytes(applications.get(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public LoanApplication decode() throws IOException {
+        return objectMapper.readValue(applicationJson[nextIndex()], LoanApplication.class);
+    }
+
+    @Benchmark
+    public LoanApplication decodeTimed() throws IOException {
+        return timedObjectMapper.readValue(applicationJson[nextIndex()], LoanApplication.class);
+    }
+
+    @Benchmark
+    public RiskAssessment score() {
+        return riskScoringService.calculateRiskAssessment(applications.get(nextIndex()));
+    }
+
+    @Benchmark
+    public RiskAssessment scoreTimed() {
+        LoanApplication application = applications.get(nextIndex());
+        return evaluationMetrics.score(evaluationMetrics.trace(application),
+                () -> riskScoringService.calculateRiskAssessment(application));
+    }
+
+    /**
+     * Scoring followed by an already completed store, which isolates the cost of tracing the evaluation:
+     * meters, JFR event (committed only under a recording) and slow request check. The store is hidden, so
+     * that blocking on it is not short-circuited as on a constant.
+     */
+    @Benchmark
+    public RiskAssessment evaluate() {
+        RiskAssessment assessment = riskScoringService.calculateRiskAssessment(applications.get(nextIndex()));
+        return Mono.just(assessment).hide().block();
+    }
+
+    @Benchmark
+    public RiskAssessment evaluateTraced() {
+        LoanApplication application = applications.get(nextIndex());
+        EvaluationTrace trace = evaluationMetrics.trace(application);
+        RiskAssessment assessment = evaluationMetrics.score(trace, () -> riskScoringService.calculateRiskAssessment(application));
+        return evaluationMetrics.timeStore(trace, Mono.just(assessment).hide()).block();
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (APPLICATIONS - 1);
+        return next;
+    }
+}
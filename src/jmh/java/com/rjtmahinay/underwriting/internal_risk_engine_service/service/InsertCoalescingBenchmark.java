@@ -0,0 +1,128 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.ApplicationContextSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.BenchmarkSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of {@code /evaluate}'s store step: bursts of 64 concurrent stores, one insert per request
+ * versus coalesced inserts. The score is the time per stored assessment; the p50 and p99 latency of the
+ * individual requests and the insert statements sent per stored assessment (database round trips) are
+ * printed after every iteration. The table is reset after every iteration.
+ * <p>
+ * The stores of a burst are subscribed to from one thread without blocking, as the server's event loop
+ * does, and the benchmark waits for all of them. Latencies are measured from the start of the burst.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class InsertCoalescingBenchmark {
+
+    private static final int APPLICATIONS = 10_000;
+    private static final int CONCURRENT_REQUESTS = 64;
+
+    @Param({"false", "true"})
+    public boolean coalescing;
+
+    private ConfigurableApplicationContext context;
+    private UnderwritingService underwritingService;
+    private MeterRegistry meterRegistry;
+    private List<RiskAssessment> assessments;
+    private int next;
+    private Timer latency;
+    private double insertsBefore;
+
+    @Setup
+    public void setUp() {
+        context = ApplicationContextSupport.start("--risk-engine.coalescing.enabled=" + coalescing);
+        underwritingService = context.getBean(UnderwritingService.class);
+        meterRegistry = context.getBean(MeterRegistry.class);
+        RiskScoringService riskScoringService = context.getBean(RiskScoringService.class);
+        List<LoanApplication> applications = BenchmarkSupport.randomApplications(APPLICATIONS, 42L);
+        for (LoanApplication application : applications) {
+            // risk_assessments.loan_application_id references the sample applications
+            application.setId(application.getId() % 5 + 1);
+            // The worst factors add up to 1025, which the risk_score CHECK constraint rejects
+            if (riskScoringService.calculateRiskAssessment(application).getRiskScore() > 1000) {
+                application.setEmploymentYears(5);
+            }
+        }
+        assessments = applications.stream().map(riskScoringService::calculateRiskAssessment).toList();
+    }
+
+    @Setup(Level.Iteration)
+    public void startCounting() {
+        latency = Timer.builder("store")
+                .publishPercentiles(0.5, 0.99)
+                .register(new SimpleMeterRegistry());
+        insertsBefore = coalescedInserts();
+    }
+
+    @TearDown(Level.Iteration)
+    public void resetTable() {
+        long stored = latency.count();
+        // Without coalescing every assessment is its own insert
+        double inserts = coalescing ? coalescedInserts() - insertsBefore : stored;
+        ValueAtPercentile[] percentiles = latency.takeSnapshot().percentileValues();
+        System.out.printf("%n%d assessments stored with %.0f inserts (%.3f round trips per assessment), " +
+                        "latency p50 %.0f us, p99 %.0f us%n", stored, inserts, inserts / Math.max(1, stored),
+                percentiles[0].value(TimeUnit.MICROSECONDS), percentiles[1].value(TimeUnit.MICROSECONDS));
+        ApplicationContextSupport.resetAssessments(context);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENT_REQUESTS)
+    public List<RiskAssessment> storeConcurrently() {
+        // The requests of a burst arrive together; H2 runs statements on the subscribing thread, so a
+        // request's latency includes the stores subscribed before it
+        long arrived = System.nanoTime();
+        return Flux.range(0, CONCURRENT_REQUESTS)
+                .flatMap(request -> underwritingService.storeRiskAssessment(nextAssessment())
+                        .doOnSuccess(saved -> latency.record(System.nanoTime() - arrived, TimeUnit.NANOSECONDS)),
+                        CONCURRENT_REQUESTS)
+                .collectList()
+                .block();
+    }
+
+    private RiskAssessment nextAssessment() {
+        next = next == APPLICATIONS - 1 ? 0 : next + 1;
+        // Stored assessments get their id set, so every call stores a fresh copy
+        return assessments.get(next).toBuilder().id(null).build();
+    }
+
+    private double coalescedInserts() {
+        return meterRegistry.get("risk.assessments.coalesced.inserts").counter().count();
+    }
+}
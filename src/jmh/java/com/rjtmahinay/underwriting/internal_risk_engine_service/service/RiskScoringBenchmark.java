@@ -0,0 +1,87 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.BenchmarkSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.AssessmentReasons;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskLevel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-application scoring cost, for every loan type and with the optional inputs absent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RiskScoringBenchmark {
+
+    @Param({"PERSONAL", "MORTGAGE", "AUTO", "BUSINESS", "STUDENT", "CREDIT_CARD"})
+    public LoanType loanType;
+
+    @Param({"FULL", "NO_COLLATERAL", "NO_CREDIT_SCORE"})
+    public BenchmarkSupport.Profile profile;
+
+    @Param({"BIG_DECIMAL", "FIXED_POINT"})
+    public RiskEngineProperties.ScoringEngine engine;
+
+    private RiskScoringService riskScoringService;
+    private LoanApplication application;
+    private long reasonCodes;
+    private int riskScore;
+    private RiskLevel riskLevel;
+    private BigDecimal debtToIncomeRatio;
+    private CompiledRuleSet ruleSet;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        RiskEngineProperties properties = new RiskEngineProperties();
+        properties.getScoring().setEngine(engine);
+        ScoringRuleSetProvider rules = BenchmarkSupport.defaultRules();
+        riskScoringService = new RiskScoringService(properties, new FixedPointRiskScorer(), BenchmarkSupport.unmemoized(),
+                rules);
+        application = BenchmarkSupport.sampleApplication(loanType, profile);
+        RiskAssessment assessment = riskScoringService.calculateRiskAssessment(application);
+        reasonCodes = assessment.getReasonCodes();
+        riskScore = assessment.getRiskScore();
+        riskLevel = assessment.getRiskLevel();
+        debtToIncomeRatio = assessment.getDebtToIncomeRatio();
+        ruleSet = rules.current();
+    }
+
+    @Benchmark
+    public RiskAssessment calculateRiskAssessment() {
+        return riskScoringService.calculateRiskAssessment(application);
+    }
+
+    @Benchmark
+    public long reasonCodes() {
+        return riskScoringService.reasonCodes(application, debtToIncomeRatio, ruleSet);
+    }
+
+    /**
+     * Cost paid only by responses requested with {@code include=notes}.
+     */
+    @Benchmark
+    public String renderAssessmentNotes() {
+        return AssessmentReasons.render(reasonCodes, riskScore, riskLevel, debtToIncomeRatio);
+    }
+}
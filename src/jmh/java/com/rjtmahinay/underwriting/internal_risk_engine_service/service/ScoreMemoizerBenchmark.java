@@ -0,0 +1,70 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.BenchmarkSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of scoring a repeat submission: computing the assessment again versus a {@link ScoreMemoizer} hit
+ * (key construction, lookup and copying the template). Cycles through 1,000 distinct applications, all
+ * of which are in the memo.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreMemoizerBenchmark {
+
+    private static final int DISTINCT_APPLICATIONS = 1_000;
+
+    private List<LoanApplication> applications;
+    private RiskScoringService computing;
+    private RiskScoringService memoized;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkSupport.quietLogging();
+        applications = BenchmarkSupport.randomApplications(DISTINCT_APPLICATIONS, 42L);
+        RiskEngineProperties properties = new RiskEngineProperties();
+        properties.getScoring().getMemo().setEnabled(true);
+        ScoringRuleSetProvider rules = BenchmarkSupport.defaultRules();
+        computing = new RiskScoringService(properties, new FixedPointRiskScorer(), BenchmarkSupport.unmemoized(), rules);
+        memoized = new RiskScoringService(properties, new FixedPointRiskScorer(),
+                new ScoreMemoizer(properties, new SimpleMeterRegistry()), rules);
+        applications.forEach(memoized::calculateRiskAssessment);
+    }
+
+    @Benchmark
+    public RiskAssessment recompute() {
+        return computing.calculateRiskAssessment(nextApplication());
+    }
+
+    @Benchmark
+    public RiskAssessment memoHit() {
+        return memoized.calculateRiskAssessment(nextApplication());
+    }
+
+    private LoanApplication nextApplication() {
+        LoanApplication application = applications.get(next);
+        next = next + 1 == DISTINCT_APPLICATIONS ? 0 : next + 1;
+        return application;
+    }
+}
@@ -0,0 +1,55 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.BenchmarkSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the per-score table lookups of the compiled scoring rules: the credit score factor across
+ * 300-850 and the recommended interest rate across risk scores 0-1000 for every {@link LoanType}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringTableBenchmark {
+
+    private static final LoanType[] LOAN_TYPES = LoanType.values();
+
+    private CompiledRuleSet rules;
+    private int creditScore;
+    private int riskScore;
+    private int loanType;
+
+    @Setup
+    public void setUp() {
+        rules = BenchmarkSupport.defaultRules().current();
+    }
+
+    @Benchmark
+    public int creditScoreFactor() {
+        creditScore = creditScore >= 850 ? 300 : creditScore + 1;
+        return rules.creditScoreFactor(creditScore);
+    }
+
+    @Benchmark
+    public BigDecimal interestRate() {
+        riskScore = riskScore == 1000 ? 0 : riskScore + 1;
+        loanType = loanType == LOAN_TYPES.length - 1 ? 0 : loanType + 1;
+        return rules.interestRate(LOAN_TYPES[loanType], riskScore);
+    }
+}
@@ -0,0 +1,103 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.ApplicationContextSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.benchmark.BenchmarkSupport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to store one evaluated assessment the way {@code /evaluate} does: saved before answering versus
+ * appended to the write-ahead log with each {@code sync} mode, while the flusher drains the log into the
+ * in-memory H2 database in the background. The table is reset after every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class WriteBehindBenchmark {
+
+    private static final int APPLICATIONS = 10_000;
+
+    @Param({"NEVER", "INTERVAL", "EVERY_WRITE"})
+    public String sync;
+
+    private Path directory;
+    private ConfigurableApplicationContext context;
+    private UnderwritingService underwritingService;
+    private WriteBehindAssessmentWriter writer;
+    private List<RiskAssessment> assessments;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("write-ahead-log");
+        context = ApplicationContextSupport.start(
+                "--risk-engine.write-behind.enabled=true",
+                "--risk-engine.write-behind.directory=" + directory,
+                "--risk-engine.write-behind.sync=" + sync);
+        underwritingService = context.getBean(UnderwritingService.class);
+        writer = context.getBean(WriteBehindAssessmentWriter.class);
+        RiskScoringService riskScoringService = context.getBean(RiskScoringService.class);
+        List<LoanApplication> applications = BenchmarkSupport.randomApplications(APPLICATIONS, 42L);
+        for (LoanApplication application : applications) {
+            // risk_assessments.loan_application_id references the sample applications
+            application.setId(application.getId() % 5 + 1);
+            // The worst factors add up to 1025, which the risk_score CHECK constraint rejects
+            if (riskScoringService.calculateRiskAssessment(application).getRiskScore() > 1000) {
+                application.setEmploymentYears(5);
+            }
+        }
+        assessments = applications.stream().map(riskScoringService::calculateRiskAssessment).toList();
+    }
+
+    @TearDown(Level.Iteration)
+    public void resetTable() {
+        writer.flush().block();
+        ApplicationContextSupport.resetAssessments(context);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        context.close();
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public RiskAssessment saveBeforeAnswering() {
+        return underwritingService.saveRiskAssessment(nextAssessment()).block();
+    }
+
+    @Benchmark
+    public RiskAssessment writeBehind() {
+        return underwritingService.storeRiskAssessment(nextAssessment()).block();
+    }
+
+    private RiskAssessment nextAssessment() {
+        next = next == APPLICATIONS - 1 ? 0 : next + 1;
+        // Stored assessments get their id set, so every call stores a fresh copy
+        return assessments.get(next).toBuilder().id(null).build();
+    }
+}
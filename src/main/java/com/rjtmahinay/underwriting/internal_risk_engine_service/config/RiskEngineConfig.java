@@ -0,0 +1,23 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.EvaluationMetrics;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(RiskEngineProperties.class)
+public class RiskEngineConfig {
+
+    /**
+     * Registered with Spring's {@code ObjectMapper}, so request bodies and streamed batch lines alike are
+     * timed as {@code risk.evaluation.decode}.
+     */
+    @Bean
+    public Module loanApplicationDecodeTiming(EvaluationMetrics evaluationMetrics) {
+        return evaluationMetrics.decodeTimingModule();
+    }
+}
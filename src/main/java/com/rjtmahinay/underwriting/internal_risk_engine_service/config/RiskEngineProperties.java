@@ -0,0 +1,450 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Tunables for the risk engine, bound from the {@code risk-engine.*} namespace.
+ */
+@Data
+@ConfigurationProperties(prefix = "risk-engine")
+public class RiskEngineProperties {
+
+    private final Scoring scoring = new Scoring();
+    private final Batch batch = new Batch();
+    private final Statistics statistics = new Statistics();
+    private final Pagination pagination = new Pagination();
+    private final Cache cache = new Cache();
+    private final Notes notes = new Notes();
+    private final WriteBehind writeBehind = new WriteBehind();
+    private final Coalescing coalescing = new Coalescing();
+    private final Duplicates duplicates = new Duplicates();
+    private final SlowRequests slowRequests = new SlowRequests();
+    private final AdmissionControl admissionControl = new AdmissionControl();
+    private final BulkScoring bulkScoring = new BulkScoring();
+    private final Rescoring rescoring = new Rescoring();
+    private final Simulation simulation = new Simulation();
+
+    @Data
+    public static class Scoring {
+
+        /**
+         * Implementation used by {@code RiskScoringService} to evaluate applications.
+         */
+        private ScoringEngine engine = ScoringEngine.BIG_DECIMAL;
+
+        /**
+         * Use the {@code jdk.incubator.vector} implementation for columnar batch scoring when the
+         * module has been added to the JVM; the scalar implementation is used otherwise.
+         */
+        private boolean vectorized = true;
+
+        private final Memo memo = new Memo();
+        private final Rules rules = new Rules();
+    }
+
+    @Data
+    public static class Rules {
+
+        /**
+         * Resource holding the scoring rules, e.g. {@code file:/etc/risk-engine/scoring-rules.yaml}.
+         */
+        private String location = "classpath:scoring-rules.yaml";
+
+        /**
+         * How often a rules file on the file system is checked for changes and reloaded.
+         */
+        private Duration reloadInterval = Duration.ofSeconds(10);
+    }
+
+    @Data
+    public static class Memo {
+
+        /**
+         * Reuse the assessment of an earlier application with identical scoring inputs. Off by default: a
+         * hit costs about as much as scoring, and every miss adds building the key and caching the result.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of distinct scoring inputs kept by the shared memo.
+         */
+        private long maximumSize = 100_000;
+
+        /**
+         * Maximum number of distinct scoring inputs remembered for de-duplication within one batch request.
+         */
+        private int batchMaxEntries = 10_000;
+    }
+
+    @Data
+    public static class Batch {
+
+        /**
+         * Number of applications scored concurrently on the parallel scheduler; 0 uses one per CPU.
+         */
+        private int scoringConcurrency = 0;
+
+        /**
+         * Maximum number of assessments written by one batched insert.
+         */
+        private int chunkSize = 500;
+
+        /**
+         * How long a partially filled chunk may wait for more assessments before it is written.
+         */
+        private Duration flushInterval = Duration.ofMillis(50);
+
+        /**
+         * Maximum number of chunk inserts in flight at once, which bounds the connections a batch uses.
+         */
+        private int maxInFlightChunks = 2;
+
+        public int effectiveScoringConcurrency() {
+            return scoringConcurrency > 0 ? scoringConcurrency : Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    @Data
+    public static class Statistics {
+
+        /**
+         * How often the in-memory statistics are compared with {@code risk_assessments} and corrected.
+         */
+        private Duration reconcileInterval = Duration.ofMinutes(5);
+
+        /**
+         * How often {@code GET /statistics/stream} sends the overview to its subscribers.
+         */
+        private Duration streamInterval = Duration.ofSeconds(2);
+
+        /**
+         * Windows of {@code GET /statistics/windows}, in whole seconds; the longest determines the memory
+         * used, one bucket per second.
+         */
+        private List<Duration> windows = List.of(Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofHours(1));
+    }
+
+    @Data
+    public static class Pagination {
+
+        /**
+         * Page size of {@code GET /assessments} when the request does not specify a limit.
+         */
+        private int defaultPageSize = 100;
+
+        /**
+         * Largest page size a client may request.
+         */
+        private int maxPageSize = 1000;
+
+        /**
+         * Rows fetched per keyset query when all assessments are streamed.
+         */
+        private int streamChunkSize = 500;
+    }
+
+    @Data
+    public static class Cache {
+
+        /**
+         * Maximum number of assessments kept by the lookup-by-id cache.
+         */
+        private long maximumSize = 10_000;
+    }
+
+    @Data
+    public static class Notes {
+
+        /**
+         * Convert assessments stored with text notes to reason codes when the application starts.
+         */
+        private boolean migrateOnStartup = true;
+
+        /**
+         * Assessments read and updated per statement by the conversion.
+         */
+        private int migrationChunkSize = 500;
+    }
+
+    @Data
+    public static class WriteBehind {
+
+        /**
+         * Acknowledge {@code POST /evaluate} once the assessment, and a new loan application with it, is in the
+         * write-ahead log, and insert them into their tables in the background.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory holding the write-ahead log segments.
+         */
+        private String directory = "data/write-ahead-log";
+
+        /**
+         * Size of a log segment; a full segment is closed and deleted once all its assessments are stored.
+         */
+        private DataSize segmentSize = DataSize.ofMegabytes(16);
+
+        /**
+         * When appended assessments are forced from the page cache to disk.
+         */
+        private WriteAheadLogSync sync = WriteAheadLogSync.INTERVAL;
+
+        /**
+         * How often the log is forced to disk when {@code sync} is {@code INTERVAL}.
+         */
+        private Duration syncInterval = Duration.ofMillis(100);
+
+        /**
+         * How often logged assessments are inserted into {@code risk_assessments}.
+         */
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        /**
+         * Maximum number of assessments written by one batched insert of the flusher.
+         */
+        private int flushBatchSize = 1000;
+
+        /**
+         * Number of assessment ids reserved from the database at a time.
+         */
+        private int idBlockSize = 1000;
+
+        /**
+         * Assessments waiting to be inserted beyond which {@code POST /evaluate} stores synchronously again.
+         */
+        private int maxPendingAssessments = 100_000;
+    }
+
+    @Data
+    public static class Coalescing {
+
+        /**
+         * Insert the evaluations of concurrent {@code POST /evaluate} requests together, new applications with
+         * their assessments, unless write-behind takes them.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of assessments written by one insert.
+         */
+        private int maxBatchSize = 64;
+
+        /**
+         * How long the first assessment of a batch may wait for others before the batch is written.
+         */
+        private Duration maxWait = Duration.ofMillis(2);
+
+        /**
+         * Maximum number of batch inserts in flight at once.
+         */
+        private int maxInFlightBatches = 4;
+
+        /**
+         * Maximum number of assessments waiting for their insert to start; further requests are answered
+         * with {@code 429} until the queue drains.
+         */
+        private int maxQueuedAssessments = 1024;
+    }
+
+    @Data
+    public static class Duplicates {
+
+        /**
+         * Reject a new application whose email, loan type and loan amount match an application submitted
+         * within {@code window}.
+         */
+        private boolean enabled = true;
+
+        /**
+         * How far back a matching application makes a new one a duplicate.
+         */
+        private Duration window = Duration.ofHours(24);
+
+        /**
+         * Applications per {@code window} the duplicate filter is sized for; beyond it the filter's false
+         * positive rate, and with it the share of checks that query the database, grows.
+         */
+        private int expectedApplications = 1_000_000;
+
+        /**
+         * False positive rate of the duplicate filter at {@code expected-applications} applications.
+         */
+        private double falsePositiveRate = 0.01;
+    }
+
+    @Data
+    public static class SlowRequests {
+
+        /**
+         * Number of the slowest {@code /evaluate} requests kept for {@code /actuator/slowrequests}.
+         */
+        private int size = 20;
+
+        /**
+         * How long a window of slowest requests lasts; the current and previous windows are reported, so a
+         * request drops out between one and two windows after it was recorded.
+         */
+        private Duration window = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class AdmissionControl {
+
+        /**
+         * Reject scoring requests beyond an adaptive concurrency limit with 429 instead of queueing them.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Concurrency limit before any latency has been measured; the limit then adapts from there. Keep it
+         * below what the service handles without queueing, as the latency measured at it becomes the baseline.
+         */
+        private int initialLimit = 20;
+
+        /**
+         * Lowest the limit can fall, however high the latency.
+         */
+        private int minLimit = 8;
+
+        /**
+         * Highest the limit can grow, however low the latency.
+         */
+        private int maxLimit = 500;
+
+        /**
+         * Factor by which recent {@code /evaluate} latency may exceed the lowest latency of the last seconds
+         * before the limit is lowered.
+         */
+        private double tolerance = 1.5;
+
+        /**
+         * Weight of each new limit computed from latency; lower values react more slowly to spikes.
+         */
+        private double smoothing = 0.2;
+
+        /**
+         * Share of the limit below which batch requests are admitted; requests in flight above it keep the
+         * remaining capacity for single evaluations, so batches are shed first.
+         */
+        private double batchShare = 0.5;
+
+        /**
+         * Sent as {@code Retry-After} with rejections, rounded to whole seconds (at least 1).
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class BulkScoring {
+
+        /**
+         * CSV of loan applications scored when the application runs with the {@code bulk-scoring} profile.
+         */
+        private String input;
+
+        /**
+         * CSV the assessments are written to, one row per input row in input order; replaced if it exists.
+         */
+        private String output;
+
+        /**
+         * Threads parsing and scoring the input; 0 uses one per CPU.
+         */
+        private int parallelism = 0;
+
+        /**
+         * Bytes of input mapped and scored as one unit of work; between 64KB and 1GB.
+         */
+        private DataSize blockSize = DataSize.ofMegabytes(4);
+
+        /**
+         * Also insert the assessments into {@code risk_assessments}. Requires an {@code id} column holding the
+         * ids of the stored loan applications, and a database that outlives the run.
+         */
+        private boolean loadAssessments = false;
+
+        /**
+         * Assessments per batched {@code INSERT} when {@code load-assessments} is on.
+         */
+        private int loadChunkSize = 1000;
+    }
+
+    @Data
+    public static class Rescoring {
+
+        /**
+         * Loan applications fetched, scored and stored with their checkpoint as one chunk.
+         */
+        private int chunkSize = 500;
+
+        /**
+         * Chunks scored at once; 0 uses half the CPUs, leaving the rest to live requests.
+         */
+        private int parallelism = 0;
+
+        /**
+         * How long a job waits before querying again while live requests are waiting for a connection.
+         */
+        private Duration busyBackoff = Duration.ofMillis(100);
+
+        /**
+         * Resume an unfinished job at startup.
+         */
+        private boolean resumeOnStartup = true;
+    }
+
+    @Data
+    public static class Simulation {
+
+        /**
+         * How long the in-memory snapshot of {@code loan_applications} that simulations score is reused
+         * before the next simulation reloads it.
+         */
+        private Duration snapshotTtl = Duration.ofMinutes(10);
+
+        /**
+         * Applications kept in the snapshot, lowest ids first; about 50 bytes each.
+         */
+        private int maxApplications = 2_000_000;
+
+        /**
+         * Fork-join threads scoring a simulation; 0 uses one per CPU.
+         */
+        private int parallelism = 0;
+    }
+
+    public enum WriteAheadLogSync {
+        /**
+         * Never forced; logged assessments survive a crash of the process but not of the host.
+         */
+        NEVER,
+
+        /**
+         * Forced every {@code sync-interval}; a crash of the host loses at most that much.
+         */
+        INTERVAL,
+
+        /**
+         * Forced before the response is sent; concurrent requests share one force.
+         */
+        EVERY_WRITE
+    }
+
+    public enum ScoringEngine {
+        /**
+         * Reference implementation working on {@link java.math.BigDecimal} ratios.
+         */
+        BIG_DECIMAL,
+
+        /**
+         * Allocation-free kernel working on scaled {@code long} values (cents / basis points).
+         */
+        FIXED_POINT
+    }
+}
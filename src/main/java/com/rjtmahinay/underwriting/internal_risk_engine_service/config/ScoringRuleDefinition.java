@@ -0,0 +1,110 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.config;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scoring thresholds and factors as written in the rules file ({@code risk-engine.scoring.rules.location}),
+ * bound from its {@code scoring-rules} document. Nothing reads this directly: it is validated and compiled
+ * into a {@code CompiledRuleSet} when the file is loaded.
+ */
+@Data
+public class ScoringRuleDefinition {
+
+    /**
+     * Identifies the rule set; stamped on every assessment scored with it.
+     */
+    private String version;
+
+    private Bands creditScore = new Bands();
+    private Bands incomeToLoanRatio = new Bands();
+    private Bands employmentYears = new Bands();
+    private Bands collateralToLoanRatio = new Bands();
+    private Map<LoanType, Integer> loanTypeFactors = new LinkedHashMap<>();
+    private Approval approval = new Approval();
+    private InterestRate interestRate = new InterestRate();
+    private Notes notes = new Notes();
+
+    /**
+     * Factor of an input by band: the band with the highest {@code min} not above the value applies.
+     */
+    @Data
+    public static class Bands {
+
+        /**
+         * Factor when the input is not available.
+         */
+        private Integer missingFactor;
+
+        /**
+         * Factor when the value is below every band.
+         */
+        private Integer defaultFactor;
+
+        private List<Band> bands = new ArrayList<>();
+    }
+
+    @Data
+    public static class Band {
+        private BigDecimal min;
+        private Integer factor;
+    }
+
+    @Data
+    public static class Approval {
+
+        /**
+         * Scores up to this value are approved.
+         */
+        private Integer approveMaxScore;
+
+        /**
+         * Scores up to this value are approved when the debt-to-income ratio is acceptable.
+         */
+        private Integer conditionalMaxScore;
+
+        private BigDecimal maxDebtToIncomeRatio;
+    }
+
+    @Data
+    public static class InterestRate {
+
+        private Map<LoanType, BigDecimal> baseRates = new LinkedHashMap<>();
+
+        /**
+         * Premium when the score is not above any of the {@code premiums}.
+         */
+        private BigDecimal defaultPremium;
+
+        private List<Premium> premiums = new ArrayList<>();
+    }
+
+    /**
+     * Premium added to the base rate for scores strictly above {@code above}.
+     */
+    @Data
+    public static class Premium {
+        private Integer above;
+        private BigDecimal premium;
+    }
+
+    @Data
+    public static class Notes {
+
+        /**
+         * Credit scores from this value on are called out as excellent.
+         */
+        private Integer excellentCreditScore;
+
+        /**
+         * Credit scores below this value are called out as a major risk factor.
+         */
+        private Integer poorCreditScore;
+    }
+}
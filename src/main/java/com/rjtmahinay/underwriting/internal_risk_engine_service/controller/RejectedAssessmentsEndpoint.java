@@ -0,0 +1,31 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.controller;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RejectedAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RejectedAssessmentRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * {@code /actuator/rejectedassessments}: the latest assessments that write-behind persistence acknowledged
+ * but the database rejected when they were flushed, newest first. Every column of them is kept in
+ * {@code rejected_assessments}.
+ */
+@Component
+@Endpoint(id = "rejectedassessments")
+@RequiredArgsConstructor
+public class RejectedAssessmentsEndpoint {
+
+    private static final int LISTED = 100;
+
+    private final RejectedAssessmentRepository rejectedAssessmentRepository;
+
+    @ReadOperation
+    public Mono<List<RejectedAssessment>> rejectedAssessments() {
+        return rejectedAssessmentRepository.findLatest(LISTED).collectList();
+    }
+}
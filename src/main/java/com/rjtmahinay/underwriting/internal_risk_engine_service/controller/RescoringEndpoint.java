@@ -0,0 +1,38 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.controller;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RescoringProgress;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.RescoringService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@code /actuator/rescoring}: progress and estimated completion of the latest re-scoring job ({@code GET});
+ * {@code POST} starts or resumes a job with the current scoring rules and {@code DELETE} cancels it.
+ */
+@Component
+@Endpoint(id = "rescoring")
+@RequiredArgsConstructor
+public class RescoringEndpoint {
+
+    private final RescoringService rescoringService;
+
+    @ReadOperation
+    public Mono<RescoringProgress> progress() {
+        return rescoringService.progress();
+    }
+
+    @WriteOperation
+    public Mono<RescoringProgress> start() {
+        return rescoringService.start();
+    }
+
+    @DeleteOperation
+    public Mono<RescoringProgress> cancel() {
+        return rescoringService.cancel();
+    }
+}
@@ -1,7 +1,18 @@
 package com.rjtmahinay.underwriting.internal_risk_engine_service.controller;
 
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.DuplicateApplicationException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidLoanApplicationException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidRiskScoreException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.LoanApplicationNotFoundException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.ServiceOverloadedException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.BatchEvaluationResult;
 import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
 import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessmentPage;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.AdaptiveConcurrencyLimiter;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.BatchEvaluationService;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.EvaluationMetrics;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.EvaluationTrace;
 import com.rjtmahinay.underwriting.internal_risk_engine_service.service.RiskScoringService;
 import com.rjtmahinay.underwriting.internal_risk_engine_service.service.UnderwritingService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -15,11 +26,15 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 @RestController
 @RequestMapping("/api/v1/risk-assessment")
@@ -28,18 +43,30 @@ import reactor.core.publisher.Mono;
 @Tag(name = "Risk Assessment", description = "Endpoints for loan risk assessment and evaluation")
 public class RiskAssessmentController {
 
+    private static final String INCLUDE_NOTES = "notes";
+    private static final String INCLUDE_DESCRIPTION = "Pass notes to render the human-readable assessment notes, which are omitted by default";
+
     private final RiskScoringService riskScoringService;
     private final UnderwritingService underwritingService;
+    private final BatchEvaluationService batchEvaluationService;
+    private final EvaluationMetrics evaluationMetrics;
+    private final AdaptiveConcurrencyLimiter adaptiveConcurrencyLimiter;
 
     @Operation(
         summary = "Evaluate loan application risk",
-        description = "Analyzes a loan application and generates a comprehensive risk assessment including risk score, approval recommendation, and suggested interest rate"
+        description = "Analyzes a loan application and generates a comprehensive risk assessment including risk score, approval recommendation, and suggested interest rate. An application without an ID is stored together with its assessment"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "201", description = "Risk assessment created successfully", 
             content = @Content(mediaType = "application/json", schema = @Schema(implementation = RiskAssessment.class))),
         @ApiResponse(responseCode = "400", description = "Invalid loan application data", 
             content = @Content(mediaType = "application/json")),
+        @ApiResponse(responseCode = "404", description = "No loan application with the given ID",
+            content = @Content(mediaType = "application/json")),
+        @ApiResponse(responseCode = "409", description = "The same loan was applied for with this email recently",
+            content = @Content(mediaType = "application/json")),
+        @ApiResponse(responseCode = "429", description = "The service is at its concurrency limit; retry after the Retry-After seconds",
+            content = @Content(mediaType = "application/json")),
         @ApiResponse(responseCode = "500", description = "Internal server error", 
             content = @Content(mediaType = "application/json"))
     })
@@ -73,23 +100,34 @@ public class RiskAssessmentController {
                     )
                 )
             )
-            @RequestBody LoanApplication loanData) {
+            @RequestBody LoanApplication loanData,
+            @Parameter(description = INCLUDE_DESCRIPTION, example = INCLUDE_NOTES)
+            @RequestParam(required = false) List<String> include) {
         if (loanData == null) {
             return Mono.just(ResponseEntity.badRequest().build());
         }
-        
-        log.info("Received risk assessment request for applicant: {}", loanData.getApplicantName());
-        
-        return Mono.fromSupplier(() -> riskScoringService.calculateRiskAssessment(loanData))
-                .flatMap(assessment -> underwritingService.saveRiskAssessment(assessment))
-                .map(assessment -> ResponseEntity.status(HttpStatus.CREATED).body(assessment))
+
+        // Stage timings go to the risk.evaluation.* meters and the JFR evaluation event instead of the log
+        EvaluationTrace trace = evaluationMetrics.trace(loanData);
+        Mono<ResponseEntity<RiskAssessment>> evaluation = Mono.fromSupplier(
+                        () -> evaluationMetrics.score(trace, () -> riskScoringService.calculateRiskAssessment(loanData)))
+                .flatMap(assessment -> evaluationMetrics.timeStore(trace, underwritingService.storeEvaluation(loanData, assessment)))
+                .map(assessment -> ResponseEntity.status(HttpStatus.CREATED).body(notes(include).apply(assessment)))
                 .onErrorResume(IllegalArgumentException.class, 
                     ex -> Mono.just(ResponseEntity.badRequest().build()))
-                .onErrorResume(Exception.class, 
+                // Duplicates, assessments the database would reject, unknown applications and a full insert
+                // queue are answered by the GlobalExceptionHandler
+                .onErrorResume(ex -> !(ex instanceof DuplicateApplicationException
+                                || ex instanceof InvalidLoanApplicationException
+                                || ex instanceof InvalidRiskScoreException
+                                || ex instanceof LoanApplicationNotFoundException
+                                || ex instanceof ServiceOverloadedException),
                     ex -> {
                         log.error("Error evaluating risk for application: {}", ex.getMessage(), ex);
                         return Mono.just(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
                     });
+        // Rejections are answered with 429 by the GlobalExceptionHandler
+        return adaptiveConcurrencyLimiter.admit(AdaptiveConcurrencyLimiter.Priority.EVALUATION, evaluation);
     }
 
     @Operation(
@@ -107,44 +145,73 @@ public class RiskAssessmentController {
     @GetMapping("/assessments/{assessmentId}")
     public Mono<ResponseEntity<RiskAssessment>> getRiskAssessment(
             @Parameter(description = "Unique identifier of the risk assessment", required = true, example = "1")
-            @PathVariable Long assessmentId) {
+            @PathVariable Long assessmentId,
+            @Parameter(description = INCLUDE_DESCRIPTION, example = INCLUDE_NOTES)
+            @RequestParam(required = false) List<String> include) {
         if (assessmentId == null || assessmentId <= 0) {
             return Mono.just(ResponseEntity.badRequest().build());
         }
         
-        log.info("Retrieving risk assessment with ID: {}", assessmentId);
+        log.debug("Retrieving risk assessment with ID: {}", assessmentId);
         
         return underwritingService.getRiskAssessmentById(assessmentId)
+                .map(notes(include))
                 .map(ResponseEntity::ok)
                 .onErrorReturn(ResponseEntity.notFound().build());
     }
 
     @Operation(
-        summary = "Get all risk assessments",
-        description = "Retrieves all risk assessments in the system"
+        summary = "Get risk assessments",
+        description = "Returns one page of risk assessments ordered by ID. Pass the nextCursor of a page as cursor to fetch the page after it"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Page of risk assessments",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = RiskAssessmentPage.class))),
+        @ApiResponse(responseCode = "400", description = "Invalid cursor or limit",
+            content = @Content(mediaType = "application/json"))
+    })
+    @GetMapping(value = "/assessments", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Mono<RiskAssessmentPage> getRiskAssessments(
+            @Parameter(description = "Continuation token returned as nextCursor by the previous page")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Maximum number of assessments on the page", example = "100")
+            @RequestParam(required = false) Integer limit,
+            @Parameter(description = INCLUDE_DESCRIPTION, example = INCLUDE_NOTES)
+            @RequestParam(required = false) List<String> include) {
+        log.debug("Retrieving risk assessments page");
+        UnaryOperator<RiskAssessment> notes = notes(include);
+        return underwritingService.getRiskAssessmentPage(cursor, limit)
+                .doOnNext(page -> page.setItems(page.getItems().stream().map(notes).toList()));
+    }
+
+    @Operation(
+        summary = "Stream all risk assessments (NDJSON)",
+        description = "Streams every risk assessment ordered by ID as newline-delimited JSON, reading the table in bounded keyset chunks"
     )
     @ApiResponses(value = {
-        @ApiResponse(responseCode = "200", description = "List of risk assessments", 
-            content = @Content(mediaType = "application/json", schema = @Schema(implementation = RiskAssessment.class)))
+        @ApiResponse(responseCode = "200", description = "Risk assessments streamed as they are read",
+            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = RiskAssessment.class)))
     })
-    @GetMapping("/assessments")
-    public Flux<RiskAssessment> getAllRiskAssessments() {
-        log.info("Retrieving all risk assessments");
-        return underwritingService.getAllRiskAssessments();
+    @GetMapping(value = "/assessments", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<RiskAssessment> getAllRiskAssessments(
+            @Parameter(description = INCLUDE_DESCRIPTION, example = INCLUDE_NOTES)
+            @RequestParam(required = false) List<String> include) {
+        log.debug("Streaming all risk assessments");
+        return underwritingService.getAllRiskAssessments().map(notes(include));
     }
 
     @Operation(
         summary = "Batch evaluate loan applications",
-        description = "Processes multiple loan applications simultaneously and returns their risk assessments"
+        description = "Processes multiple loan applications simultaneously and returns one result per application, in input order, containing the application's index and either the stored risk assessment or an error"
     )
     @ApiResponses(value = {
         @ApiResponse(responseCode = "200", description = "Batch processing completed", 
-            content = @Content(mediaType = "application/json", schema = @Schema(implementation = RiskAssessment.class))),
-        @ApiResponse(responseCode = "400", description = "Invalid batch request", 
+            content = @Content(mediaType = "application/json", schema = @Schema(type = "array", implementation = BatchEvaluationResult.class))),
+        @ApiResponse(responseCode = "429", description = "Batches are being shed to keep capacity for single evaluations; retry after the Retry-After seconds",
             content = @Content(mediaType = "application/json"))
     })
     @PostMapping("/batch-evaluate")
-    public Flux<RiskAssessment> evaluateRiskBatch(
+    public Flux<BatchEvaluationResult> evaluateRiskBatch(
             @io.swagger.v3.oas.annotations.parameters.RequestBody(
                 description = "Stream of loan applications to be evaluated",
                 required = true,
@@ -153,14 +220,58 @@ public class RiskAssessmentController {
                     schema = @Schema(type = "array", implementation = LoanApplication.class)
                 )
             )
-            @RequestBody Flux<LoanApplication> loanDataList) {
-        log.info("Received batch risk assessment request");
+            @RequestBody Flux<LoanApplication> loanDataList,
+            @Parameter(description = INCLUDE_DESCRIPTION, example = INCLUDE_NOTES)
+            @RequestParam(required = false) List<String> include) {
+        log.debug("Received batch risk assessment request");
         
-        return loanDataList
-                .filter(application -> application != null)
-                .map(riskScoringService::calculateRiskAssessment)
-                .flatMap(assessment -> underwritingService.saveRiskAssessment(assessment))
-                .onErrorContinue((throwable, obj) -> 
-                    log.error("Error processing loan application: {}", obj, throwable));
+        return adaptiveConcurrencyLimiter.admit(AdaptiveConcurrencyLimiter.Priority.BATCH,
+                batchEvaluationService.evaluate(loanDataList).doOnNext(resultNotes(include)));
+    }
+
+    @Operation(
+        summary = "Stream batch evaluation (NDJSON)",
+        description = "Evaluates newline-delimited JSON loan applications as they arrive and streams one result line per input, in input order, containing the input's index and either the stored risk assessment or an error"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Results streamed as they are produced",
+            content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = BatchEvaluationResult.class))),
+        @ApiResponse(responseCode = "429", description = "Batches are being shed to keep capacity for single evaluations; retry after the Retry-After seconds",
+            content = @Content(mediaType = "application/json"))
+    })
+    @PostMapping(value = "/batch-evaluate", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BatchEvaluationResult> evaluateRiskBatchStream(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(
+                description = "One loan application JSON object per line",
+                required = true,
+                content = @Content(
+                    mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                    schema = @Schema(implementation = LoanApplication.class)
+                )
+            )
+            @RequestBody Flux<String> applicationLines,
+            @Parameter(description = INCLUDE_DESCRIPTION, example = INCLUDE_NOTES)
+            @RequestParam(required = false) List<String> include) {
+        log.debug("Received streaming batch risk assessment request");
+
+        return adaptiveConcurrencyLimiter.admit(AdaptiveConcurrencyLimiter.Priority.BATCH,
+                batchEvaluationService.evaluateLines(applicationLines).doOnNext(resultNotes(include)));
+    }
+
+    /**
+     * Notes are rendered from the reason codes only when requested; otherwise they are left out, including the
+     * text notes of assessments stored before reason codes existed.
+     */
+    private static UnaryOperator<RiskAssessment> notes(List<String> include) {
+        return include != null && include.contains(INCLUDE_NOTES) ? RiskAssessment::withNotes : RiskAssessment::withoutNotes;
+    }
+
+    private static Consumer<BatchEvaluationResult> resultNotes(List<String> include) {
+        UnaryOperator<RiskAssessment> notes = notes(include);
+        return result -> {
+            if (result.getAssessment() != null) {
+                result.setAssessment(notes.apply(result.getAssessment()));
+            }
+        };
     }
 }
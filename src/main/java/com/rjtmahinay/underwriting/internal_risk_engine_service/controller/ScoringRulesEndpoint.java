@@ -0,0 +1,52 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.controller;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidScoringRulesException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.ScoringRuleSetInfo;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.ScoringRuleSetProvider;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@code /actuator/scoringrules}: shows the scoring rules in use ({@code GET}) and reloads them from
+ * {@code risk-engine.scoring.rules.location} ({@code POST}), answering 400 when the file is invalid.
+ */
+@Component
+@Endpoint(id = "scoringrules")
+@RequiredArgsConstructor
+public class ScoringRulesEndpoint {
+
+    private final ScoringRuleSetProvider scoringRuleSetProvider;
+
+    @ReadOperation
+    public ScoringRuleSetInfo current() {
+        return info();
+    }
+
+    @WriteOperation
+    public WebEndpointResponse<Object> reload() {
+        try {
+            scoringRuleSetProvider.reload();
+        } catch (InvalidScoringRulesException e) {
+            Map<String, Object> errorResponse = new LinkedHashMap<>();
+            errorResponse.put("timestamp", LocalDateTime.now());
+            errorResponse.put("status", WebEndpointResponse.STATUS_BAD_REQUEST);
+            errorResponse.put("error", "Invalid Scoring Rules");
+            errorResponse.put("message", e.getMessage());
+            return new WebEndpointResponse<>(errorResponse, WebEndpointResponse.STATUS_BAD_REQUEST);
+        }
+        return new WebEndpointResponse<>(info());
+    }
+
+    private ScoringRuleSetInfo info() {
+        return new ScoringRuleSetInfo(scoringRuleSetProvider.current().getVersion(),
+                scoringRuleSetProvider.getLocation(), scoringRuleSetProvider.getLoadedAt());
+    }
+}
@@ -0,0 +1,33 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.controller;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.SlowRequest;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.SlowRequestRecorder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * {@code /actuator/slowrequests}: the slowest {@code /evaluate} requests since startup or the last reset,
+ * slowest first, with the time spent in each stage ({@code GET}); {@code DELETE} starts over.
+ */
+@Component
+@Endpoint(id = "slowrequests")
+@RequiredArgsConstructor
+public class SlowRequestsEndpoint {
+
+    private final SlowRequestRecorder slowRequestRecorder;
+
+    @ReadOperation
+    public List<SlowRequest> slowest() {
+        return slowRequestRecorder.slowest();
+    }
+
+    @DeleteOperation
+    public void reset() {
+        slowRequestRecorder.clear();
+    }
+}
@@ -1,7 +1,16 @@
 package com.rjtmahinay.underwriting.internal_risk_engine_service.controller;
 
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.ScoringRuleDefinition;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.PortfolioSimulation;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessmentTotals;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskScoreDistributionReport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.WindowedStatistics;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.PortfolioSimulationService;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.RecentStatistics;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.service.StatisticsStream;
 import com.rjtmahinay.underwriting.internal_risk_engine_service.service.UnderwritingService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -10,9 +19,13 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -23,6 +36,9 @@ import java.util.Map;
 public class StatisticsController {
 
     private final UnderwritingService underwritingService;
+    private final StatisticsStream statisticsStream;
+    private final RecentStatistics recentStatistics;
+    private final PortfolioSimulationService portfolioSimulationService;
 
     @Operation(
         summary = "Get overview statistics",
@@ -55,36 +71,75 @@ public class StatisticsController {
     })
     @GetMapping("/overview")
     public Mono<Map<String, Object>> getOverviewStatistics() {
-        log.info("Retrieving overview statistics");
+        log.debug("Retrieving overview statistics");
 
-        return Mono.zip(
-                underwritingService.getTotalAssessmentsCount(),
-                underwritingService.getApprovedAssessmentsCount(),
-                underwritingService.getRejectedAssessmentsCount(),
-                underwritingService.getAverageRiskScore()
-        ).map(tuple -> {
-            long totalAssessments = tuple.getT1();
-            long approvedAssessments = tuple.getT2();
-            long rejectedAssessments = tuple.getT3();
-            Double averageRiskScore = tuple.getT4();
+        return underwritingService.getAssessmentTotals().map(RiskAssessmentTotals::overview)
+                .doOnError(error -> log.error("Error retrieving overview statistics: {}", error.getMessage()));
+    }
 
-            double approvalRate = totalAssessments > 0 ? 
-                (double) approvedAssessments / totalAssessments * 100 : 0.0;
-            double rejectionRate = totalAssessments > 0 ? 
-                (double) rejectedAssessments / totalAssessments * 100 : 0.0;
+    @Operation(
+        summary = "Stream overview statistics",
+        description = "Streams the overview statistics as Server-Sent Events named overview, one every " +
+                      "risk-engine.statistics.stream-interval. All clients share one stream: the overview is " +
+                      "computed once per interval, and a client that falls behind receives only the latest one"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Overview statistics stream",
+            content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE))
+    })
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamOverviewStatistics() {
+        return statisticsStream.overviews();
+    }
 
-            Map<String, Object> statistics = Map.of(
-                "totalAssessments", (Object) totalAssessments,
-                "approvedAssessments", (Object) approvedAssessments,
-                "rejectedAssessments", (Object) rejectedAssessments,
-                "pendingAssessments", (Object) Math.max(0L, totalAssessments - approvedAssessments - rejectedAssessments),
-                "approvalRate", (Object) (Math.round(approvalRate * 100.0) / 100.0),
-                "rejectionRate", (Object) (Math.round(rejectionRate * 100.0) / 100.0),
-                "averageRiskScore", (Object) (averageRiskScore != null ? 
-                    Math.round(averageRiskScore * 100.0) / 100.0 : 0.0)
-            );
-            return statistics;
-        }).doOnError(error -> log.error("Error retrieving overview statistics: {}", error.getMessage()));
+    @Operation(
+        summary = "Get windowed statistics",
+        description = "Returns approval and rejection rates, average risk score and assessments per second over each of " +
+                      "risk-engine.statistics.windows (by default the last minute, 5 minutes and hour), up to the last " +
+                      "complete second. Served from per-second counters in memory, without querying the database"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Windowed statistics retrieved successfully",
+            content = @Content(mediaType = "application/json",
+                array = @ArraySchema(schema = @Schema(implementation = WindowedStatistics.class))))
+    })
+    @GetMapping("/windows")
+    public Mono<List<WindowedStatistics>> getWindowedStatistics() {
+        return Mono.fromSupplier(recentStatistics::windows);
+    }
+
+    @Operation(
+        summary = "Simulate alternate scoring rules",
+        description = "Scores the stored loan applications with the current scoring rules and with the current rules " +
+                      "changed as given, and returns both outcomes and the change of the approval rate, risk level mix, " +
+                      "average risk score and average interest rate. Any rule of the rules file can be given, in the " +
+                      "camelCase form of its name; rules left out keep their current value. Applications are scored from " +
+                      "an in-memory snapshot refreshed every risk-engine.simulation.snapshot-ttl, and nothing is written"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Simulation completed",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = PortfolioSimulation.class))),
+        @ApiResponse(responseCode = "400", description = "The alternate rules are invalid",
+            content = @Content(mediaType = "application/json"))
+    })
+    @PostMapping("/simulation")
+    public Mono<PortfolioSimulation> simulate(
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "Rules to change",
+                content = @Content(examples = @ExampleObject(name = "Lower maximum debt-to-income ratio", value = """
+                    {
+                      "approval": { "maxDebtToIncomeRatio": 0.40 },
+                      "creditScore": {
+                        "bands": [
+                          { "min": 760, "factor": 50 },
+                          { "min": 710, "factor": 100 },
+                          { "min": 660, "factor": 150 },
+                          { "min": 610, "factor": 200 }
+                        ]
+                      }
+                    }
+                    """)))
+            @RequestBody(required = false) ScoringRuleDefinition overrides) {
+        return portfolioSimulationService.simulate(overrides);
     }
 
     @Operation(
@@ -97,7 +152,7 @@ public class StatisticsController {
     })
     @GetMapping("/assessments/count")
     public Mono<Long> getTotalAssessmentsCount() {
-        log.info("Retrieving total assessments count");
+        log.debug("Retrieving total assessments count");
         return underwritingService.getTotalAssessmentsCount();
     }
 
@@ -111,7 +166,7 @@ public class StatisticsController {
     })
     @GetMapping("/assessments/approved/count")
     public Mono<Long> getApprovedAssessmentsCount() {
-        log.info("Retrieving approved assessments count");
+        log.debug("Retrieving approved assessments count");
         return underwritingService.getApprovedAssessmentsCount();
     }
 
@@ -125,7 +180,7 @@ public class StatisticsController {
     })
     @GetMapping("/assessments/rejected/count")
     public Mono<Long> getRejectedAssessmentsCount() {
-        log.info("Retrieving rejected assessments count");
+        log.debug("Retrieving rejected assessments count");
         return underwritingService.getRejectedAssessmentsCount();
     }
 
@@ -139,7 +194,21 @@ public class StatisticsController {
     })
     @GetMapping("/risk-score/average")
     public Mono<Double> getAverageRiskScore() {
-        log.info("Retrieving average risk score");
+        log.debug("Retrieving average risk score");
         return underwritingService.getAverageRiskScore();
     }
+
+    @Operation(
+        summary = "Get risk score distribution",
+        description = "Returns risk score histograms with p50, p90 and p99 overall and broken down by loan type and risk level. Buckets hold one score each, so reports from several instances can be merged by adding bucket counts"
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Distribution retrieved successfully",
+            content = @Content(mediaType = "application/json", schema = @Schema(implementation = RiskScoreDistributionReport.class)))
+    })
+    @GetMapping("/risk-score/distribution")
+    public Mono<RiskScoreDistributionReport> getRiskScoreDistribution() {
+        log.debug("Retrieving risk score distribution");
+        return underwritingService.getRiskScoreDistribution();
+    }
 }
@@ -1,5 +1,9 @@
 package com.rjtmahinay.underwriting.internal_risk_engine_service.exception;
 
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+
+import java.math.BigDecimal;
+
 public class DuplicateApplicationException extends RuntimeException {
     
     public DuplicateApplicationException(String message) {
@@ -13,4 +17,9 @@ public class DuplicateApplicationException extends RuntimeException {
     public static DuplicateApplicationException forEmail(String email) {
         return new DuplicateApplicationException("An active loan application already exists for email: " + email);
     }
+
+    public static DuplicateApplicationException forLoan(String email, LoanType loanType, BigDecimal loanAmount) {
+        return new DuplicateApplicationException("A " + loanType + " loan application for " + loanAmount.toPlainString() +
+                " was already submitted recently for email: " + email);
+    }
 }
@@ -1,6 +1,7 @@
 package com.rjtmahinay.underwriting.internal_risk_engine_service.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -54,6 +55,45 @@ public class GlobalExceptionHandler {
         return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse));
     }
 
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public Mono<ResponseEntity<Map<String, Object>>> handleInvalidPageRequest(InvalidPageRequestException ex) {
+        log.error("Invalid page request: {}", ex.getMessage());
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("timestamp", LocalDateTime.now());
+        errorResponse.put("status", HttpStatus.BAD_REQUEST.value());
+        errorResponse.put("error", "Invalid Page Request");
+        errorResponse.put("message", ex.getMessage());
+
+        return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse));
+    }
+
+    @ExceptionHandler(InvalidScoringRulesException.class)
+    public Mono<ResponseEntity<Map<String, Object>>> handleInvalidScoringRules(InvalidScoringRulesException ex) {
+        log.error("Invalid scoring rules: {}", ex.getMessage());
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("timestamp", LocalDateTime.now());
+        errorResponse.put("status", HttpStatus.BAD_REQUEST.value());
+        errorResponse.put("error", "Invalid Scoring Rules");
+        errorResponse.put("message", ex.getMessage());
+
+        return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse));
+    }
+
+    @ExceptionHandler(InvalidLoanApplicationException.class)
+    public Mono<ResponseEntity<Map<String, Object>>> handleInvalidLoanApplication(InvalidLoanApplicationException ex) {
+        log.error("Invalid loan application: {}", ex.getMessage());
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("timestamp", LocalDateTime.now());
+        errorResponse.put("status", HttpStatus.BAD_REQUEST.value());
+        errorResponse.put("error", "Invalid Loan Application");
+        errorResponse.put("message", ex.getMessage());
+
+        return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse));
+    }
+
     @ExceptionHandler(DuplicateApplicationException.class)
     public Mono<ResponseEntity<Map<String, Object>>> handleDuplicateApplication(DuplicateApplicationException ex) {
         log.error("Duplicate application: {}", ex.getMessage());
@@ -67,6 +107,22 @@ public class GlobalExceptionHandler {
         return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse));
     }
 
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public Mono<ResponseEntity<Map<String, Object>>> handleServiceOverloaded(ServiceOverloadedException ex) {
+        // Logged at debug: under overload every rejected request would add to the load
+        log.debug("Request rejected: {}", ex.getMessage());
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("timestamp", LocalDateTime.now());
+        errorResponse.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+        errorResponse.put("error", "Too Many Requests");
+        errorResponse.put("message", ex.getMessage());
+
+        return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(errorResponse));
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public Mono<ResponseEntity<Map<String, Object>>> handleRuntimeException(RuntimeException ex) {
         log.error("Runtime exception occurred: {}", ex.getMessage(), ex);
@@ -0,0 +1,12 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.exception;
+
+public class InvalidLoanApplicationException extends RuntimeException {
+
+    public InvalidLoanApplicationException(String message) {
+        super(message);
+    }
+
+    public InvalidLoanApplicationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.exception;
+
+public class InvalidScoringRulesException extends RuntimeException {
+
+    public InvalidScoringRulesException(String message) {
+        super(message);
+    }
+
+    public InvalidScoringRulesException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
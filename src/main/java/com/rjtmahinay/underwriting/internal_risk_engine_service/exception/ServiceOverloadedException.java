@@ -0,0 +1,37 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.exception;
+
+import java.time.Duration;
+
+public class ServiceOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ServiceOverloadedException(String message, Duration retryAfter) {
+        // Without a stack trace: rejecting must stay cheap when the service is overloaded
+        super(message, null, false, false);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public static ServiceOverloadedException forLimit(int limit, Duration retryAfter) {
+        return new ServiceOverloadedException("The service is at its concurrency limit of " + limit +
+                " requests, please retry later", retryAfter);
+    }
+
+    public static ServiceOverloadedException forBatch(int limit, Duration retryAfter) {
+        return new ServiceOverloadedException("Batch evaluations are not admitted while the service is near its " +
+                "concurrency limit of " + limit + " requests, please retry later", retryAfter);
+    }
+
+    public static ServiceOverloadedException forInsertQueue(int limit, Duration retryAfter) {
+        return new ServiceOverloadedException("Too many assessments are waiting to be stored (at most " + limit +
+                "), please retry later", retryAfter);
+    }
+
+    public static ServiceOverloadedException forShutdown(Duration retryAfter) {
+        return new ServiceOverloadedException("The service is shutting down, please retry later", retryAfter);
+    }
+}
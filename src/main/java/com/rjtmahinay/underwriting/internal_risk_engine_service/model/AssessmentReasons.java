@@ -0,0 +1,129 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Compact form of an assessment's notes: the {@link ReasonCode}s found by scoring and their parameters,
+ * packed into the {@code long} stored in {@code risk_assessments.reason_codes}.
+ * <p>
+ * The low 32 bits hold the code masks and the high 32 bits the credit score quoted by
+ * {@link ReasonCode#EXCELLENT_CREDIT_SCORE} or {@link ReasonCode#POOR_CREDIT_SCORE}. Every other value the
+ * notes quote (score, risk level, debt-to-income ratio) is a column of the assessment already, so the text
+ * is rendered only when a client asks for it.
+ */
+public final class AssessmentReasons {
+
+    private static final ReasonCode[] CODES = ReasonCode.values();
+    private static final long CODE_BITS = 0xFFFF_FFFFL;
+    private static final int NOTES_CAPACITY = 192;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private static final String HEADER = "Risk Assessment Summary:";
+    private static final String OVERALL_SCORE = "- Overall Risk Score: ";
+    private static final String EXCELLENT_CREDIT = "- Excellent credit score (";
+    private static final String POOR_CREDIT = "- Poor credit score (";
+    private static final String POOR_CREDIT_SUFFIX = ") - major risk factor";
+    private static final String HIGH_DTI = "- High debt-to-income ratio (";
+    private static final String SECURED = "- Loan secured with collateral";
+    private static final String UNSECURED = "- Unsecured loan increases risk";
+
+    private AssessmentReasons() {
+    }
+
+    /**
+     * @param codes       the {@link ReasonCode#mask()}s of the findings, or-ed together
+     * @param creditScore the credit score quoted by a credit score finding, otherwise 0
+     */
+    public static long encode(int codes, int creditScore) {
+        return ((long) creditScore << 32) | (codes & CODE_BITS);
+    }
+
+    public static boolean has(long reasons, ReasonCode code) {
+        return (reasons & code.mask()) != 0;
+    }
+
+    public static int creditScore(long reasons) {
+        return (int) (reasons >> 32);
+    }
+
+    public static Set<ReasonCode> decode(long reasons) {
+        Set<ReasonCode> codes = EnumSet.noneOf(ReasonCode.class);
+        for (ReasonCode code : CODES) {
+            if (has(reasons, code)) {
+                codes.add(code);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Renders the notes of an assessment with the given reasons.
+     */
+    public static String render(long reasons, int riskScore, RiskLevel riskLevel, BigDecimal debtToIncomeRatio) {
+        StringBuilder notes = new StringBuilder(NOTES_CAPACITY);
+        notes.append(HEADER).append('\n');
+        notes.append(OVERALL_SCORE).append(riskScore).append(" (").append(riskLevel.getDisplayName()).append(")\n");
+
+        if (has(reasons, ReasonCode.EXCELLENT_CREDIT_SCORE)) {
+            notes.append(EXCELLENT_CREDIT).append(creditScore(reasons)).append(")\n");
+        } else if (has(reasons, ReasonCode.POOR_CREDIT_SCORE)) {
+            notes.append(POOR_CREDIT).append(creditScore(reasons)).append(POOR_CREDIT_SUFFIX).append('\n');
+        }
+
+        if (has(reasons, ReasonCode.HIGH_DEBT_TO_INCOME)) {
+            notes.append(HIGH_DTI)
+                    .append(debtToIncomeRatio.multiply(HUNDRED).setScale(1, RoundingMode.HALF_UP))
+                    .append("%)\n");
+        }
+
+        if (has(reasons, ReasonCode.SECURED_BY_COLLATERAL)) {
+            notes.append(SECURED).append('\n');
+        } else if (has(reasons, ReasonCode.UNSECURED_LOAN)) {
+            notes.append(UNSECURED).append('\n');
+        }
+
+        return notes.toString();
+    }
+
+    /**
+     * Recovers the reasons from notes stored as text before reason codes existed.
+     *
+     * @return the reasons, or {@code null} unless rendering them reproduces {@code notes} (up to trailing
+     * whitespace) for the given score, level and ratio
+     */
+    public static Long parse(String notes, int riskScore, RiskLevel riskLevel, BigDecimal debtToIncomeRatio) {
+        int codes = 0;
+        int creditScore = 0;
+        try {
+            for (String line : notes.strip().split("\n")) {
+                line = line.strip();
+                if (line.startsWith(EXCELLENT_CREDIT) && line.endsWith(")")) {
+                    codes |= ReasonCode.EXCELLENT_CREDIT_SCORE.mask();
+                    creditScore = Integer.parseInt(line.substring(EXCELLENT_CREDIT.length(), line.length() - 1));
+                } else if (line.startsWith(POOR_CREDIT) && line.endsWith(POOR_CREDIT_SUFFIX)) {
+                    codes |= ReasonCode.POOR_CREDIT_SCORE.mask();
+                    creditScore = Integer.parseInt(
+                            line.substring(POOR_CREDIT.length(), line.length() - POOR_CREDIT_SUFFIX.length()));
+                } else if (line.startsWith(HIGH_DTI)) {
+                    codes |= ReasonCode.HIGH_DEBT_TO_INCOME.mask();
+                } else if (line.equals(SECURED)) {
+                    codes |= ReasonCode.SECURED_BY_COLLATERAL.mask();
+                } else if (line.equals(UNSECURED)) {
+                    codes |= ReasonCode.UNSECURED_LOAN.mask();
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        long reasons = encode(codes, creditScore);
+        if (debtToIncomeRatio == null && has(reasons, ReasonCode.HIGH_DEBT_TO_INCOME)) {
+            return null;
+        }
+        String rendered = render(reasons, riskScore, riskLevel, debtToIncomeRatio);
+        return rendered.stripTrailing().equals(notes.stripTrailing()) ? reasons : null;
+    }
+}
@@ -0,0 +1,34 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Outcome of one line of a streamed batch evaluation")
+public class BatchEvaluationResult {
+
+    @Schema(description = "Zero-based position of the application in the request stream", example = "0")
+    private long index;
+
+    @Schema(description = "Stored risk assessment, present when the application was evaluated successfully")
+    private RiskAssessment assessment;
+
+    @Schema(description = "Reason the application could not be evaluated or stored", example = "Invalid JSON: Unexpected end-of-input: expected close marker for Object")
+    private String error;
+
+    public static BatchEvaluationResult success(long index, RiskAssessment assessment) {
+        return BatchEvaluationResult.builder().index(index).assessment(assessment).build();
+    }
+
+    public static BatchEvaluationResult failure(long index, String error) {
+        return BatchEvaluationResult.builder().index(index).error(error).build();
+    }
+}
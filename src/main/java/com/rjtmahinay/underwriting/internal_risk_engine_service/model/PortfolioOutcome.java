@@ -0,0 +1,41 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Decisions on the simulated applications under one rule set")
+public class PortfolioOutcome {
+
+    @Schema(description = "Version of the rule set", example = "1.0")
+    private String ruleSetVersion;
+
+    @Schema(description = "Applications recommended for approval", example = "612000")
+    private long approvedApplications;
+
+    @Schema(description = "Applications not recommended for approval", example = "388000")
+    private long rejectedApplications;
+
+    @Schema(description = "Approved applications in percent", example = "61.2")
+    private double approvalRate;
+
+    @Schema(description = "Applications per risk level")
+    private Map<RiskLevel, Long> riskLevelCounts;
+
+    @Schema(description = "Applications per risk level in percent")
+    private Map<RiskLevel, Double> riskLevelMix;
+
+    @Schema(description = "Average risk score", example = "412.35")
+    private double averageRiskScore;
+
+    @Schema(description = "Average recommended interest rate in percent", example = "9.4375")
+    private double averageInterestRate;
+}
@@ -0,0 +1,59 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Stored loan applications scored with the current and with alternate scoring rules, and " +
+        "how the decisions would change; changes are scenario minus baseline, in percentage points for rates")
+public class PortfolioSimulation {
+
+    @Schema(description = "Applications scored", example = "1000000")
+    private long applications;
+
+    @Schema(description = "Stored applications left out because their amounts cannot be scored in cents", example = "0")
+    private long unscorableApplications;
+
+    @Schema(description = "Whether applications beyond risk-engine.simulation.max-applications were left out",
+            example = "false")
+    private boolean truncated;
+
+    @Schema(description = "When the snapshot of the applications was read from the database")
+    private LocalDateTime snapshotTakenAt;
+
+    @Schema(description = "Outcome under the current rules")
+    private PortfolioOutcome baseline;
+
+    @Schema(description = "Outcome under the alternate rules")
+    private PortfolioOutcome scenario;
+
+    @Schema(description = "Change of the approval rate", example = "-3.75")
+    private double approvalRateChange;
+
+    @Schema(description = "Change of the share of each risk level")
+    private Map<RiskLevel, Double> riskLevelMixChange;
+
+    @Schema(description = "Change of the average risk score", example = "12.5")
+    private double averageRiskScoreChange;
+
+    @Schema(description = "Change of the average recommended interest rate", example = "0.215")
+    private double averageInterestRateChange;
+
+    @Schema(description = "Applications rejected now that the alternate rules would approve", example = "1200")
+    private long newlyApproved;
+
+    @Schema(description = "Applications approved now that the alternate rules would reject", example = "38700")
+    private long newlyRejected;
+
+    @Schema(description = "Time taken to score both rule sets, in milliseconds", example = "850")
+    private long elapsedMillis;
+}
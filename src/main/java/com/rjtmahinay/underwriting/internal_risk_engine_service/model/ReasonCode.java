@@ -0,0 +1,23 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+/**
+ * Findings of a risk assessment that its notes explain. The bit of each code is persisted in
+ * {@code risk_assessments.reason_codes}, so bits must never be reused or renumbered.
+ */
+public enum ReasonCode {
+    EXCELLENT_CREDIT_SCORE(0),
+    POOR_CREDIT_SCORE(1),
+    HIGH_DEBT_TO_INCOME(2),
+    SECURED_BY_COLLATERAL(3),
+    UNSECURED_LOAN(4);
+
+    private final int mask;
+
+    ReasonCode(int bit) {
+        this.mask = 1 << bit;
+    }
+
+    public int mask() {
+        return mask;
+    }
+}
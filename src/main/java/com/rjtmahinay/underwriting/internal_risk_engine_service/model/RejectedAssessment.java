@@ -0,0 +1,58 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * An assessment that write-behind persistence acknowledged but {@code risk_assessments} rejected when it was
+ * flushed. {@code rejected_assessments} keeps every column of the assessment; this is the summary listed by
+ * {@code /actuator/rejectedassessments}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("rejected_assessments")
+@Schema(description = "Acknowledged risk assessment that the database rejected when it was flushed")
+public class RejectedAssessment {
+
+    @Id
+    @Schema(description = "ID the assessment was acknowledged with", example = "42")
+    private Long id;
+
+    @Column("loan_application_id")
+    @Schema(description = "ID of the loan application the assessment was for", example = "7")
+    private Long loanApplicationId;
+
+    @Column("risk_score")
+    @Schema(description = "Calculated risk score", example = "1025")
+    private Integer riskScore;
+
+    @Column("risk_level")
+    @Schema(description = "Risk level based on the risk score", example = "VERY_HIGH")
+    private RiskLevel riskLevel;
+
+    @Column("rule_set_version")
+    @Schema(description = "Version of the scoring rules the assessment was scored with", example = "1.0")
+    private String ruleSetVersion;
+
+    @Column("created_at")
+    @Schema(description = "When the assessment was created")
+    private LocalDateTime createdAt;
+
+    @Schema(description = "Why the database rejected the assessment",
+            example = "Check constraint violation: \"CONSTRAINT_F: (RISK_SCORE <= 1000)\"")
+    private String reason;
+
+    @Column("rejected_at")
+    @Schema(description = "When the assessment was rejected")
+    private LocalDateTime rejectedAt;
+}
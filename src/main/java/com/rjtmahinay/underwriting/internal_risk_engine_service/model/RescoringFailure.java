@@ -0,0 +1,37 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * An application a re-scoring job skipped, because scoring it failed or the database would not store its
+ * assessment. The job's checkpoint moves past it like past a re-scored application.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("rescoring_failures")
+public class RescoringFailure {
+
+    @Id
+    private Long id;
+
+    @Column("job_id")
+    private Long jobId;
+
+    @Column("loan_application_id")
+    private Long loanApplicationId;
+
+    private String reason;
+
+    @Column("failed_at")
+    private LocalDateTime failedAt;
+}
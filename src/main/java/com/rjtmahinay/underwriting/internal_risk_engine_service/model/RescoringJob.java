@@ -0,0 +1,57 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint of a re-scoring job: every application up to {@code lastApplicationId} has an assessment
+ * scored with {@code ruleSetVersion}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table("rescoring_jobs")
+public class RescoringJob {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        CANCELLED,
+        // The scoring rules changed before the job completed
+        SUPERSEDED
+    }
+
+    @Id
+    private Long id;
+
+    @Column("rule_set_version")
+    private String ruleSetVersion;
+
+    private Status status;
+
+    @Column("last_application_id")
+    private Long lastApplicationId;
+
+    @Column("total_applications")
+    private Long totalApplications;
+
+    @Column("rescored_applications")
+    private Long rescoredApplications;
+
+    @Column("failed_applications")
+    private Long failedApplications;
+
+    @Column("started_at")
+    private LocalDateTime startedAt;
+
+    @Column("updated_at")
+    private LocalDateTime updatedAt;
+}
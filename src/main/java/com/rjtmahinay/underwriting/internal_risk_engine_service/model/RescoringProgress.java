@@ -0,0 +1,72 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Progress of the latest re-scoring job")
+public class RescoringProgress {
+
+    @Schema(description = "Id of the job", example = "3")
+    private Long jobId;
+
+    @Schema(description = "RUNNING, COMPLETED, CANCELLED or SUPERSEDED as checkpointed, or FAILED when this " +
+            "instance stopped running it after an error; a RUNNING or FAILED job resumes when started again",
+            example = "RUNNING")
+    private String status;
+
+    @Schema(description = "Whether this instance is running the job now", example = "true")
+    private boolean active;
+
+    @Schema(description = "Version of the scoring rules the job scores with", example = "2.0")
+    private String ruleSetVersion;
+
+    @Schema(description = "Applications to re-score, counted when the job started or resumed", example = "1200000")
+    private long totalApplications;
+
+    @Schema(description = "Applications re-scored and stored", example = "480000")
+    private long rescoredApplications;
+
+    @Schema(description = "Applications skipped because scoring failed or the database rejected the assessment",
+            example = "2")
+    private long failedApplications;
+
+    @Schema(description = "Ids of the skipped applications, lowest first, at most 100", example = "[1207, 53310]")
+    private List<Long> failedApplicationIds;
+
+    @Schema(description = "Id of the last application re-scored or skipped; the job resumes after it", example = "480000")
+    private long lastApplicationId;
+
+    @Schema(description = "Re-scored applications in percent of the total", example = "40.0")
+    private double percentComplete;
+
+    @Schema(description = "Applications re-scored per second since this instance started or resumed the job",
+            example = "2500.0")
+    private double applicationsPerSecond;
+
+    @Schema(description = "Estimated completion at the current rate, while active")
+    private LocalDateTime estimatedCompletion;
+
+    @Schema(description = "Seconds the job's queries waited for live requests to get their database " +
+            "connections since this instance started or resumed it, summed over fetches and stores",
+            example = "1.2")
+    private double throttledSeconds;
+
+    @Schema(description = "When the job started")
+    private LocalDateTime startedAt;
+
+    @Schema(description = "When the job last stored a chunk or changed status")
+    private LocalDateTime updatedAt;
+
+    @Schema(description = "Why this instance stopped running the job, when it failed or was superseded")
+    private String error;
+}
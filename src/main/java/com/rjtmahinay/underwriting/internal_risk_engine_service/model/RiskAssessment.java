@@ -1,11 +1,15 @@
 package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.relational.core.mapping.Column;
 import org.springframework.data.relational.core.mapping.Table;
 
@@ -13,9 +17,10 @@ import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
+import java.util.Set;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Table("risk_assessments")
@@ -74,14 +79,59 @@ public class RiskAssessment {
     @Schema(description = "Risk factor based on loan type", example = "75")
     private Integer loanTypeFactor;
 
+    // Packed reason codes and parameters (see AssessmentReasons); null for rows stored with text notes only
+    @Column("reason_codes")
+    @JsonIgnore
+    private Long reasonCodes;
+
+    // Rendered on request from the reason codes; stored only by assessments that predate them
     @Column("assessment_notes")
-    @Schema(description = "Detailed notes about the risk assessment")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Detailed notes about the risk assessment; only returned when requested with include=notes")
     private String assessmentNotes;
 
     @Column("created_at")
     @Schema(description = "Timestamp when the assessment was created", accessMode = Schema.AccessMode.READ_ONLY)
     private LocalDateTime createdAt;
 
+    @Column("rule_set_version")
+    @Schema(description = "Version of the scoring rules the assessment was calculated with", example = "1.0",
+            accessMode = Schema.AccessMode.READ_ONLY)
+    private String ruleSetVersion;
+
+    // Loan type of the scored application; not persisted, only used to break down statistics
+    @Transient
+    @JsonIgnore
+    private LoanType loanType;
+
+    @Transient
+    @JsonProperty(value = "reasons", access = JsonProperty.Access.READ_ONLY)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    @Schema(description = "Findings explained by the assessment notes", example = "[\"EXCELLENT_CREDIT_SCORE\", \"SECURED_BY_COLLATERAL\"]",
+            accessMode = Schema.AccessMode.READ_ONLY)
+    public Set<ReasonCode> getReasons() {
+        return reasonCodes == null ? null : AssessmentReasons.decode(reasonCodes);
+    }
+
+    /**
+     * Returns this assessment with its notes rendered from the reason codes; a copy if they had to be rendered.
+     */
+    public RiskAssessment withNotes() {
+        if (assessmentNotes != null || reasonCodes == null || riskScore == null || riskLevel == null) {
+            return this;
+        }
+        return toBuilder()
+                .assessmentNotes(AssessmentReasons.render(reasonCodes, riskScore, riskLevel, debtToIncomeRatio))
+                .build();
+    }
+
+    /**
+     * Returns this assessment without notes; a copy if it had stored notes.
+     */
+    public RiskAssessment withoutNotes() {
+        return assessmentNotes == null ? this : toBuilder().assessmentNotes(null).build();
+    }
+
     /**
      * Calculates the monthly payment for a loan using the formula:
      * M = P * r * (1 + r)^n / ((1 + r)^n - 1)
@@ -0,0 +1,21 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "One page of risk assessments ordered by ID")
+public class RiskAssessmentPage {
+
+    @Schema(description = "Risk assessments on this page")
+    private List<RiskAssessment> items;
+
+    @Schema(description = "Opaque token for the next page; null when this is the last page", example = "djE6MTA1")
+    private String nextCursor;
+}
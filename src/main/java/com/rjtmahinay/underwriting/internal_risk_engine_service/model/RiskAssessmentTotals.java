@@ -0,0 +1,47 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * Aggregate counters over {@code risk_assessments}, read in one pass from the database or taken from
+ * the in-memory statistics.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RiskAssessmentTotals {
+
+    private long totalAssessments;
+    private long approvedAssessments;
+    private long rejectedAssessments;
+    private long riskScoreSum;
+
+    public double averageRiskScore() {
+        return totalAssessments > 0 ? (double) riskScoreSum / totalAssessments : 0.0;
+    }
+
+    /**
+     * The counts with approval and rejection rates in percent and the average risk score, rounded to two
+     * decimals, as served by {@code /statistics/overview} and {@code /statistics/stream}.
+     */
+    public Map<String, Object> overview() {
+        double approvalRate = totalAssessments > 0 ?
+            (double) approvedAssessments / totalAssessments * 100 : 0.0;
+        double rejectionRate = totalAssessments > 0 ?
+            (double) rejectedAssessments / totalAssessments * 100 : 0.0;
+
+        return Map.of(
+            "totalAssessments", (Object) totalAssessments,
+            "approvedAssessments", (Object) approvedAssessments,
+            "rejectedAssessments", (Object) rejectedAssessments,
+            "pendingAssessments", (Object) Math.max(0L, totalAssessments - approvedAssessments - rejectedAssessments),
+            "approvalRate", (Object) (Math.round(approvalRate * 100.0) / 100.0),
+            "rejectionRate", (Object) (Math.round(rejectionRate * 100.0) / 100.0),
+            "averageRiskScore", (Object) (Math.round(averageRiskScore() * 100.0) / 100.0)
+        );
+    }
+}
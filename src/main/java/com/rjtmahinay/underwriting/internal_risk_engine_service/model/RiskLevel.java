@@ -6,6 +6,16 @@ public enum RiskLevel {
     HIGH("High Risk", 501, 700),
     VERY_HIGH("Very High Risk", 701, 1000);
 
+    // Level of every score from 0 to MAX_TABLE_SCORE, so fromScore is a single array load
+    private static final int MAX_TABLE_SCORE = 1000;
+    private static final RiskLevel[] BY_SCORE = new RiskLevel[MAX_TABLE_SCORE + 1];
+
+    static {
+        for (int score = 0; score <= MAX_TABLE_SCORE; score++) {
+            BY_SCORE[score] = find(score);
+        }
+    }
+
     private final String displayName;
     private final int minScore;
     private final int maxScore;
@@ -29,6 +39,10 @@ public enum RiskLevel {
     }
 
     public static RiskLevel fromScore(int score) {
+        return score >= 0 && score <= MAX_TABLE_SCORE ? BY_SCORE[score] : VERY_HIGH;
+    }
+
+    private static RiskLevel find(int score) {
         for (RiskLevel level : values()) {
             if (score >= level.minScore && score <= level.maxScore) {
                 return level;
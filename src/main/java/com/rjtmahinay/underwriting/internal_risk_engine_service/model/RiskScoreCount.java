@@ -0,0 +1,19 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of stored assessments with the same loan type, risk level and risk score.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RiskScoreCount {
+
+    private LoanType loanType;
+    private RiskLevel riskLevel;
+    private int riskScore;
+    private long assessments;
+}
@@ -0,0 +1,69 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Histogram of risk scores with one bucket per score. Bucket counts are exact, so distributions from
+ * several instances can be combined with {@link #merge(RiskScoreDistribution)} and the percentiles of the
+ * result are the same as if every assessment had been recorded by a single instance.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Risk score histogram and percentiles")
+public class RiskScoreDistribution {
+
+    @Schema(description = "Number of assessments in the histogram", example = "1250")
+    private long count;
+
+    @Schema(description = "Median risk score (nearest rank); absent when the histogram is empty", example = "375")
+    private Integer p50;
+
+    @Schema(description = "90th percentile risk score (nearest rank)", example = "550")
+    private Integer p90;
+
+    @Schema(description = "99th percentile risk score (nearest rank)", example = "700")
+    private Integer p99;
+
+    @Schema(description = "Number of assessments per risk score, for non-empty buckets only", example = "{\"350\": 120, \"375\": 310}")
+    private SortedMap<Integer, Long> buckets;
+
+    public static RiskScoreDistribution of(SortedMap<Integer, Long> buckets) {
+        long count = 0;
+        for (long bucket : buckets.values()) {
+            count += bucket;
+        }
+        return new RiskScoreDistribution(count,
+                percentile(buckets, count, 0.50), percentile(buckets, count, 0.90), percentile(buckets, count, 0.99),
+                buckets);
+    }
+
+    public RiskScoreDistribution merge(RiskScoreDistribution other) {
+        SortedMap<Integer, Long> merged = new TreeMap<>(buckets);
+        other.getBuckets().forEach((score, bucket) -> merged.merge(score, bucket, Long::sum));
+        return of(merged);
+    }
+
+    // Smallest score whose cumulative count reaches ceil(quantile * count)
+    private static Integer percentile(SortedMap<Integer, Long> buckets, long count, double quantile) {
+        if (count == 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long cumulative = 0;
+        for (Map.Entry<Integer, Long> bucket : buckets.entrySet()) {
+            cumulative += bucket.getValue();
+            if (cumulative >= rank) {
+                return bucket.getKey();
+            }
+        }
+        return buckets.lastKey();
+    }
+}
@@ -0,0 +1,24 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Risk score distribution overall and broken down by loan type and risk level")
+public class RiskScoreDistributionReport {
+
+    @Schema(description = "Distribution over all assessments")
+    private RiskScoreDistribution overall;
+
+    @Schema(description = "Distribution per loan type of the assessed application")
+    private Map<LoanType, RiskScoreDistribution> byLoanType;
+
+    @Schema(description = "Distribution per assigned risk level")
+    private Map<RiskLevel, RiskScoreDistribution> byRiskLevel;
+}
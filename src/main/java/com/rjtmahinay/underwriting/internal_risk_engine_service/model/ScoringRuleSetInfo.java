@@ -0,0 +1,24 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Scoring rule set currently used to evaluate applications")
+public class ScoringRuleSetInfo {
+
+    @Schema(description = "Version stamped on the assessments scored with these rules", example = "1.0")
+    private String version;
+
+    @Schema(description = "Resource the rules were loaded from", example = "class path resource [scoring-rules.yaml]")
+    private String location;
+
+    @Schema(description = "When these rules were loaded")
+    private LocalDateTime loadedAt;
+}
@@ -0,0 +1,44 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "One of the slowest /evaluate requests, with the time spent in each stage")
+public class SlowRequest {
+
+    @Schema(description = "When the request's body was decoded")
+    private LocalDateTime receivedAt;
+
+    @Schema(description = "Id of the stored assessment", example = "6")
+    private Long assessmentId;
+
+    @Schema(description = "Loan type of the application", example = "MORTGAGE")
+    private LoanType loanType;
+
+    @Schema(description = "Risk level of the assessment", example = "LOW")
+    private RiskLevel riskLevel;
+
+    @Schema(description = "Risk score of the assessment", example = "275")
+    private Integer riskScore;
+
+    @Schema(description = "Time from the start of decoding to the stored assessment, in milliseconds", example = "12.48")
+    private double durationMillis;
+
+    @Schema(description = "JSON decoding of the application, in milliseconds", example = "0.05")
+    private double decodeMillis;
+
+    @Schema(description = "Scoring, in milliseconds", example = "0.02")
+    private double scoreMillis;
+
+    @Schema(description = "Storing the assessment, in milliseconds", example = "12.31")
+    private double storeMillis;
+}
@@ -0,0 +1,46 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.model;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Assessments stored during the last seconds of one window, ending with the last complete second")
+public class WindowedStatistics {
+
+    @Schema(description = "Window length", example = "5m")
+    private String window;
+
+    @Schema(description = "Window length in seconds", example = "300")
+    private long windowSeconds;
+
+    @Schema(description = "Seconds of the window the instance has been running for; shorter than the window just after startup",
+            example = "300")
+    private long observedSeconds;
+
+    @Schema(description = "Assessments stored in the window", example = "1500")
+    private long totalAssessments;
+
+    @Schema(description = "Approved assessments stored in the window", example = "1050")
+    private long approvedAssessments;
+
+    @Schema(description = "Rejected assessments stored in the window", example = "390")
+    private long rejectedAssessments;
+
+    @Schema(description = "Approved assessments in percent", example = "70.0")
+    private double approvalRate;
+
+    @Schema(description = "Rejected assessments in percent", example = "26.0")
+    private double rejectionRate;
+
+    @Schema(description = "Average risk score of the assessments in the window", example = "425.5")
+    private double averageRiskScore;
+
+    @Schema(description = "Assessments stored per second over the observed seconds", example = "5.0")
+    private double evaluationsPerSecond;
+}
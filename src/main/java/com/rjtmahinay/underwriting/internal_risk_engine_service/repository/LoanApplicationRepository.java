@@ -9,6 +9,8 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 
 @Repository
 public interface LoanApplicationRepository extends ReactiveCrudRepository<LoanApplication, Long> {
@@ -27,4 +29,27 @@ public interface LoanApplicationRepository extends ReactiveCrudRepository<LoanAp
 
     @Query("SELECT COUNT(*) FROM loan_applications WHERE email = :email")
     Mono<Long> countByEmail(String email);
+
+    /**
+     * Counts the applications created since {@code since} for the email, compared case-insensitively, with
+     * the same loan type and loan amount. Compares the generated {@code email_lower} column, so that the
+     * lookup uses {@code idx_loan_applications_duplicate_key} instead of scanning the table.
+     */
+    @Query("SELECT COUNT(*) FROM loan_applications WHERE email_lower = LOWER(:email) AND loan_type = :loanType " +
+            "AND loan_amount = :loanAmount AND created_at >= :since")
+    Mono<Long> countMatchingSince(String email, LoanType loanType, BigDecimal loanAmount, LocalDateTime since);
+
+    @Query("SELECT NEXT VALUE FOR loan_application_ids FROM SYSTEM_RANGE(1, :count)")
+    Flux<Long> reserveIds(Integer count);
+
+    @Query("SELECT id FROM loan_applications WHERE id IN (:ids)")
+    Flux<Long> findExistingIds(Collection<Long> ids);
+
+    Flux<LoanApplication> findByCreatedAtGreaterThanEqual(LocalDateTime since);
+
+    @Query("SELECT * FROM loan_applications WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<LoanApplication> findPageAfter(Long afterId, Integer limit);
+
+    @Query("SELECT COUNT(*) FROM loan_applications WHERE id > :afterId")
+    Mono<Long> countAfter(Long afterId);
 }
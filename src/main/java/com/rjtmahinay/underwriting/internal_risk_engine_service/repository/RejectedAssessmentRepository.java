@@ -0,0 +1,14 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.repository;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RejectedAssessment;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface RejectedAssessmentRepository extends ReactiveCrudRepository<RejectedAssessment, Long> {
+
+    @Query("SELECT * FROM rejected_assessments ORDER BY id DESC LIMIT :limit")
+    Flux<RejectedAssessment> findLatest(Integer limit);
+}
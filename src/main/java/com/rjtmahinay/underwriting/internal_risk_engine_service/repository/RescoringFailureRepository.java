@@ -0,0 +1,14 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.repository;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RescoringFailure;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface RescoringFailureRepository extends ReactiveCrudRepository<RescoringFailure, Long> {
+
+    @Query("SELECT loan_application_id FROM rescoring_failures WHERE job_id = :jobId ORDER BY loan_application_id LIMIT :limit")
+    Flux<Long> findApplicationIds(Long jobId, Integer limit);
+}
@@ -0,0 +1,30 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.repository;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RescoringJob;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface RescoringJobRepository extends ReactiveCrudRepository<RescoringJob, Long> {
+
+    Mono<RescoringJob> findFirstByOrderByIdDesc();
+
+    Mono<RescoringJob> findFirstByStatusOrderByIdDesc(RescoringJob.Status status);
+
+    /**
+     * Moves the checkpoint of a job past a stored chunk of {@code rescored} assessments and {@code failed}
+     * skipped applications.
+     */
+    @Modifying
+    @Query("UPDATE rescoring_jobs SET last_application_id = :lastApplicationId, " +
+            "rescored_applications = rescored_applications + :rescored, " +
+            "failed_applications = failed_applications + :failed, updated_at = CURRENT_TIMESTAMP WHERE id = :id")
+    Mono<Integer> checkpoint(Long id, Long lastApplicationId, Integer rescored, Integer failed);
+
+    @Modifying
+    @Query("UPDATE rescoring_jobs SET status = :status, updated_at = CURRENT_TIMESTAMP WHERE id = :id")
+    Mono<Integer> updateStatus(Long id, String status);
+}
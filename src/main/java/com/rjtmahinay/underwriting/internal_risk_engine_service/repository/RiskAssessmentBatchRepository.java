@@ -0,0 +1,73 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.repository;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk write operations that Spring Data's derived queries cannot express.
+ */
+public interface RiskAssessmentBatchRepository {
+
+    /**
+     * Inserts all assessments as one batched {@code INSERT} and returns them, in order,
+     * with their generated ids set.
+     */
+    Flux<RiskAssessment> insertAll(List<RiskAssessment> assessments);
+
+    /**
+     * Inserts every application together with its assessment, {@code assessments.get(i)} being that of
+     * {@code applications.get(i)}, as one batched statement that inserts both rows of a pair and makes the
+     * application's generated id the assessment's loan application id. Returns the assessments, in order,
+     * with their ids and loan application ids set; the applications are left unchanged.
+     * <p>
+     * A pair is not inserted atomically by itself, so callers run this in a transaction.
+     */
+    Flux<RiskAssessment> insertAllWithApplications(List<LoanApplication> applications, List<RiskAssessment> assessments);
+
+    /**
+     * Inserts assessments that already have their ids, or overwrites the rows with those ids, as one batched
+     * {@code MERGE}, so writing the same assessments again is harmless.
+     *
+     * @return the number of rows written
+     */
+    Mono<Long> upsertAll(List<RiskAssessment> assessments);
+
+    /**
+     * Inserts applications that already have their ids, or overwrites the rows with those ids, as one batched
+     * {@code MERGE}, like {@link #upsertAll}.
+     *
+     * @return the number of rows written
+     */
+    Mono<Long> upsertApplications(List<LoanApplication> applications);
+
+    /**
+     * Keeps an assessment that {@code risk_assessments} rejected in {@code rejected_assessments}, with the
+     * reason; writing the same assessment again overwrites its row.
+     */
+    Mono<Void> reject(RiskAssessment assessment, String reason);
+
+    /**
+     * Moves the id sequence past {@code id} unless it already is, so ids handed out before a restart that
+     * the database did not persist are not handed out again.
+     */
+    Mono<Void> reserveIdsThrough(long id);
+
+    /**
+     * Moves the loan application id sequence past {@code id}, like {@link #reserveIdsThrough}.
+     */
+    Mono<Void> reserveApplicationIdsThrough(long id);
+
+    /**
+     * Stores the reason codes of assessments whose notes were stored as text and drops the text, as one
+     * batched {@code UPDATE}. Rows that already have reason codes are left alone.
+     *
+     * @param reasonCodesById reason codes by assessment id
+     * @return the number of rows updated
+     */
+    Mono<Long> replaceNotesWithReasonCodes(Map<Long, Long> reasonCodesById);
+}
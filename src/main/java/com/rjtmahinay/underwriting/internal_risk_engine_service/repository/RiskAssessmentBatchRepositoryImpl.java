@@ -0,0 +1,256 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.repository;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+class RiskAssessmentBatchRepositoryImpl implements RiskAssessmentBatchRepository {
+
+    private static final String COLUMNS = "loan_application_id, risk_score, risk_level, approval_recommendation, " +
+            "recommended_interest_rate, debt_to_income_ratio, loan_to_value_ratio, credit_score_factor, " +
+            "income_factor, employment_factor, collateral_factor, loan_type_factor, assessment_notes, created_at, " +
+            "rule_set_version, reason_codes";
+
+    private static final String INSERT_SQL = "INSERT INTO risk_assessments (" + COLUMNS + ") " +
+            "VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11, $12, $13, $14, $15, $16)";
+
+    private static final String APPLICATION_COLUMNS = "applicant_name, email, age, annual_income, loan_amount, " +
+            "loan_type, loan_term_months, credit_score, employment_years, monthly_debt_payments, down_payment, " +
+            "has_collateral, collateral_value";
+
+    // The inner INSERT's FINAL TABLE hands the generated application id to the assessment row, the outer one
+    // returns both ids, so a pair costs one statement execution
+    private static final String INSERT_WITH_APPLICATION_SQL = "SELECT id, loan_application_id FROM FINAL TABLE (" +
+            "INSERT INTO risk_assessments (" + COLUMNS + ") " +
+            "SELECT id, $1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11, $12, $13, $14, $15 FROM FINAL TABLE (" +
+            "INSERT INTO loan_applications (" + APPLICATION_COLUMNS + ") " +
+            "VALUES ($16, $17, $18, $19, $20, $21, $22, $23, $24, $25, $26, $27, $28)))";
+
+    private static final String UPSERT_SQL = "MERGE INTO risk_assessments (id, " + COLUMNS + ") KEY (id) " +
+            "VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11, $12, $13, $14, $15, $16, $17)";
+
+    private static final String UPSERT_APPLICATION_SQL = "MERGE INTO loan_applications (id, " + APPLICATION_COLUMNS +
+            ", created_at) KEY (id) VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11, $12, $13, $14, $15)";
+
+    private static final String REJECT_SQL = "MERGE INTO rejected_assessments (id, " + COLUMNS + ", reason) KEY (id) " +
+            "VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11, $12, $13, $14, $15, $16, $17, $18)";
+
+    // DDL takes no parameters; the id is a long, so formatting it into the statement is safe
+    private static final String RESERVE_IDS_THROUGH_SQL = "ALTER SEQUENCE %s RESTART WITH (" +
+            "SELECT GREATEST(%d, BASE_VALUE) FROM INFORMATION_SCHEMA.SEQUENCES " +
+            "WHERE SEQUENCE_NAME = '%s')";
+
+    private static final String REPLACE_NOTES_SQL = "UPDATE risk_assessments " +
+            "SET reason_codes = $1, assessment_notes = NULL WHERE id = $2 AND reason_codes IS NULL";
+
+    private final DatabaseClient databaseClient;
+
+    @Override
+    public Flux<RiskAssessment> insertAll(List<RiskAssessment> assessments) {
+        if (assessments.isEmpty()) {
+            return Flux.empty();
+        }
+
+        // One prepared statement with a binding set per row; DatabaseClient's immutable bind
+        // chain copies every previous binding, which makes large chunks quadratic
+        return databaseClient.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(INSERT_SQL).returnGeneratedValues("id");
+            for (int row = 0; row < assessments.size(); row++) {
+                if (row > 0) {
+                    statement.add();
+                }
+                bind(statement, 0, assessments.get(row));
+            }
+            // Generated keys come back in insertion order
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.map((generated, metadata) -> generated.get("id", Long.class)))
+                    .index()
+                    .map(indexed -> {
+                        RiskAssessment assessment = assessments.get(indexed.getT1().intValue());
+                        assessment.setId(indexed.getT2());
+                        return assessment;
+                    });
+        });
+    }
+
+    @Override
+    public Flux<RiskAssessment> insertAllWithApplications(List<LoanApplication> applications, List<RiskAssessment> assessments) {
+        if (applications.size() != assessments.size()) {
+            throw new IllegalArgumentException("Expected one assessment per application, got " +
+                    assessments.size() + " for " + applications.size());
+        }
+        if (assessments.isEmpty()) {
+            return Flux.empty();
+        }
+
+        return databaseClient.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(INSERT_WITH_APPLICATION_SQL);
+            for (int row = 0; row < assessments.size(); row++) {
+                if (row > 0) {
+                    statement.add();
+                }
+                bindAssessment(statement, 0, assessments.get(row));
+                bindApplication(statement, 15, applications.get(row));
+            }
+            // One result per binding set, in order
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.map((inserted, metadata) -> new long[] {
+                            inserted.get("id", Long.class), inserted.get("loan_application_id", Long.class)}))
+                    .index()
+                    .map(indexed -> {
+                        RiskAssessment assessment = assessments.get(indexed.getT1().intValue());
+                        assessment.setId(indexed.getT2()[0]);
+                        assessment.setLoanApplicationId(indexed.getT2()[1]);
+                        return assessment;
+                    });
+        });
+    }
+
+    @Override
+    public Mono<Long> upsertAll(List<RiskAssessment> assessments) {
+        if (assessments.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        return databaseClient.inConnection(connection -> {
+            Statement statement = connection.createStatement(UPSERT_SQL);
+            for (int row = 0; row < assessments.size(); row++) {
+                if (row > 0) {
+                    statement.add();
+                }
+                RiskAssessment assessment = assessments.get(row);
+                statement.bind(0, assessment.getId());
+                bind(statement, 1, assessment);
+            }
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.getRowsUpdated())
+                    .reduce(0L, Long::sum);
+        });
+    }
+
+    @Override
+    public Mono<Long> upsertApplications(List<LoanApplication> applications) {
+        if (applications.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        return databaseClient.inConnection(connection -> {
+            Statement statement = connection.createStatement(UPSERT_APPLICATION_SQL);
+            for (int row = 0; row < applications.size(); row++) {
+                if (row > 0) {
+                    statement.add();
+                }
+                LoanApplication application = applications.get(row);
+                statement.bind(0, application.getId());
+                bindApplication(statement, 1, application);
+                bind(statement, 14, application.getCreatedAt(), LocalDateTime.class);
+            }
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.getRowsUpdated())
+                    .reduce(0L, Long::sum);
+        });
+    }
+
+    @Override
+    public Mono<Void> reject(RiskAssessment assessment, String reason) {
+        return databaseClient.inConnection(connection -> {
+            Statement statement = connection.createStatement(REJECT_SQL);
+            statement.bind(0, assessment.getId());
+            bind(statement, 1, assessment);
+            statement.bind(17, reason);
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.getRowsUpdated())
+                    .then();
+        });
+    }
+
+    @Override
+    public Mono<Void> reserveIdsThrough(long id) {
+        return databaseClient.sql(String.format(RESERVE_IDS_THROUGH_SQL, "risk_assessment_ids", id + 1, "RISK_ASSESSMENT_IDS")).then();
+    }
+
+    @Override
+    public Mono<Void> reserveApplicationIdsThrough(long id) {
+        return databaseClient.sql(String.format(RESERVE_IDS_THROUGH_SQL, "loan_application_ids", id + 1, "LOAN_APPLICATION_IDS")).then();
+    }
+
+    @Override
+    public Mono<Long> replaceNotesWithReasonCodes(Map<Long, Long> reasonCodesById) {
+        if (reasonCodesById.isEmpty()) {
+            return Mono.just(0L);
+        }
+
+        return databaseClient.inConnection(connection -> {
+            Statement statement = connection.createStatement(REPLACE_NOTES_SQL);
+            boolean first = true;
+            for (Map.Entry<Long, Long> row : reasonCodesById.entrySet()) {
+                if (!first) {
+                    statement.add();
+                }
+                first = false;
+                statement.bind(0, row.getValue()).bind(1, row.getKey());
+            }
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.getRowsUpdated())
+                    .reduce(0L, Long::sum);
+        });
+    }
+
+    private static void bind(Statement statement, int first, RiskAssessment assessment) {
+        bind(statement, first, assessment.getLoanApplicationId(), Long.class);
+        bindAssessment(statement, first + 1, assessment);
+    }
+
+    // Every column of COLUMNS but the loan application id
+    private static void bindAssessment(Statement statement, int first, RiskAssessment assessment) {
+        bind(statement, first, assessment.getRiskScore(), Integer.class);
+        bind(statement, first + 1, assessment.getRiskLevel() == null ? null : assessment.getRiskLevel().name(), String.class);
+        bind(statement, first + 2, assessment.getApprovalRecommendation(), Boolean.class);
+        bind(statement, first + 3, assessment.getRecommendedInterestRate(), BigDecimal.class);
+        bind(statement, first + 4, assessment.getDebtToIncomeRatio(), BigDecimal.class);
+        bind(statement, first + 5, assessment.getLoanToValueRatio(), BigDecimal.class);
+        bind(statement, first + 6, assessment.getCreditScoreFactor(), Integer.class);
+        bind(statement, first + 7, assessment.getIncomeFactor(), Integer.class);
+        bind(statement, first + 8, assessment.getEmploymentFactor(), Integer.class);
+        bind(statement, first + 9, assessment.getCollateralFactor(), Integer.class);
+        bind(statement, first + 10, assessment.getLoanTypeFactor(), Integer.class);
+        bind(statement, first + 11, assessment.getAssessmentNotes(), String.class);
+        bind(statement, first + 12, assessment.getCreatedAt(), LocalDateTime.class);
+        bind(statement, first + 13, assessment.getRuleSetVersion(), String.class);
+        bind(statement, first + 14, assessment.getReasonCodes(), Long.class);
+    }
+
+    private static void bindApplication(Statement statement, int first, LoanApplication application) {
+        bind(statement, first, application.getApplicantName(), String.class);
+        bind(statement, first + 1, application.getEmail(), String.class);
+        bind(statement, first + 2, application.getAge(), Integer.class);
+        bind(statement, first + 3, application.getAnnualIncome(), BigDecimal.class);
+        bind(statement, first + 4, application.getLoanAmount(), BigDecimal.class);
+        bind(statement, first + 5, application.getLoanType() == null ? null : application.getLoanType().name(), String.class);
+        bind(statement, first + 6, application.getLoanTermMonths(), Integer.class);
+        bind(statement, first + 7, application.getCreditScore(), Integer.class);
+        bind(statement, first + 8, application.getEmploymentYears(), Integer.class);
+        bind(statement, first + 9, application.getMonthlyDebtPayments(), BigDecimal.class);
+        bind(statement, first + 10, application.getDownPayment(), BigDecimal.class);
+        bind(statement, first + 11, application.getHasCollateral(), Boolean.class);
+        bind(statement, first + 12, application.getCollateralValue(), BigDecimal.class);
+    }
+
+    private static void bind(Statement statement, int index, Object value, Class<?> type) {
+        if (value == null) {
+            statement.bindNull(index, type);
+        } else {
+            statement.bind(index, value);
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.rjtmahinay.underwriting.internal_risk_engine_service.repository;
 
 import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessmentTotals;
 import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskLevel;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskScoreCount;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
@@ -9,7 +11,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Repository
-public interface RiskAssessmentRepository extends ReactiveCrudRepository<RiskAssessment, Long> {
+public interface RiskAssessmentRepository extends ReactiveCrudRepository<RiskAssessment, Long>, RiskAssessmentBatchRepository {
 
     Mono<RiskAssessment> findByLoanApplicationId(Long loanApplicationId);
 
@@ -20,6 +22,19 @@ public interface RiskAssessmentRepository extends ReactiveCrudRepository<RiskAss
     @Query("SELECT * FROM risk_assessments WHERE risk_score >= :minScore AND risk_score <= :maxScore")
     Flux<RiskAssessment> findByRiskScoreBetween(Integer minScore, Integer maxScore);
 
+    @Query("SELECT * FROM risk_assessments WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<RiskAssessment> findPageAfter(Long afterId, Integer limit);
+
+    @Query("SELECT * FROM risk_assessments WHERE id > :afterId AND reason_codes IS NULL " +
+            "AND assessment_notes IS NOT NULL ORDER BY id LIMIT :limit")
+    Flux<RiskAssessment> findWithTextNotesAfter(Long afterId, Integer limit);
+
+    /**
+     * Draws {@code count} ids from the sequence that also numbers assessments inserted without one.
+     */
+    @Query("SELECT NEXT VALUE FOR risk_assessment_ids FROM SYSTEM_RANGE(1, :count)")
+    Flux<Long> reserveIds(Integer count);
+
     @Query("SELECT COUNT(*) FROM risk_assessments WHERE approval_recommendation = true")
     Mono<Long> countApprovedAssessments();
 
@@ -28,4 +43,17 @@ public interface RiskAssessmentRepository extends ReactiveCrudRepository<RiskAss
 
     @Query("SELECT AVG(risk_score) FROM risk_assessments")
     Mono<Double> getAverageRiskScore();
+
+    @Query("SELECT COUNT(*) AS total_assessments, " +
+            "COUNT(CASE WHEN approval_recommendation = true THEN 1 END) AS approved_assessments, " +
+            "COUNT(CASE WHEN approval_recommendation = false THEN 1 END) AS rejected_assessments, " +
+            "COALESCE(SUM(CAST(risk_score AS BIGINT)), 0) AS risk_score_sum " +
+            "FROM risk_assessments")
+    Mono<RiskAssessmentTotals> getAssessmentTotals();
+
+    @Query("SELECT la.loan_type AS loan_type, ra.risk_level AS risk_level, ra.risk_score AS risk_score, " +
+            "COUNT(*) AS assessments " +
+            "FROM risk_assessments ra LEFT JOIN loan_applications la ON la.id = ra.loan_application_id " +
+            "GROUP BY la.loan_type, ra.risk_level, ra.risk_score")
+    Flux<RiskScoreCount> getRiskScoreCounts();
 }
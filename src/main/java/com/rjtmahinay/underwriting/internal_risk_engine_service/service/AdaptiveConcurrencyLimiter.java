@@ -0,0 +1,207 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for the scoring endpoints, enabled by {@code risk-engine.admission-control.enabled}.
+ * A request is admitted while fewer requests than the concurrency limit are in flight and rejected at once
+ * with a {@link ServiceOverloadedException} (429) otherwise, so that overload turns into fast rejections
+ * instead of every request timing out in the connection pool's queue. Batch requests are only admitted
+ * below {@code batch-share} of the limit, which keeps the rest of it for single evaluations.
+ * <p>
+ * The limit follows the latency of single evaluations, in the style of a gradient limiter. A moving
+ * average of their latency gives the recent latency; its lowest value over the last 10 to 20 seconds is
+ * the baseline, the latency without queueing. Once per recent latency, so that the effect of the previous
+ * change can show, the gradient {@code tolerance * baseline / recent}, kept between 0.5 and 1, scales the
+ * limit, and the square root of the limit is added as headroom for growth. While latency stays within tolerance of the baseline the limit
+ * grows; once queueing shows up as rising latency it shrinks. Only evaluations that ran with at least half
+ * the limit in flight change it, so an idle service does not inflate it. Batch requests count towards the
+ * limit but, being long streams, do not contribute latency samples.
+ * <p>
+ * The baseline is only as good as the latencies seen: if the service is overloaded from the start at
+ * {@code initial-limit}, the queueing at that limit is taken as normal, so the initial limit should be
+ * below the service's capacity.
+ * <p>
+ * Published meters: {@code risk.admission.limit}, {@code risk.admission.in.flight},
+ * {@code risk.admission.latency.recent} and {@code risk.admission.latency.baseline} (gauges), and
+ * {@code risk.admission.requests} tagged {@code priority} ({@code evaluation} or {@code batch}) and
+ * {@code outcome} ({@code admitted} or {@code rejected}).
+ */
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Priority {
+        EVALUATION,
+        BATCH
+    }
+
+    private static final double RECENT_WEIGHT = 0.1;
+    private static final long BASELINE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final RiskEngineProperties.AdmissionControl admissionControl;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter[] admitted = new Counter[Priority.values().length];
+    private final Counter[] rejected = new Counter[Priority.values().length];
+
+    private volatile double limit;
+    // Evaluation latencies in nanoseconds, guarded by this: the moving average and its lowest value in the
+    // current and the previous window, 0 before the first sample
+    private double recentLatency;
+    private double windowMinimum;
+    private double previousWindowMinimum;
+    private long windowStartedAt = System.nanoTime();
+    private long limitUpdatedAt = System.nanoTime();
+
+    public AdaptiveConcurrencyLimiter(RiskEngineProperties riskEngineProperties, MeterRegistry meterRegistry) {
+        this.admissionControl = riskEngineProperties.getAdmissionControl();
+        this.limit = admissionControl.getInitialLimit();
+
+        for (Priority priority : Priority.values()) {
+            admitted[priority.ordinal()] = requests(meterRegistry, priority, "admitted");
+            rejected[priority.ordinal()] = requests(meterRegistry, priority, "rejected");
+        }
+        Gauge.builder("risk.admission.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Concurrency limit of the scoring endpoints")
+                .register(meterRegistry);
+        Gauge.builder("risk.admission.in.flight", inFlight, AtomicInteger::get)
+                .description("Scoring requests in flight")
+                .register(meterRegistry);
+        TimeGauge.builder("risk.admission.latency.recent", this, TimeUnit.NANOSECONDS, limiter -> limiter.latency(false))
+                .description("Recent average latency of single evaluations")
+                .register(meterRegistry);
+        TimeGauge.builder("risk.admission.latency.baseline", this, TimeUnit.NANOSECONDS, limiter -> limiter.latency(true))
+                .description("Lowest recent average latency of single evaluations over the last 10 to 20 seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Subscribes to {@code request} if it is admitted, and fails with a {@link ServiceOverloadedException}
+     * otherwise.
+     */
+    public <T> Mono<T> admit(Priority priority, Mono<T> request) {
+        if (!admissionControl.isEnabled()) {
+            return request;
+        }
+        return Mono.defer(() -> {
+            int admittedWith = tryAcquire(priority);
+            if (admittedWith < 0) {
+                return Mono.error(reject(priority));
+            }
+            long started = System.nanoTime();
+            return request.doFinally(signal -> release(priority, signal, started, admittedWith));
+        });
+    }
+
+    /**
+     * Subscribes to {@code request} if it is admitted, and fails with a {@link ServiceOverloadedException}
+     * otherwise.
+     */
+    public <T> Flux<T> admit(Priority priority, Flux<T> request) {
+        if (!admissionControl.isEnabled()) {
+            return request;
+        }
+        return Flux.defer(() -> {
+            int admittedWith = tryAcquire(priority);
+            if (admittedWith < 0) {
+                return Flux.error(reject(priority));
+            }
+            long started = System.nanoTime();
+            return request.doFinally(signal -> release(priority, signal, started, admittedWith));
+        });
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the number of requests in flight including this one, or -1 if it is rejected.
+     */
+    private int tryAcquire(Priority priority) {
+        double current = limit;
+        int allowed = priority == Priority.BATCH
+                ? Math.max(1, (int) (current * admissionControl.getBatchShare()))
+                : (int) current;
+        while (true) {
+            int running = inFlight.get();
+            if (running >= allowed) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(running, running + 1)) {
+                admitted[priority.ordinal()].increment();
+                return running + 1;
+            }
+        }
+    }
+
+    private ServiceOverloadedException reject(Priority priority) {
+        rejected[priority.ordinal()].increment();
+        return priority == Priority.BATCH
+                ? ServiceOverloadedException.forBatch(getLimit(), admissionControl.getRetryAfter())
+                : ServiceOverloadedException.forLimit(getLimit(), admissionControl.getRetryAfter());
+    }
+
+    private void release(Priority priority, SignalType signal, long started, int admittedWith) {
+        inFlight.decrementAndGet();
+        // A cancelled request, e.g. by a client that went away, says nothing about the latency
+        if (priority == Priority.EVALUATION && signal != SignalType.CANCEL) {
+            update(System.nanoTime() - started, admittedWith);
+        }
+    }
+
+    private synchronized void update(long latency, int admittedWith) {
+        recentLatency = recentLatency == 0 ? latency : recentLatency + (latency - recentLatency) * RECENT_WEIGHT;
+        long now = System.nanoTime();
+        if (now - windowStartedAt >= BASELINE_WINDOW_NANOS) {
+            previousWindowMinimum = windowMinimum;
+            windowMinimum = 0;
+            windowStartedAt = now;
+        }
+        if (windowMinimum == 0 || recentLatency < windowMinimum) {
+            windowMinimum = recentLatency;
+        }
+
+        // Once per round trip: evaluations admitted before the last change still reflect the old limit
+        double current = limit;
+        if (admittedWith < current / 2 || now - limitUpdatedAt < recentLatency) {
+            return;
+        }
+        limitUpdatedAt = now;
+        double gradient = Math.max(0.5, Math.min(1.0, admissionControl.getTolerance() * baseline() / recentLatency));
+        double next = current * gradient + Math.sqrt(current);
+        next = current * (1 - admissionControl.getSmoothing()) + next * admissionControl.getSmoothing();
+        limit = Math.max(admissionControl.getMinLimit(), Math.min(admissionControl.getMaxLimit(), next));
+    }
+
+    private double baseline() {
+        return previousWindowMinimum == 0 ? windowMinimum : Math.min(windowMinimum, previousWindowMinimum);
+    }
+
+    private synchronized double latency(boolean baseline) {
+        return baseline ? baseline() : recentLatency;
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, Priority priority, String outcome) {
+        return Counter.builder("risk.admission.requests")
+                .description("Scoring requests by admission outcome")
+                .tags("priority", priority.name().toLowerCase(Locale.ROOT), "outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,38 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidPageRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Continuation token for keyset pagination over {@code risk_assessments}: the last id of the previous
+ * page, versioned and Base64url-encoded so clients treat it as opaque.
+ */
+final class AssessmentCursor {
+
+    private static final String PREFIX = "v1:";
+
+    private AssessmentCursor() {
+    }
+
+    static String encode(long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static long decode(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (decoded.startsWith(PREFIX)) {
+                long lastId = Long.parseLong(decoded.substring(PREFIX.length()));
+                if (lastId >= 0) {
+                    return lastId;
+                }
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidPageRequestException("Invalid cursor: " + cursor, ex);
+        }
+        throw new InvalidPageRequestException("Invalid cursor: " + cursor);
+    }
+}
@@ -0,0 +1,96 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.LoanApplicationRepository;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RiskAssessmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+
+/**
+ * Hands out ids for assessments, and for the new loan applications they belong to, that are answered before
+ * they are inserted. Ids are reserved from the {@code risk_assessment_ids} and {@code loan_application_ids}
+ * sequences in blocks of {@code risk-engine.write-behind.id-block-size}, the sequences that number every
+ * other insert, so they never collide with ids assigned by the database.
+ * <p>
+ * The next block is reserved in the background once half of the current one is used, so a request only
+ * waits for the database when ids are drawn faster than a block can be reserved. Concurrent requests that
+ * find no id left share one reservation. Ids left over when the application stops are never used.
+ */
+@Component
+@Slf4j
+public class AssessmentIdAllocator {
+
+    private final IdBlocks assessmentIds;
+    private final IdBlocks applicationIds;
+
+    public AssessmentIdAllocator(RiskAssessmentRepository riskAssessmentRepository,
+                                 LoanApplicationRepository loanApplicationRepository,
+                                 RiskEngineProperties riskEngineProperties) {
+        int blockSize = riskEngineProperties.getWriteBehind().getIdBlockSize();
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("risk-engine.write-behind.id-block-size must be positive, was " + blockSize);
+        }
+        this.assessmentIds = new IdBlocks("assessment", blockSize, riskAssessmentRepository::reserveIds);
+        this.applicationIds = new IdBlocks("loan application", blockSize, loanApplicationRepository::reserveIds);
+    }
+
+    public Mono<Long> nextId() {
+        return assessmentIds.next();
+    }
+
+    public Mono<Long> nextApplicationId() {
+        return applicationIds.next();
+    }
+
+    private static final class IdBlocks {
+
+        private final String kind;
+        private final int blockSize;
+        private final IntFunction<Flux<Long>> reserveIds;
+
+        private final Queue<Long> ids = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger available = new AtomicInteger();
+        private final AtomicReference<Mono<Void>> reservation = new AtomicReference<>();
+
+        IdBlocks(String kind, int blockSize, IntFunction<Flux<Long>> reserveIds) {
+            this.kind = kind;
+            this.blockSize = blockSize;
+            this.reserveIds = reserveIds;
+        }
+
+        Mono<Long> next() {
+            return Mono.defer(() -> {
+                Long id = ids.poll();
+                if (id == null) {
+                    return reserve().then(next());
+                }
+                if (available.decrementAndGet() < blockSize / 2) {
+                    reserve().subscribe(null, error -> log.warn("Failed to reserve {} ids: {}", kind, error.getMessage()));
+                }
+                return Mono.just(id);
+            });
+        }
+
+        private Mono<Void> reserve() {
+            // Only replaced while empty, so the reservation that clears it is the one it holds
+            return reservation.updateAndGet(inFlight -> inFlight != null ? inFlight
+                    : reserveIds.apply(blockSize).collectList()
+                            .doOnNext(block -> {
+                                ids.addAll(block);
+                                available.addAndGet(block.size());
+                                log.debug("Reserved {} {} ids", block.size(), kind);
+                            })
+                            .then()
+                            .doFinally(signal -> reservation.set(null))
+                            .cache());
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.ServiceOverloadedException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RiskAssessmentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces the single-evaluation inserts of concurrent {@code POST /evaluate} requests, enabled by
+ * {@code risk-engine.coalescing.enabled}.
+ * <p>
+ * {@link #save} queues the assessment, with its loan application if that is new; the queue is cut into
+ * batches of up to {@code max-batch-size} assessments, or fewer once the first one has waited
+ * {@code max-wait}, and each batch is written in its own transaction, at most {@code max-in-flight-batches}
+ * at a time: new applications and their assessments by one batched combined insert, assessments of stored
+ * applications by one multi-row insert. Every caller's {@code Mono} completes with its own assessment and
+ * generated ids once the batch has committed. If the batch fails, it is stored evaluation by evaluation, so
+ * only callers whose rows the database rejects see an error.
+ * <p>
+ * At most {@code max-queued-assessments} assessments wait for an insert to start; a caller beyond that fails
+ * at once with {@link ServiceOverloadedException}, answered with {@code 429}, instead of the queue growing
+ * without bound while the database falls behind. On shutdown the queue is written out, and every caller
+ * whose insert did not complete by then, or that arrives later, fails the same way instead of waiting forever.
+ * <p>
+ * Published meters: {@code risk.assessments.coalesced.batch.size} (assessments per insert),
+ * {@code risk.assessments.coalesced.wait} (time from {@link #save} to the start of its insert) and
+ * {@code risk.assessments.coalesced.inserts} (insert statements sent to the database).
+ */
+@Component
+@Slf4j
+public class AssessmentInsertCoalescer {
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final RiskAssessmentRepository riskAssessmentRepository;
+    private final RiskStatisticsAggregator riskStatisticsAggregator;
+    private final RiskAssessmentCache riskAssessmentCache;
+    private final TransactionalOperator transactionalOperator;
+
+    private final DistributionSummary batchSize;
+    private final Timer waitTime;
+    private final Counter inserts;
+
+    // Null unless coalescing is enabled
+    private FluxSink<PendingInsert> pending;
+    // Callers not yet answered; whoever removes an entry answers its caller
+    private final Set<PendingInsert> outstanding = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean closed;
+    private int maxQueuedAssessments;
+
+    public AssessmentInsertCoalescer(RiskAssessmentRepository riskAssessmentRepository,
+                                     RiskStatisticsAggregator riskStatisticsAggregator,
+                                     RiskAssessmentCache riskAssessmentCache,
+                                     TransactionalOperator transactionalOperator,
+                                     RiskEngineProperties riskEngineProperties,
+                                     MeterRegistry meterRegistry) {
+        this.riskAssessmentRepository = riskAssessmentRepository;
+        this.riskStatisticsAggregator = riskStatisticsAggregator;
+        this.riskAssessmentCache = riskAssessmentCache;
+        this.transactionalOperator = transactionalOperator;
+        this.batchSize = DistributionSummary.builder("risk.assessments.coalesced.batch.size")
+                .description("Assessments written by one coalesced batch")
+                .register(meterRegistry);
+        this.waitTime = Timer.builder("risk.assessments.coalesced.wait")
+                .description("Time an assessment waited for its coalesced insert to start")
+                .register(meterRegistry);
+        this.inserts = Counter.builder("risk.assessments.coalesced.inserts")
+                .description("Insert statements sent for coalesced assessments")
+                .register(meterRegistry);
+
+        RiskEngineProperties.Coalescing coalescing = riskEngineProperties.getCoalescing();
+        if (coalescing.isEnabled()) {
+            maxQueuedAssessments = coalescing.getMaxQueuedAssessments();
+            Flux.<PendingInsert>create(sink -> pending = sink)
+                    // While max-in-flight-batches inserts run the queue fills, up to max-queued-assessments
+                    .onBackpressureBuffer(maxQueuedAssessments, this::rejectQueueFull, BufferOverflowStrategy.DROP_LATEST)
+                    .bufferTimeout(coalescing.getMaxBatchSize(), coalescing.getMaxWait(), true)
+                    .flatMap(this::insert, coalescing.getMaxInFlightBatches())
+                    .doFinally(signal -> {
+                        closed = true;
+                        failOutstanding();
+                        stopped.countDown();
+                    })
+                    .subscribe(null, error -> log.error("Insert coalescing stopped: {}", error.getMessage(), error));
+        }
+    }
+
+    public boolean isEnabled() {
+        return pending != null;
+    }
+
+    /**
+     * Stores the assessment of a stored loan application with the next coalesced batch.
+     */
+    public Mono<RiskAssessment> save(RiskAssessment assessment) {
+        return save(null, assessment);
+    }
+
+    /**
+     * Stores the assessment with the next coalesced batch and returns it with its generated id. A non-null
+     * {@code application} is new: it is inserted with the assessment, whose loan application id becomes the
+     * application's generated id. Fails with {@link ServiceOverloadedException} if the queue is full or the
+     * service is shutting down.
+     */
+    public Mono<RiskAssessment> save(LoanApplication application, RiskAssessment assessment) {
+        return Mono.create(caller -> {
+            PendingInsert insert = new PendingInsert(application, assessment, caller);
+            // Registered before closed is read, so close() answers it if the sink no longer takes it
+            outstanding.add(insert);
+            if (closed) {
+                fail(insert, ServiceOverloadedException.forShutdown(RETRY_AFTER));
+            } else {
+                pending.next(insert);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        if (pending == null) {
+            return;
+        }
+        closed = true;
+        // Writes what is queued; the pipeline ends after the last insert
+        pending.complete();
+        try {
+            if (!stopped.await(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("Stopping with {} coalesced assessments not stored", outstanding.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failOutstanding();
+    }
+
+    private void rejectQueueFull(PendingInsert insert) {
+        fail(insert, ServiceOverloadedException.forInsertQueue(maxQueuedAssessments, RETRY_AFTER));
+    }
+
+    private void failOutstanding() {
+        for (PendingInsert insert : outstanding) {
+            fail(insert, ServiceOverloadedException.forShutdown(RETRY_AFTER));
+        }
+    }
+
+    private void succeed(PendingInsert insert, RiskAssessment saved) {
+        if (outstanding.remove(insert)) {
+            insert.caller.success(saved);
+        }
+    }
+
+    private void fail(PendingInsert insert, Throwable error) {
+        if (outstanding.remove(insert)) {
+            insert.caller.error(error);
+        }
+    }
+
+    private Mono<Void> insert(List<PendingInsert> batch) {
+        long started = System.nanoTime();
+        for (PendingInsert insert : batch) {
+            waitTime.record(started - insert.queuedAt, TimeUnit.NANOSECONDS);
+        }
+        batchSize.record(batch.size());
+
+        List<LoanApplication> newApplications = new ArrayList<>();
+        List<RiskAssessment> ofNewApplications = new ArrayList<>();
+        List<RiskAssessment> ofStoredApplications = new ArrayList<>();
+        for (PendingInsert insert : batch) {
+            if (insert.application != null) {
+                newApplications.add(insert.application);
+                ofNewApplications.add(insert.assessment);
+            } else {
+                ofStoredApplications.add(insert.assessment);
+            }
+        }
+        inserts.increment((newApplications.isEmpty() ? 0 : 1) + (ofStoredApplications.isEmpty() ? 0 : 1));
+
+        // Both inserts set the ids on the assessments in place
+        return Flux.concat(riskAssessmentRepository.insertAllWithApplications(newApplications, ofNewApplications),
+                        riskAssessmentRepository.insertAll(ofStoredApplications))
+                .as(transactionalOperator::transactional)
+                .then(Mono.<Void>fromRunnable(() -> {
+                    log.debug("Saved {} coalesced risk assessments, {} with new loan applications",
+                            batch.size(), newApplications.size());
+                    for (PendingInsert insert : batch) {
+                        stored(insert.assessment);
+                        succeed(insert, insert.assessment);
+                    }
+                }))
+                .onErrorResume(error -> {
+                    log.debug("Coalesced insert of {} assessments failed, storing them one by one: {}",
+                            batch.size(), error.getMessage());
+                    return insertIndividually(batch);
+                });
+    }
+
+    private Mono<Void> insertIndividually(List<PendingInsert> batch) {
+        return Flux.fromIterable(batch)
+                .concatMap(insert -> {
+                    inserts.increment();
+                    // Ids generated by the rolled-back batch insert are not in the table
+                    insert.assessment.setId(null);
+                    Mono<RiskAssessment> save = insert.application == null
+                            ? riskAssessmentRepository.save(insert.assessment)
+                            : riskAssessmentRepository.insertAllWithApplications(
+                                    List.of(insert.application), List.of(insert.assessment))
+                            .as(transactionalOperator::transactional)
+                            .single();
+                    return save
+                            .doOnNext(saved -> {
+                                stored(saved);
+                                succeed(insert, saved);
+                            })
+                            .doOnError(error -> {
+                                log.error("Failed to save risk assessment: {}", error.getMessage());
+                                fail(insert, error);
+                            })
+                            .then()
+                            .onErrorResume(error -> Mono.empty());
+                })
+                .then();
+    }
+
+    private void stored(RiskAssessment assessment) {
+        riskStatisticsAggregator.record(assessment);
+        riskAssessmentCache.put(assessment);
+    }
+
+    private static final class PendingInsert {
+        // Null for the assessment of a stored application
+        final LoanApplication application;
+        final RiskAssessment assessment;
+        final MonoSink<RiskAssessment> caller;
+        final long queuedAt = System.nanoTime();
+
+        PendingInsert(LoanApplication application, RiskAssessment assessment, MonoSink<RiskAssessment> caller) {
+            this.application = application;
+            this.assessment = assessment;
+            this.caller = caller;
+        }
+    }
+}
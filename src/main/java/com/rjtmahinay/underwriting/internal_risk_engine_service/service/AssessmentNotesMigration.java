@@ -0,0 +1,78 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.AssessmentReasons;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RiskAssessmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts assessments stored with text notes, before reason codes existed, to reason codes.
+ * <p>
+ * Runs in the background once the application is ready unless {@code risk-engine.notes.migrate-on-startup}
+ * is off, walking the unconverted rows by id in chunks of {@code migration-chunk-size}. The text of a row is
+ * parsed back into reason codes and only dropped when rendering those codes reproduces it, so no row loses
+ * information; any other row keeps its text, which is returned as stored. Converted rows are invalidated in
+ * the {@link RiskAssessmentCache}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AssessmentNotesMigration {
+
+    private final RiskAssessmentRepository riskAssessmentRepository;
+    private final RiskAssessmentCache riskAssessmentCache;
+    private final RiskEngineProperties riskEngineProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (!riskEngineProperties.getNotes().isMigrateOnStartup()) {
+            return;
+        }
+        migrate().subscribe(
+                converted -> log.info("Converted the text notes of {} assessments to reason codes", converted),
+                error -> log.error("Failed to convert text notes to reason codes: {}", error.getMessage(), error));
+    }
+
+    /**
+     * Converts every assessment whose notes can be expressed as reason codes.
+     *
+     * @return the number of assessments converted
+     */
+    public Mono<Long> migrate() {
+        int chunkSize = riskEngineProperties.getNotes().getMigrationChunkSize();
+        return riskAssessmentRepository.findWithTextNotesAfter(0L, chunkSize).collectList()
+                .expand(chunk -> chunk.size() < chunkSize
+                        ? Mono.empty()
+                        : riskAssessmentRepository.findWithTextNotesAfter(chunk.get(chunk.size() - 1).getId(), chunkSize)
+                                .collectList())
+                .concatMap(this::convert)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> convert(List<RiskAssessment> chunk) {
+        Map<Long, Long> reasonCodesById = new LinkedHashMap<>();
+        for (RiskAssessment assessment : chunk) {
+            Long reasonCodes = assessment.getRiskScore() == null || assessment.getRiskLevel() == null ? null
+                    : AssessmentReasons.parse(assessment.getAssessmentNotes(), assessment.getRiskScore(),
+                    assessment.getRiskLevel(), assessment.getDebtToIncomeRatio());
+            if (reasonCodes != null) {
+                reasonCodesById.put(assessment.getId(), reasonCodes);
+            } else {
+                log.debug("Keeping the text notes of assessment {}: they do not match the reason codes",
+                        assessment.getId());
+            }
+        }
+        return riskAssessmentRepository.replaceNotesWithReasonCodes(reasonCodesById)
+                .doOnNext(updated -> reasonCodesById.keySet().forEach(riskAssessmentCache::invalidate));
+    }
+}
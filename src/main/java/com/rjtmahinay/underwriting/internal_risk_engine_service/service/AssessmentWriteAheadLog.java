@@ -0,0 +1,534 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties.WriteAheadLogSync;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskLevel;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of assessments that have been answered but not yet inserted, kept in memory-mapped
+ * segment files so an append is a copy into the page cache. The assessment of a new loan application is
+ * logged in one record with the application, so the two are stored or lost together.
+ * <p>
+ * A segment starts with a header holding a magic number, the format version and the offset up to which its
+ * records have been stored in the database. Each record is its length, the CRC-32 of its payload and the
+ * payload; a zero length ends the segment. Records are appended to the newest segment until one does not
+ * fit, when a new segment is started. A position identifies the end of a record as the segment number in
+ * the high and the offset in the low 32 bits, so positions increase in append order.
+ * <p>
+ * The next segment is created, sized and mapped ahead of time on a {@link Schedulers#boundedElastic()}
+ * worker, and a full segment is forced by the next {@link #sync(long)} rather than when it fills, so
+ * starting a segment on the appending thread, typically an event loop, only swaps buffers.
+ * <p>
+ * {@link #markStored(long)} moves the stored offset of a segment and deletes every segment before it, and
+ * the segment itself once a newer one has been started. {@link #open} reads the records after the stored
+ * offset of every remaining segment, stopping at the first torn or corrupt record, and starts a new segment
+ * for the appends that follow; a segment prepared but never written to replays as empty and is deleted then.
+ * Appends and stores must each be issued in position order.
+ */
+@Slf4j
+final class AssessmentWriteAheadLog implements AutoCloseable {
+
+    private static final int MAGIC = 0x52414C47;
+    private static final int VERSION = 1;
+    private static final int STORED_OFFSET = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MIN_SEGMENT_SIZE = 4096;
+
+    private static final String SEGMENT_FORMAT = "assessments-%012d.wal";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("assessments-(\\d{12})\\.wal");
+
+    private final Path directory;
+    private final int segmentSize;
+    private final WriteAheadLogSync sync;
+
+    // Segments not yet deleted, by number; the last one is written to
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    // The segment after the active one once it has been mapped, and whether it is being mapped
+    private Segment next;
+    private boolean preparing;
+    // Full segments not yet forced to disk; only filled unless sync is NEVER
+    private final List<Segment> unforced = new ArrayList<>();
+
+    // Guarded by syncLock; position up to which the log has been forced to disk
+    private final Object syncLock = new Object();
+    private long syncedPosition;
+
+    private AssessmentWriteAheadLog(Path directory, int segmentSize, WriteAheadLogSync sync) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+    }
+
+    /**
+     * Opens the log in {@code directory}, creating it if needed, and passes every assessment that was
+     * appended but not stored to {@code replay} with its application, if it was logged with one, and its
+     * position, in append order.
+     */
+    static AssessmentWriteAheadLog open(Path directory, long segmentSize, WriteAheadLogSync sync,
+                                        Replay replay) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Write-ahead log segments must be between " + MIN_SEGMENT_SIZE
+                    + " bytes and 2 GB, were " + segmentSize + " bytes");
+        }
+        Files.createDirectories(directory);
+        AssessmentWriteAheadLog wal = new AssessmentWriteAheadLog(directory, (int) segmentSize, sync);
+
+        long last = 0;
+        for (Map.Entry<Long, Path> file : wal.segmentFiles().entrySet()) {
+            Segment segment = wal.map(file.getKey(), file.getValue());
+            if (segment.buffer.getInt(0) != MAGIC || segment.buffer.getInt(4) != VERSION) {
+                throw new IOException("Not a write-ahead log segment of this version: " + file.getValue());
+            }
+            segment.end = wal.replay(segment, replay);
+            if (segment.end > Math.max(HEADER_SIZE, segment.buffer.getInt(STORED_OFFSET))) {
+                wal.segments.put(segment.number, segment);
+            } else {
+                wal.delete(segment);
+            }
+            last = segment.number;
+        }
+        wal.startSegment(last + 1);
+        return wal;
+    }
+
+    /**
+     * Appends an assessment, with its loan application if that is new and not stored yet, otherwise
+     * {@code null}, and returns its position. It is durable once {@link #sync(long)} has been called with
+     * that position, or according to the sync mode the caller applies.
+     */
+    synchronized long append(LoanApplication application, RiskAssessment assessment) {
+        byte[] payload = encode(application, assessment);
+        if (RECORD_HEADER_SIZE + payload.length + Integer.BYTES > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("Assessment " + assessment.getId() + " does not fit in a segment");
+        }
+        if (active.end + RECORD_HEADER_SIZE + payload.length + Integer.BYTES > segmentSize) {
+            if (sync != WriteAheadLogSync.NEVER) {
+                unforced.add(active);
+            }
+            startSegment(active.number + 1);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        MappedByteBuffer buffer = active.buffer;
+        int offset = active.end;
+        buffer.put(offset + RECORD_HEADER_SIZE, payload);
+        buffer.putInt(offset + 4, (int) crc.getValue());
+        // The length goes last, so a record is never visible without its payload
+        buffer.putInt(offset, payload.length);
+        active.end = offset + RECORD_HEADER_SIZE + payload.length;
+        return position(active.number, active.end);
+    }
+
+    /**
+     * Forces the log to disk up to at least {@code position}, including the segments filled since the last
+     * call. Callers that find another caller has already forced past their position return without
+     * touching the disk.
+     */
+    void sync(long position) {
+        synchronized (syncLock) {
+            if (position <= syncedPosition) {
+                return;
+            }
+            List<Segment> full;
+            Segment segment;
+            int end;
+            synchronized (this) {
+                full = new ArrayList<>(unforced);
+                unforced.clear();
+                segment = active;
+                end = active.end;
+            }
+            for (Segment filled : full) {
+                force(filled, filled.end);
+            }
+            force(segment, end);
+            syncedPosition = position(segment.number, end);
+        }
+    }
+
+    // Guarded by syncLock; forces what was appended to the segment after syncedPosition, up to end
+    private void force(Segment segment, int end) {
+        int from = syncedPosition >>> 32 == segment.number ? (int) syncedPosition : 0;
+        segment.buffer.force(from, end - from);
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     */
+    void sync() {
+        long position;
+        synchronized (this) {
+            position = position(active.number, active.end);
+        }
+        sync(position);
+    }
+
+    /**
+     * Records that every assessment up to {@code position} is stored in the database and deletes the
+     * segments that hold nothing else.
+     */
+    synchronized void markStored(long position) {
+        long number = position >>> 32;
+        Segment segment = segments.get(number);
+        if (segment == null) {
+            return;
+        }
+        segment.buffer.putInt(STORED_OFFSET, (int) position);
+
+        Iterator<Segment> older = segments.headMap(number).values().iterator();
+        while (older.hasNext()) {
+            delete(older.next());
+            older.remove();
+        }
+        if (segment != active && (int) position >= segment.end) {
+            delete(segment);
+            segments.remove(number);
+        }
+    }
+
+    synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    @Override
+    public void close() {
+        sync();
+    }
+
+    private int replay(Segment segment, Replay replay) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = Math.max(HEADER_SIZE, buffer.getInt(STORED_OFFSET));
+        int replayed = 0;
+        while (offset + RECORD_HEADER_SIZE <= segmentSize) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(offset + RECORD_HEADER_SIZE, payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                log.warn("Ignoring the corrupt tail of write-ahead log segment {} from offset {}", segment.number, offset);
+                break;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+            Logged logged = decode(payload);
+            replay.accept(logged.application, logged.assessment, position(segment.number, offset));
+            replayed++;
+        }
+        log.debug("Replayed {} assessments from write-ahead log segment {}", replayed, segment.number);
+        return offset;
+    }
+
+    private void startSegment(long number) {
+        Segment segment;
+        if (next != null && next.number == number) {
+            segment = next;
+        } else {
+            if (active != null) {
+                // Only when segments fill faster than one is mapped, or mapping the next one failed
+                log.warn("Mapping write-ahead log segment {} on the appending thread; it was not prepared in time", number);
+            }
+            segment = newSegment(number);
+        }
+        next = null;
+        segments.put(number, segment);
+        active = segment;
+        prepareNext();
+    }
+
+    // Guarded by this; maps the segment after the active one on a worker thread
+    private void prepareNext() {
+        if (preparing) {
+            return;
+        }
+        preparing = true;
+        long number = active.number + 1;
+        Schedulers.boundedElastic().schedule(() -> {
+            Segment segment = null;
+            try {
+                segment = map(number, directory.resolve(String.format(SEGMENT_FORMAT, number)));
+            } catch (UncheckedIOException e) {
+                log.warn("Failed to prepare write-ahead log segment {}: {}", number, e.getMessage());
+            }
+            synchronized (this) {
+                preparing = false;
+                if (segment == null) {
+                    return;
+                }
+                // The header is only written while the segment is still ahead of the active one, so a late
+                // preparation never resets the stored offset of a segment that was mapped on the appending thread
+                if (active.number < number) {
+                    writeHeader(segment);
+                    next = segment;
+                } else {
+                    prepareNext();
+                }
+            }
+        });
+    }
+
+    // A mapped segment with its header written and no records, which replays as empty
+    private Segment newSegment(long number) {
+        Segment segment = map(number, directory.resolve(String.format(SEGMENT_FORMAT, number)));
+        writeHeader(segment);
+        return segment;
+    }
+
+    private static void writeHeader(Segment segment) {
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.buffer.putInt(STORED_OFFSET, HEADER_SIZE);
+        segment.end = HEADER_SIZE;
+    }
+
+    private Segment map(long number, Path file) {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed; a new file reads as zeros past its end
+            return new Segment(number, file, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map write-ahead log segment " + file, e);
+        }
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.file);
+        } catch (IOException e) {
+            log.warn("Failed to delete write-ahead log segment {}: {}", segment.file, e.getMessage());
+        }
+    }
+
+    private TreeMap<Long, Path> segmentFiles() throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> entries = Files.list(directory)) {
+            entries.forEach(file -> {
+                Matcher name = SEGMENT_NAME.matcher(file.getFileName().toString());
+                if (name.matches()) {
+                    files.put(Long.parseLong(name.group(1)), file);
+                }
+            });
+        }
+        return files;
+    }
+
+    private static long position(long segment, int offset) {
+        return segment << 32 | offset;
+    }
+
+    // Records written before new applications were logged end after the assessment
+    static byte[] encode(LoanApplication application, RiskAssessment assessment) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(assessment.getId());
+            writeLong(out, assessment.getLoanApplicationId());
+            writeInt(out, assessment.getRiskScore());
+            writeString(out, assessment.getRiskLevel() == null ? null : assessment.getRiskLevel().name());
+            writeBoolean(out, assessment.getApprovalRecommendation());
+            writeDecimal(out, assessment.getRecommendedInterestRate());
+            writeDecimal(out, assessment.getDebtToIncomeRatio());
+            writeDecimal(out, assessment.getLoanToValueRatio());
+            writeInt(out, assessment.getCreditScoreFactor());
+            writeInt(out, assessment.getIncomeFactor());
+            writeInt(out, assessment.getEmploymentFactor());
+            writeInt(out, assessment.getCollateralFactor());
+            writeInt(out, assessment.getLoanTypeFactor());
+            writeLong(out, assessment.getReasonCodes());
+            writeString(out, assessment.getAssessmentNotes());
+            writeString(out, assessment.getCreatedAt() == null ? null : assessment.getCreatedAt().toString());
+            writeString(out, assessment.getRuleSetVersion());
+            writeString(out, assessment.getLoanType() == null ? null : assessment.getLoanType().name());
+            out.writeBoolean(application != null);
+            if (application != null) {
+                encode(out, application);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void encode(DataOutputStream out, LoanApplication application) throws IOException {
+        out.writeLong(application.getId());
+        writeString(out, application.getApplicantName());
+        writeString(out, application.getEmail());
+        writeInt(out, application.getAge());
+        writeDecimal(out, application.getAnnualIncome());
+        writeDecimal(out, application.getLoanAmount());
+        writeString(out, application.getLoanType() == null ? null : application.getLoanType().name());
+        writeInt(out, application.getLoanTermMonths());
+        writeInt(out, application.getCreditScore());
+        writeInt(out, application.getEmploymentYears());
+        writeDecimal(out, application.getMonthlyDebtPayments());
+        writeDecimal(out, application.getDownPayment());
+        writeBoolean(out, application.getHasCollateral());
+        writeDecimal(out, application.getCollateralValue());
+        writeString(out, application.getCreatedAt() == null ? null : application.getCreatedAt().toString());
+    }
+
+    static Logged decode(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            RiskAssessment assessment = new RiskAssessment();
+            assessment.setId(in.readLong());
+            assessment.setLoanApplicationId(readLong(in));
+            assessment.setRiskScore(readInt(in));
+            String riskLevel = readString(in);
+            assessment.setRiskLevel(riskLevel == null ? null : RiskLevel.valueOf(riskLevel));
+            assessment.setApprovalRecommendation(readBoolean(in));
+            assessment.setRecommendedInterestRate(readDecimal(in));
+            assessment.setDebtToIncomeRatio(readDecimal(in));
+            assessment.setLoanToValueRatio(readDecimal(in));
+            assessment.setCreditScoreFactor(readInt(in));
+            assessment.setIncomeFactor(readInt(in));
+            assessment.setEmploymentFactor(readInt(in));
+            assessment.setCollateralFactor(readInt(in));
+            assessment.setLoanTypeFactor(readInt(in));
+            assessment.setReasonCodes(readLong(in));
+            assessment.setAssessmentNotes(readString(in));
+            String createdAt = readString(in);
+            assessment.setCreatedAt(createdAt == null ? null : LocalDateTime.parse(createdAt));
+            assessment.setRuleSetVersion(readString(in));
+            String loanType = readString(in);
+            assessment.setLoanType(loanType == null ? null : LoanType.valueOf(loanType));
+            LoanApplication application = in.available() > 0 && in.readBoolean() ? decodeApplication(in) : null;
+            return new Logged(application, assessment);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static LoanApplication decodeApplication(DataInputStream in) throws IOException {
+        LoanApplication application = new LoanApplication();
+        application.setId(in.readLong());
+        application.setApplicantName(readString(in));
+        application.setEmail(readString(in));
+        application.setAge(readInt(in));
+        application.setAnnualIncome(readDecimal(in));
+        application.setLoanAmount(readDecimal(in));
+        String loanType = readString(in);
+        application.setLoanType(loanType == null ? null : LoanType.valueOf(loanType));
+        application.setLoanTermMonths(readInt(in));
+        application.setCreditScore(readInt(in));
+        application.setEmploymentYears(readInt(in));
+        application.setMonthlyDebtPayments(readDecimal(in));
+        application.setDownPayment(readDecimal(in));
+        application.setHasCollateral(readBoolean(in));
+        application.setCollateralValue(readDecimal(in));
+        String createdAt = readString(in);
+        application.setCreatedAt(createdAt == null ? null : LocalDateTime.parse(createdAt));
+        return application;
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static void writeInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static void writeBoolean(DataOutputStream out, Boolean value) throws IOException {
+        out.writeByte(value == null ? -1 : value ? 1 : 0);
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        writeString(out, value == null ? null : value.toString());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static Integer readInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static Boolean readBoolean(DataInputStream in) throws IOException {
+        byte value = in.readByte();
+        return value < 0 ? null : value == 1;
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        String value = readString(in);
+        return value == null ? null : new BigDecimal(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    @FunctionalInterface
+    interface Replay {
+        void accept(LoanApplication application, RiskAssessment assessment, long position);
+    }
+
+    // A decoded record; the application is null unless it was new when the assessment was logged
+    static final class Logged {
+        final LoanApplication application;
+        final RiskAssessment assessment;
+
+        Logged(LoanApplication application, RiskAssessment assessment) {
+            this.application = application;
+            this.assessment = assessment;
+        }
+    }
+
+    private static final class Segment {
+        final long number;
+        final Path file;
+        final MappedByteBuffer buffer;
+        // Offset after the last record; guarded by the log
+        int end;
+
+        Segment(long number, Path file, MappedByteBuffer buffer) {
+            this.number = number;
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
+}
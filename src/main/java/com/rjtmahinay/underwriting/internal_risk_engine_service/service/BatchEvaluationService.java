@@ -0,0 +1,253 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.DuplicateApplicationException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidLoanApplicationException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidRiskScoreException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.BatchEvaluationResult;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.LoanApplicationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Staged pipeline behind {@code /batch-evaluate}.
+ * <p>
+ * Applications are scored concurrently on the parallel scheduler, grouped into chunks and written with
+ * one batched statement per chunk, which inserts new applications together with their assessments
+ * ({@link UnderwritingService#saveEvaluations}). Every stage is bounded ({@code scoring-concurrency},
+ * {@code chunk-size}, {@code max-in-flight-chunks}), so demand from the response propagates back to the
+ * request body and a large batch never holds more than a few chunks in memory. Results keep the order of
+ * the input. Identical applications within one request are scored once ({@link ScoreMemoizer.Batch}). New
+ * applications are checked by the {@link DuplicateApplicationDetector} before they are scored.
+ * <p>
+ * Both {@link #evaluate(Flux)} and {@link #evaluateLines(Flux)} report failures per input and emit exactly
+ * one result per application, so a failing item is neither stored nor ends the response.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BatchEvaluationService {
+
+    private final RiskScoringService riskScoringService;
+    private final UnderwritingService underwritingService;
+    private final LoanApplicationRepository loanApplicationRepository;
+    private final RiskEngineProperties riskEngineProperties;
+    private final ObjectMapper objectMapper;
+    private final ScoreMemoizer scoreMemoizer;
+    private final DuplicateApplicationDetector duplicateApplicationDetector;
+    private final EvaluationMetrics evaluationMetrics;
+
+    /**
+     * Evaluates a JSON array of applications as it is decoded. Every application yields one result carrying
+     * its zero-based index and either the stored assessment or the reason it was rejected (a scoring error,
+     * a duplicate, an unknown application id or a failed insert), so a failing item never ends the response
+     * early and the items around it are still stored.
+     */
+    public Flux<BatchEvaluationResult> evaluate(Flux<LoanApplication> applications) {
+        RiskEngineProperties.Batch batch = riskEngineProperties.getBatch();
+
+        return Flux.defer(() -> {
+            ScoreMemoizer.Batch scores = scoreMemoizer.batch();
+            DuplicateApplicationDetector.Claims claims = duplicateApplicationDetector.claims();
+            return saveInChunks(applications
+                    .filter(Objects::nonNull)
+                    .index()
+                    // Started on the thread that decoded the application, so the trace includes the decoding
+                    .map(item -> Tuples.of(item.getT1(), item.getT2(), evaluationMetrics.trace(item.getT2())))
+                    .flatMapSequential(item -> Mono.fromCallable(() -> evaluateApplication(item.getT1(), item.getT2(), item.getT3(), scores))
+                                    .subscribeOn(Schedulers.parallel())
+                                    .flatMap(evaluation -> rejectDuplicate(evaluation, claims)),
+                            batch.effectiveScoringConcurrency()), claims);
+        });
+    }
+
+    // Scores an application whose row and assessment the database will accept
+    private RiskAssessment evaluate(LoanApplication application, EvaluationTrace trace, ScoreMemoizer.Batch scores) {
+        if (application.getId() == null) {
+            EvaluationConstraints.check(application);
+        }
+        RiskAssessment assessment = evaluationMetrics.score(trace, () -> riskScoringService.calculateRiskAssessment(application, scores));
+        EvaluationConstraints.check(assessment);
+        return assessment;
+    }
+
+    /**
+     * Evaluates newline-delimited JSON applications as they arrive. Blank lines are ignored; every other
+     * line yields one result carrying its zero-based index and either the stored assessment or the reason
+     * it was rejected (unparseable JSON, a scoring error or a failed insert).
+     */
+    public Flux<BatchEvaluationResult> evaluateLines(Flux<String> lines) {
+        RiskEngineProperties.Batch batch = riskEngineProperties.getBatch();
+
+        return Flux.defer(() -> {
+            ScoreMemoizer.Batch scores = scoreMemoizer.batch();
+            DuplicateApplicationDetector.Claims claims = duplicateApplicationDetector.claims();
+            return saveInChunks(lines
+                    .filter(line -> !line.isBlank())
+                    .index()
+                    .flatMapSequential(line -> Mono.fromCallable(() -> evaluateLine(line.getT1(), line.getT2(), scores))
+                                    .subscribeOn(Schedulers.parallel())
+                                    .flatMap(evaluation -> rejectDuplicate(evaluation, claims)),
+                            batch.effectiveScoringConcurrency()), claims);
+        });
+    }
+
+    private Flux<BatchEvaluationResult> saveInChunks(Flux<Evaluation> evaluations, DuplicateApplicationDetector.Claims claims) {
+        RiskEngineProperties.Batch batch = riskEngineProperties.getBatch();
+        return evaluations
+                .bufferTimeout(batch.getChunkSize(), batch.getFlushInterval(), true)
+                // A chunk's claims are released once it is stored, so a long stream does not accumulate them
+                .flatMapSequential(chunk -> saveChunk(chunk)
+                                .doFinally(signal -> chunk.stream()
+                                        .filter(evaluation -> evaluation.result.getAssessment() != null)
+                                        .forEach(evaluation -> claims.release(evaluation.application))),
+                        batch.getMaxInFlightChunks())
+                .doFinally(signal -> claims.release());
+    }
+
+    private Evaluation evaluateLine(long index, String line, ScoreMemoizer.Batch scores) {
+        LoanApplication application;
+        try {
+            application = objectMapper.readValue(line, LoanApplication.class);
+        } catch (JsonProcessingException ex) {
+            return new Evaluation(null, null, BatchEvaluationResult.failure(index, "Invalid JSON: " + ex.getOriginalMessage()));
+        }
+        return evaluateApplication(index, application, evaluationMetrics.trace(application), scores);
+    }
+
+    private Evaluation evaluateApplication(long index, LoanApplication application, EvaluationTrace trace, ScoreMemoizer.Batch scores) {
+        try {
+            return new Evaluation(application, trace, BatchEvaluationResult.success(index, evaluate(application, trace, scores)));
+        } catch (InvalidLoanApplicationException | InvalidRiskScoreException ex) {
+            return new Evaluation(application, trace, BatchEvaluationResult.failure(index, ex.getMessage()));
+        } catch (RuntimeException ex) {
+            log.debug("Failed to score batch item {}: {}", index, ex.toString());
+            return new Evaluation(application, trace, BatchEvaluationResult.failure(index, "Evaluation failed: " + describe(ex)));
+        }
+    }
+
+    private Mono<Evaluation> rejectDuplicate(Evaluation evaluation, DuplicateApplicationDetector.Claims claims) {
+        if (evaluation.result.getAssessment() == null) {
+            return Mono.just(evaluation);
+        }
+        return claims.check(evaluation.application)
+                .thenReturn(evaluation)
+                .onErrorResume(DuplicateApplicationException.class, ex -> Mono.just(new Evaluation(evaluation.application, evaluation.trace,
+                        BatchEvaluationResult.failure(evaluation.result.getIndex(), "Duplicate application: " + ex.getMessage()))));
+    }
+
+    private Flux<BatchEvaluationResult> saveChunk(List<Evaluation> chunk) {
+        return rejectUnknownApplications(chunk).flatMapMany(this::insertChunk);
+    }
+
+    /**
+     * Fails the items that name a stored application by an id that is not stored, which would otherwise
+     * fail the chunk insert on the foreign key.
+     */
+    private Mono<List<Evaluation>> rejectUnknownApplications(List<Evaluation> chunk) {
+        Set<Long> ids = chunk.stream()
+                .filter(evaluation -> evaluation.result.getAssessment() != null && evaluation.application.getId() != null)
+                .map(evaluation -> evaluation.application.getId())
+                .collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return Mono.just(chunk);
+        }
+        return loanApplicationRepository.findExistingIds(ids)
+                .collect(Collectors.toSet())
+                .map(stored -> chunk.stream()
+                        .map(evaluation -> evaluation.result.getAssessment() == null || evaluation.application.getId() == null
+                                || stored.contains(evaluation.application.getId())
+                                ? evaluation
+                                : new Evaluation(evaluation.application, evaluation.trace, BatchEvaluationResult.failure(
+                                        evaluation.result.getIndex(), "Loan application not found with ID: " + evaluation.application.getId())))
+                        .toList());
+    }
+
+    private Flux<BatchEvaluationResult> insertChunk(List<Evaluation> chunk) {
+        List<LoanApplication> applications = new ArrayList<>(chunk.size());
+        List<RiskAssessment> assessments = new ArrayList<>(chunk.size());
+        List<EvaluationTrace> traces = new ArrayList<>(chunk.size());
+        for (Evaluation evaluation : chunk) {
+            if (evaluation.result.getAssessment() != null) {
+                applications.add(evaluation.application);
+                assessments.add(evaluation.result.getAssessment());
+                traces.add(evaluation.trace);
+            }
+        }
+        if (assessments.isEmpty()) {
+            return Flux.fromIterable(chunk).map(evaluation -> evaluation.result);
+        }
+
+        // The inserts set the generated ids on the assessments the results already hold
+        return evaluationMetrics.timeChunkStore(traces, underwritingService.saveEvaluations(applications, assessments))
+                .then(Mono.fromSupplier(() -> chunk.stream().map(evaluation -> evaluation.result).toList()))
+                .onErrorResume(error -> saveIndividually(chunk))
+                .flatMapIterable(results -> results);
+    }
+
+    /**
+     * Fallback after a chunk insert failed: stores the assessments one by one so that only the rows the
+     * database actually rejects are reported as failures.
+     */
+    private Mono<List<BatchEvaluationResult>> saveIndividually(List<Evaluation> chunk) {
+        return Flux.fromIterable(chunk)
+                .concatMap(evaluation -> {
+                    BatchEvaluationResult result = evaluation.result;
+                    RiskAssessment assessment = result.getAssessment();
+                    if (assessment == null) {
+                        return Mono.just(result);
+                    }
+                    // Ids generated by the rolled-back chunk insert are not in the table
+                    assessment.setId(null);
+                    assessment.setLoanApplicationId(evaluation.application.getId());
+                    return evaluationMetrics.timeChunkStore(List.of(evaluation.trace),
+                                    underwritingService.saveEvaluations(List.of(evaluation.application), List.of(assessment)))
+                            .single()
+                            .map(saved -> BatchEvaluationResult.success(result.getIndex(), saved))
+                            .onErrorResume(error -> Mono.just(BatchEvaluationResult.failure(result.getIndex(),
+                                    "Failed to store assessment: " + describe(error))));
+                })
+                .collectList();
+    }
+
+    // First line of the root cause; driver messages append the full SQL statement after a line break
+    private static String describe(Throwable error) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(error);
+        String message = cause.getMessage();
+        if (message == null) {
+            return cause.getClass().getSimpleName();
+        }
+        int lineBreak = message.indexOf('\n');
+        return lineBreak < 0 ? message : message.substring(0, lineBreak);
+    }
+
+    // A parsed application, if the line parsed, and its result until the assessment is stored
+    private static final class Evaluation {
+        final LoanApplication application;
+        // Null when the line was not valid JSON
+        final EvaluationTrace trace;
+        final BatchEvaluationResult result;
+
+        Evaluation(LoanApplication application, EvaluationTrace trace, BatchEvaluationResult result) {
+            this.application = application;
+            this.trace = trace;
+            this.result = result;
+        }
+    }
+}
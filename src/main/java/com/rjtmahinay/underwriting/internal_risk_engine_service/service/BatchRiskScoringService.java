@@ -0,0 +1,63 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Columnar entry point for bulk re-scoring. Produces the same factors, total score, approval
+ * recommendation and ratios as {@link RiskScoringService#calculateRiskAssessment} for every row,
+ * without materialising a {@code LoanApplication} or {@code RiskAssessment} per row. A batch is scored with
+ * the rule set current when scoring starts, whose version is recorded on the {@link ColumnarRiskScores}.
+ * <p>
+ * The {@code jdk.incubator.vector} implementation is used when {@code risk-engine.scoring.vectorized}
+ * is enabled, the JVM was started with {@code --add-modules jdk.incubator.vector} and its preferred vectors
+ * have more than one {@code long} lane; otherwise the scalar implementation is used.
+ */
+@Service
+@Slf4j
+public class BatchRiskScoringService {
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    private final ColumnarRiskScorer scorer;
+    private final ScoringRuleSetProvider scoringRuleSetProvider;
+
+    public BatchRiskScoringService(RiskEngineProperties riskEngineProperties,
+                                   ScoringRuleSetProvider scoringRuleSetProvider) {
+        this.scoringRuleSetProvider = scoringRuleSetProvider;
+        boolean vectorAvailable = ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+        if (riskEngineProperties.getScoring().isVectorized() && vectorAvailable && VectorColumnarRiskScorer.isSupported()) {
+            this.scorer = new VectorColumnarRiskScorer();
+        } else {
+            this.scorer = new ScalarColumnarRiskScorer();
+        }
+        log.info("Columnar batch scoring uses {} (vector module available: {})",
+                scorer.getClass().getSimpleName(), vectorAvailable);
+    }
+
+    public ColumnarRiskScores score(ColumnarLoanBatch batch) {
+        ColumnarRiskScores scores = new ColumnarRiskScores(batch.size());
+        score(batch, scores);
+        return scores;
+    }
+
+    /**
+     * Scores into caller-provided output arrays so that buffers can be reused across batches.
+     */
+    public void score(ColumnarLoanBatch batch, ColumnarRiskScores scores) {
+        score(batch, scores, scoringRuleSetProvider.current());
+    }
+
+    /**
+     * Scores with the given rules, for callers that score many batches with the same rule set.
+     */
+    void score(ColumnarLoanBatch batch, ColumnarRiskScores scores, CompiledRuleSet rules) {
+        if (scores.capacity() < batch.size()) {
+            throw new IllegalArgumentException("Score arrays hold " + scores.capacity()
+                    + " rows but the batch has " + batch.size());
+        }
+        scorer.score(batch, scores, rules);
+        scores.setRuleSetVersion(rules.getVersion());
+    }
+}
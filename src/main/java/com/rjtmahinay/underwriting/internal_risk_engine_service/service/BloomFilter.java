@@ -0,0 +1,82 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent Bloom filter over strings, sized for an expected number of keys and false positive rate.
+ * {@link #mightContain} never misses a key whose {@link #put} has returned; a key being put concurrently
+ * may or may not be seen.
+ * <p>
+ * Bit positions come from double hashing ({@code h1 + i * h2}) of one 64-bit FNV-1a hash of the key.
+ */
+class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private final LongAdder keys = new LongAdder();
+
+    BloomFilter(int expectedKeys, double falsePositiveRate) {
+        if (expectedKeys < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Expected keys must be positive and the false positive rate " +
+                    "between 0 and 1, were " + expectedKeys + " and " + falsePositiveRate);
+        }
+        // m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hashes minimize the false positive rate
+        long optimalBits = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        words = new AtomicLongArray(Math.toIntExact((Math.max(optimalBits, Long.SIZE) + Long.SIZE - 1) / Long.SIZE));
+        bits = (long) words.length() * Long.SIZE;
+        hashes = Math.max(1, (int) Math.round((double) bits / expectedKeys * Math.log(2)));
+    }
+
+    void put(String key) {
+        long hash = hash(key);
+        long h2 = mix(hash) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash + i * h2, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            // Most bits of a filled filter are already set; skip the atomic update then
+            while ((current & mask) == 0 && !words.weakCompareAndSetVolatile(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+        keys.increment();
+    }
+
+    boolean mightContain(String key) {
+        long hash = hash(key);
+        long h2 = mix(hash) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash + i * h2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * False positive rate expected at the current number of keys, {@code (1 - e^(-kn/m))^k}. Keys put more
+     * than once are counted every time, so this overestimates when they repeat.
+     */
+    double expectedFalsePositiveRate() {
+        return Math.pow(1 - Math.exp(-(double) hashes * keys.sum() / bits), hashes);
+    }
+
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // MurmurHash3's 64-bit finalizer; FNV-1a alone spreads short keys poorly over the high bits
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
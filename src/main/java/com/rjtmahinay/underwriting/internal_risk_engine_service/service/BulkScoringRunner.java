@@ -0,0 +1,174 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RiskAssessmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Offline scoring of a CSV of loan applications, run instead of the web service with the
+ * {@code bulk-scoring} profile; the application exits once the file has been scored.
+ * <p>
+ * The input is split into blocks of {@code risk-engine.bulk-scoring.block-size} bytes. A block owns the rows
+ * that start in it, so it is mapped with enough of the next block for its last row, and rows are never
+ * copied out of the page cache: {@link LoanApplicationCsv} parses them from the mapped bytes into columns,
+ * scores them with {@link BatchRiskScoringService} and formats the output rows. Blocks are scored by
+ * {@code parallelism} threads and their output written to {@code output} in input order, with at most two
+ * blocks per thread waiting, so memory does not grow with the size of the input. Every block is scored with
+ * the rule set current when the run starts.
+ * <p>
+ * With {@code load-assessments} the assessments are also inserted into {@code risk_assessments}, in batched
+ * inserts of {@code load-chunk-size} rows, as their block is written.
+ */
+@Component
+@Profile("bulk-scoring")
+@RequiredArgsConstructor
+@Slf4j
+public class BulkScoringRunner implements CommandLineRunner {
+
+    private static final long MIN_BLOCK_SIZE = LoanApplicationCsv.MAX_ROW_LENGTH;
+    private static final long MAX_BLOCK_SIZE = 1L << 30;
+
+    private final RiskEngineProperties riskEngineProperties;
+    private final BatchRiskScoringService batchRiskScoringService;
+    private final ScoringRuleSetProvider scoringRuleSetProvider;
+    private final RiskAssessmentRepository riskAssessmentRepository;
+    private final ConfigurableApplicationContext context;
+
+    @Override
+    public void run(String... args) throws Exception {
+        score();
+        System.exit(SpringApplication.exit(context));
+    }
+
+    void score() throws IOException, InterruptedException, ExecutionException {
+        RiskEngineProperties.BulkScoring settings = riskEngineProperties.getBulkScoring();
+        if (settings.getInput() == null || settings.getOutput() == null) {
+            throw new IllegalArgumentException("risk-engine.bulk-scoring.input and output are required");
+        }
+        long blockSize = settings.getBlockSize().toBytes();
+        if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("risk-engine.bulk-scoring.block-size must be between 64KB and 1GB");
+        }
+        int parallelism = settings.getParallelism() > 0
+                ? settings.getParallelism() : Runtime.getRuntime().availableProcessors();
+        CompiledRuleSet rules = scoringRuleSetProvider.current();
+        Path input = Path.of(settings.getInput());
+        Path output = Path.of(settings.getOutput());
+
+        long started = System.nanoTime();
+        long rows = 0;
+        long invalidRows = 0;
+        long loaded = 0;
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "bulk-scoring-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            LoanApplicationCsv csv = new LoanApplicationCsv(readHeader(in, size));
+            boolean load = settings.isLoadAssessments();
+            if (load && !csv.hasId()) {
+                throw new IllegalArgumentException("Loading assessments requires an id column holding the loan application ids");
+            }
+            log.info("Scoring {} ({} MB) with rules {} on {} threads", input, size >> 20, rules.getVersion(), parallelism);
+            writeFully(out, ByteBuffer.wrap(LoanApplicationCsv.OUTPUT_HEADER.getBytes(StandardCharsets.US_ASCII)));
+
+            Deque<Future<LoanApplicationCsv.Block>> pending = new ArrayDeque<>();
+            for (long start = 0; start < size || !pending.isEmpty(); ) {
+                if (start < size && pending.size() < 2 * parallelism) {
+                    long blockStart = start;
+                    long blockEnd = Math.min(size, start + blockSize);
+                    pending.add(executor.submit(() -> scoreBlock(in, size, blockStart, blockEnd, csv, rules, load)));
+                    start = blockEnd;
+                    continue;
+                }
+                LoanApplicationCsv.Block block = pending.poll().get();
+                writeFully(out, ByteBuffer.wrap(block.output, 0, block.length));
+                rows += block.rows;
+                invalidRows += block.invalidRows;
+                if (load) {
+                    loaded += store(block, settings.getLoadChunkSize());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        log.info("Scored {} rows ({} could not be scored) into {} in {} s: {} rows/s{}", rows, invalidRows, output,
+                String.format("%.2f", seconds), Math.round(rows / Math.max(seconds, 1e-9)),
+                settings.isLoadAssessments() ? ", " + loaded + " assessments stored" : "");
+    }
+
+    private LoanApplicationCsv.Block scoreBlock(FileChannel in, long size, long start, long end,
+                                                LoanApplicationCsv csv, CompiledRuleSet rules, boolean load)
+            throws IOException {
+        // From the byte before the block, to tell whether a row starts at its first byte
+        long from = start == 0 ? 0 : start - 1;
+        long to = Math.min(size, end + LoanApplicationCsv.MAX_ROW_LENGTH);
+        MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int limit = buffer.limit();
+
+        // The first block starts with the header; any other starts with the rest of a row of the previous
+        // block unless that row ended right before it
+        int position = start == 0 || buffer.get(0) != '\n' ? LoanApplicationCsv.indexOf(buffer, (byte) '\n', 0, limit) + 1 : 1;
+        if (position == 0) {
+            if (to < size) {
+                throw new IllegalStateException("A row is longer than " + LoanApplicationCsv.MAX_ROW_LENGTH + " bytes");
+            }
+            position = limit;
+        }
+        return csv.score(buffer, position, (int) (end - from), to == size, batchRiskScoringService, rules, load);
+    }
+
+    private long store(LoanApplicationCsv.Block block, int chunkSize) {
+        Long stored = Flux.fromIterable(block.assessments)
+                .buffer(Math.max(1, chunkSize))
+                .concatMap(chunk -> riskAssessmentRepository.insertAll(chunk).count())
+                .reduce(0L, Long::sum)
+                .block();
+        return stored != null ? stored : 0;
+    }
+
+    private static String readHeader(FileChannel in, long size) throws IOException {
+        MappedByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, LoanApplicationCsv.MAX_ROW_LENGTH));
+        int end = LoanApplicationCsv.indexOf(buffer, (byte) '\n', 0, buffer.limit());
+        byte[] header = new byte[end < 0 ? buffer.limit() : end];
+        buffer.get(0, header);
+        String line = new String(header, StandardCharsets.UTF_8);
+        // A byte order mark, as spreadsheet exports write
+        return line.startsWith("\uFEFF") ? line.substring(1) : line;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            out.write(bytes);
+        }
+    }
+}
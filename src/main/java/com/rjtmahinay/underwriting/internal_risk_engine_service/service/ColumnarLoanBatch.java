@@ -0,0 +1,141 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Struct-of-arrays view of a batch of loan applications, as consumed by {@link BatchRiskScoringService}.
+ * <p>
+ * Amounts are in cents and, like credit scores and employment years, must be non-negative; annual income
+ * and loan amount are required and must be positive, which is what the {@code loan_applications}
+ * constraints guarantee for stored rows. Optional inputs that are missing are encoded as {@link #ABSENT};
+ * a collateral value is only recorded when the application is flagged as secured. Loan types are stored by {@link LoanType#ordinal()}.
+ * <p>
+ * Arrays are sized for the capacity given at construction so that a batch can be refilled and rescored
+ * without reallocating; only the first {@link #size()} entries are scored.
+ */
+@Getter
+public final class ColumnarLoanBatch {
+
+    public static final int ABSENT = -1;
+
+    private final int[] creditScores;
+    private final long[] annualIncomeCents;
+    private final long[] loanAmountCents;
+    private final int[] employmentYears;
+    private final long[] monthlyDebtCents;
+    private final long[] downPaymentCents;
+    private final long[] collateralValueCents;
+    private final int[] loanTypeOrdinals;
+    private int size;
+
+    public ColumnarLoanBatch(int capacity) {
+        this.creditScores = new int[capacity];
+        this.annualIncomeCents = new long[capacity];
+        this.loanAmountCents = new long[capacity];
+        this.employmentYears = new int[capacity];
+        this.monthlyDebtCents = new long[capacity];
+        this.downPaymentCents = new long[capacity];
+        this.collateralValueCents = new long[capacity];
+        this.loanTypeOrdinals = new int[capacity];
+    }
+
+    public static ColumnarLoanBatch of(List<LoanApplication> applications) {
+        ColumnarLoanBatch batch = new ColumnarLoanBatch(applications.size());
+        for (int i = 0; i < applications.size(); i++) {
+            batch.set(i, applications.get(i));
+        }
+        batch.setSize(applications.size());
+        return batch;
+    }
+
+    public int capacity() {
+        return loanTypeOrdinals.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        if (size < 0 || size > capacity()) {
+            throw new IllegalArgumentException("Batch size must be between 0 and " + capacity() + ": " + size);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Writes one row from primitive values, validating it against the columnar domain.
+     */
+    public void set(int index, int creditScore, long annualIncome, long loanAmount, int employment,
+                    long monthlyDebt, long downPayment, long collateralValue, int loanTypeOrdinal) {
+        if (annualIncome <= 0 || loanAmount <= 0
+                || annualIncome > FixedPointRiskScorer.MAX_CENTS || loanAmount > FixedPointRiskScorer.MAX_CENTS) {
+            throw new IllegalArgumentException("Annual income and loan amount must be positive and at most "
+                    + FixedPointRiskScorer.MAX_CENTS + " cents");
+        }
+        if (creditScore < ABSENT || employment < ABSENT
+                || !isOptionalAmount(monthlyDebt) || !isOptionalAmount(downPayment) || !isOptionalAmount(collateralValue)) {
+            throw new IllegalArgumentException("Optional values must be non-negative or ABSENT");
+        }
+        if (loanTypeOrdinal < 0 || loanTypeOrdinal >= LoanType.values().length) {
+            throw new IllegalArgumentException("Unknown loan type ordinal: " + loanTypeOrdinal);
+        }
+        creditScores[index] = creditScore;
+        annualIncomeCents[index] = annualIncome;
+        loanAmountCents[index] = loanAmount;
+        employmentYears[index] = employment;
+        monthlyDebtCents[index] = monthlyDebt;
+        downPaymentCents[index] = downPayment;
+        collateralValueCents[index] = collateralValue;
+        loanTypeOrdinals[index] = loanTypeOrdinal;
+    }
+
+    public void set(int index, LoanApplication application) {
+        if (application.getLoanType() == null) {
+            throw new IllegalArgumentException("Loan type is required");
+        }
+        // A negative value would be read as ABSENT, or rejected as such by set
+        if (isNegative(application.getCreditScore()) || isNegative(application.getEmploymentYears())) {
+            throw new IllegalArgumentException("Credit score and employment years must be non-negative");
+        }
+        long collateral = Boolean.TRUE.equals(application.getHasCollateral())
+                ? cents(application.getCollateralValue()) : ABSENT;
+        set(index,
+                application.getCreditScore() == null ? ABSENT : application.getCreditScore(),
+                cents(application.getAnnualIncome()),
+                cents(application.getLoanAmount()),
+                application.getEmploymentYears() == null ? ABSENT : application.getEmploymentYears(),
+                cents(application.getMonthlyDebtPayments()),
+                cents(application.getDownPayment()),
+                collateral,
+                application.getLoanType().ordinal());
+    }
+
+    private static long cents(BigDecimal amount) {
+        // -0.01 would be read as ABSENT
+        if (amount != null && amount.signum() < 0) {
+            throw new IllegalArgumentException("Amounts must be non-negative: " + amount);
+        }
+        long cents = FixedPointRiskScorer.toCents(amount);
+        if (cents == FixedPointRiskScorer.ABSENT) {
+            return ABSENT;
+        }
+        if (cents == FixedPointRiskScorer.NOT_REPRESENTABLE) {
+            throw new IllegalArgumentException("Amount cannot be represented in cents: " + amount);
+        }
+        return cents;
+    }
+
+    private static boolean isNegative(Integer value) {
+        return value != null && value < 0;
+    }
+
+    private static boolean isOptionalAmount(long cents) {
+        return cents == ABSENT || (cents >= 0 && cents <= FixedPointRiskScorer.MAX_CENTS);
+    }
+}
@@ -0,0 +1,10 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+/**
+ * Scores every row of a {@link ColumnarLoanBatch} into a {@link ColumnarRiskScores} of at least the same size,
+ * evaluating one {@link CompiledRuleSet} for the whole batch.
+ */
+interface ColumnarRiskScorer {
+
+    void score(ColumnarLoanBatch batch, ColumnarRiskScores scores, CompiledRuleSet rules);
+}
@@ -0,0 +1,43 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Struct-of-arrays output of {@link BatchRiskScoringService}: one entry per row of the scored
+ * {@link ColumnarLoanBatch}. Ratios are in basis points, i.e. the unscaled value of the scale-4
+ * {@link java.math.BigDecimal} that {@link RiskScoringService} stores on a {@code RiskAssessment}.
+ */
+@Getter
+public final class ColumnarRiskScores {
+
+    private final int[] creditScoreFactors;
+    private final int[] incomeFactors;
+    private final int[] employmentFactors;
+    private final int[] collateralFactors;
+    private final int[] loanTypeFactors;
+    private final int[] riskScores;
+    private final boolean[] approvalRecommendations;
+    private final long[] debtToIncomeBasisPoints;
+    private final long[] loanToValueBasisPoints;
+
+    // Version of the scoring rules the rows were last scored with
+    @Setter
+    private String ruleSetVersion;
+
+    public ColumnarRiskScores(int capacity) {
+        this.creditScoreFactors = new int[capacity];
+        this.incomeFactors = new int[capacity];
+        this.employmentFactors = new int[capacity];
+        this.collateralFactors = new int[capacity];
+        this.loanTypeFactors = new int[capacity];
+        this.riskScores = new int[capacity];
+        this.approvalRecommendations = new boolean[capacity];
+        this.debtToIncomeBasisPoints = new long[capacity];
+        this.loanToValueBasisPoints = new long[capacity];
+    }
+
+    public int capacity() {
+        return riskScores.length;
+    }
+}
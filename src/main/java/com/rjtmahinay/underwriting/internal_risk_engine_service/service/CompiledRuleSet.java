@@ -0,0 +1,331 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.ScoringRuleDefinition;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidScoringRulesException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Immutable, validated form of a {@link ScoringRuleDefinition} that every scorer evaluates.
+ * <p>
+ * Bands become {@link FactorBands}, loan type factors an array by ordinal, and interest rates a
+ * {@code [loan type][premium band]} matrix of final, scale-2 rates whose band is looked up by risk score, so
+ * scoring does no parsing, sorting or {@link BigDecimal} construction. Ratio thresholds are also kept in basis points for the fixed-point and
+ * columnar scorers. A scorer reads the rule set once per application or batch, so a reload never mixes the
+ * rules of two versions within one assessment.
+ */
+public final class CompiledRuleSet {
+
+    private static final int RATIO_SCALE = 4;
+    private static final int MAX_VERSION_LENGTH = 64;
+    // Keeps (2t - 1) * amount within a long when the columnar scorers compare ratios without dividing
+    private static final BigDecimal MAX_RATIO_THRESHOLD = BigDecimal.valueOf(50);
+    // Bounds the lookup table of integer bands
+    private static final BigDecimal MAX_INTEGER_THRESHOLD = BigDecimal.valueOf(10_000);
+
+    private final ScoringRuleDefinition definition;
+    private final String version;
+    private final FactorBands creditScore;
+    private final FactorBands incomeToLoanRatio;
+    private final FactorBands employmentYears;
+    private final FactorBands collateralToLoanRatio;
+    private final int[] loanTypeFactors;
+    private final int approveMaxScore;
+    private final int conditionalMaxScore;
+    private final BigDecimal maxDebtToIncomeRatio;
+    private final long maxDebtToIncomeBasisPoints;
+    private final FactorBands premiumBands;
+    private final BigDecimal[][] interestRates;
+    private final long[][] interestRateHundredths;
+    private final int excellentCreditScore;
+    private final int poorCreditScore;
+
+    private CompiledRuleSet(ScoringRuleDefinition definition) {
+        this.definition = definition;
+        this.version = require(definition.getVersion(), "version").trim();
+        if (version.isEmpty() || version.length() > MAX_VERSION_LENGTH) {
+            throw new InvalidScoringRulesException("version must be 1 to " + MAX_VERSION_LENGTH + " characters");
+        }
+        this.creditScore = integerBands(definition.getCreditScore(), "credit-score");
+        this.incomeToLoanRatio = ratioBands(definition.getIncomeToLoanRatio(), "income-to-loan-ratio");
+        this.employmentYears = integerBands(definition.getEmploymentYears(), "employment-years");
+        this.collateralToLoanRatio = ratioBands(definition.getCollateralToLoanRatio(), "collateral-to-loan-ratio");
+        this.loanTypeFactors = loanTypeFactors(definition.getLoanTypeFactors());
+
+        ScoringRuleDefinition.Approval approval = require(definition.getApproval(), "approval");
+        this.approveMaxScore = require(approval.getApproveMaxScore(), "approval.approve-max-score");
+        this.conditionalMaxScore = require(approval.getConditionalMaxScore(), "approval.conditional-max-score");
+        this.maxDebtToIncomeRatio = require(approval.getMaxDebtToIncomeRatio(), "approval.max-debt-to-income-ratio");
+        if (maxDebtToIncomeRatio.signum() < 0) {
+            throw new InvalidScoringRulesException("approval.max-debt-to-income-ratio must not be negative");
+        }
+        // A four-decimal ratio is at most the limit exactly when its basis points are at most the limit's, rounded down
+        this.maxDebtToIncomeBasisPoints = maxDebtToIncomeRatio.movePointRight(RATIO_SCALE)
+                .setScale(0, RoundingMode.FLOOR).longValueExact();
+
+        ScoringRuleDefinition.InterestRate interestRate = require(definition.getInterestRate(), "interest-rate");
+        List<ScoringRuleDefinition.Premium> premiums = sortedPremiums(interestRate);
+        this.premiumBands = premiumBands(premiums);
+        this.interestRates = interestRates(interestRate, premiums);
+        this.interestRateHundredths = new long[interestRates.length][];
+        for (int loanType = 0; loanType < interestRates.length; loanType++) {
+            interestRateHundredths[loanType] = Arrays.stream(interestRates[loanType])
+                    .mapToLong(rate -> rate.unscaledValue().longValueExact()).toArray();
+        }
+
+        ScoringRuleDefinition.Notes notes = require(definition.getNotes(), "notes");
+        this.excellentCreditScore = require(notes.getExcellentCreditScore(), "notes.excellent-credit-score");
+        this.poorCreditScore = require(notes.getPoorCreditScore(), "notes.poor-credit-score");
+    }
+
+    /**
+     * Validates the definition and builds its lookup tables.
+     *
+     * @throws InvalidScoringRulesException if a rule is missing, ambiguous or out of range
+     */
+    public static CompiledRuleSet compile(ScoringRuleDefinition definition) {
+        return new CompiledRuleSet(require(definition, "scoring-rules"));
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public ScoringRuleDefinition getDefinition() {
+        return definition;
+    }
+
+    int creditScoreFactor(Integer creditScore) {
+        return this.creditScore.factorForValue(creditScore);
+    }
+
+    int employmentFactor(Integer employmentYears) {
+        return this.employmentYears.factorForValue(employmentYears);
+    }
+
+    int loanTypeFactor(LoanType loanType) {
+        return loanTypeFactors[loanType.ordinal()];
+    }
+
+    boolean approve(int riskScore, long debtToIncomeBasisPoints) {
+        return riskScore <= approveMaxScore
+                || (riskScore <= conditionalMaxScore && debtToIncomeBasisPoints <= maxDebtToIncomeBasisPoints);
+    }
+
+    boolean approve(int riskScore, BigDecimal debtToIncomeRatio) {
+        return riskScore <= approveMaxScore
+                || (riskScore <= conditionalMaxScore && debtToIncomeRatio.compareTo(maxDebtToIncomeRatio) <= 0);
+    }
+
+    BigDecimal interestRate(LoanType loanType, int riskScore) {
+        return interestRates[loanType.ordinal()][premiumBands.factorForValue(riskScore)];
+    }
+
+    /**
+     * {@link #interestRate} in hundredths of a percent, for summing rates without a {@link BigDecimal} per row.
+     */
+    long interestRateHundredths(int loanTypeOrdinal, int riskScore) {
+        return interestRateHundredths[loanTypeOrdinal][premiumBands.factorForValue(riskScore)];
+    }
+
+    boolean isExcellentCreditScore(int creditScore) {
+        return creditScore >= excellentCreditScore;
+    }
+
+    boolean isPoorCreditScore(int creditScore) {
+        return creditScore < poorCreditScore;
+    }
+
+    boolean isHighDebtToIncome(long debtToIncomeBasisPoints) {
+        return debtToIncomeBasisPoints > maxDebtToIncomeBasisPoints;
+    }
+
+    boolean isHighDebtToIncome(BigDecimal debtToIncomeRatio) {
+        return debtToIncomeRatio.compareTo(maxDebtToIncomeRatio) > 0;
+    }
+
+    FactorBands creditScoreBands() {
+        return creditScore;
+    }
+
+    FactorBands incomeToLoanBands() {
+        return incomeToLoanRatio;
+    }
+
+    FactorBands employmentBands() {
+        return employmentYears;
+    }
+
+    FactorBands collateralToLoanBands() {
+        return collateralToLoanRatio;
+    }
+
+    int[] loanTypeFactors() {
+        return loanTypeFactors;
+    }
+
+    long maxDebtToIncomeBasisPoints() {
+        return maxDebtToIncomeBasisPoints;
+    }
+
+    private static FactorBands integerBands(ScoringRuleDefinition.Bands bands, String name) {
+        return bands(bands, name, true);
+    }
+
+    private static FactorBands ratioBands(ScoringRuleDefinition.Bands bands, String name) {
+        return bands(bands, name, false);
+    }
+
+    private static FactorBands bands(ScoringRuleDefinition.Bands definition, String name, boolean integral) {
+        require(definition, name);
+        List<ScoringRuleDefinition.Band> bands = new ArrayList<>(require(definition.getBands(), name + ".bands"));
+        for (ScoringRuleDefinition.Band band : bands) {
+            require(band, name + ".bands[]");
+            BigDecimal min = require(band.getMin(), name + ".bands[].min");
+            factor(band.getFactor(), name + ".bands[].factor");
+            if (integral && (min.stripTrailingZeros().scale() > 0
+                    || min.signum() < 0 || min.compareTo(MAX_INTEGER_THRESHOLD) > 0)) {
+                throw new InvalidScoringRulesException(name + " band minimum " + min.toPlainString()
+                        + " must be a whole number between 0 and " + MAX_INTEGER_THRESHOLD);
+            }
+            if (!integral && (min.signum() < 0 || min.compareTo(MAX_RATIO_THRESHOLD) > 0)) {
+                throw new InvalidScoringRulesException(name + " band minimum " + min.toPlainString()
+                        + " must be between 0 and " + MAX_RATIO_THRESHOLD);
+            }
+        }
+        bands.sort(Comparator.comparing(ScoringRuleDefinition.Band::getMin));
+
+        long[] thresholds = new long[bands.size()];
+        BigDecimal[] decimalThresholds = new BigDecimal[bands.size()];
+        int[] factors = new int[bands.size() + 1];
+        factors[0] = factor(definition.getDefaultFactor(), name + ".default-factor");
+        for (int i = 0; i < bands.size(); i++) {
+            BigDecimal min = bands.get(i).getMin();
+            if (i > 0 && min.compareTo(decimalThresholds[i - 1]) == 0) {
+                throw new InvalidScoringRulesException(name + " has two bands starting at " + min.toPlainString());
+            }
+            decimalThresholds[i] = min;
+            thresholds[i] = integral ? min.intValueExact() : toBasisPoints(min, name);
+            factors[i + 1] = bands.get(i).getFactor();
+        }
+        return new FactorBands(thresholds, decimalThresholds, factors,
+                factor(definition.getMissingFactor(), name + ".missing-factor"), integral);
+    }
+
+    private static int[] loanTypeFactors(Map<LoanType, Integer> definition) {
+        require(definition, "loan-type-factors");
+        int[] factors = new int[LoanType.values().length];
+        for (LoanType loanType : LoanType.values()) {
+            factors[loanType.ordinal()] = factor(definition.get(loanType), "loan-type-factors." + loanType);
+        }
+        return factors;
+    }
+
+    private static List<ScoringRuleDefinition.Premium> sortedPremiums(ScoringRuleDefinition.InterestRate interestRate) {
+        List<ScoringRuleDefinition.Premium> premiums =
+                new ArrayList<>(require(interestRate.getPremiums(), "interest-rate.premiums"));
+        for (ScoringRuleDefinition.Premium premium : premiums) {
+            require(premium, "interest-rate.premiums[]");
+            require(premium.getAbove(), "interest-rate.premiums[].above");
+            require(premium.getPremium(), "interest-rate.premiums[].premium");
+            if (premium.getAbove() < 0 || premium.getAbove() >= MAX_INTEGER_THRESHOLD.intValue()) {
+                throw new InvalidScoringRulesException("interest-rate premium above " + premium.getAbove()
+                        + " must be between 0 and " + (MAX_INTEGER_THRESHOLD.intValue() - 1));
+            }
+        }
+        premiums.sort(Comparator.comparing(ScoringRuleDefinition.Premium::getAbove));
+        for (int i = 1; i < premiums.size(); i++) {
+            if (premiums.get(i).getAbove().equals(premiums.get(i - 1).getAbove())) {
+                throw new InvalidScoringRulesException("interest-rate has two premiums above " + premiums.get(i).getAbove());
+            }
+        }
+        return premiums;
+    }
+
+    /**
+     * Premium band of a risk score as an integer band: a score is above {@code above} exactly when it reaches
+     * {@code above + 1}, and the "factor" of each band is its column in the interest-rate matrix.
+     */
+    private static FactorBands premiumBands(List<ScoringRuleDefinition.Premium> premiums) {
+        long[] thresholds = new long[premiums.size()];
+        BigDecimal[] decimalThresholds = new BigDecimal[premiums.size()];
+        int[] bands = new int[premiums.size() + 1];
+        for (int i = 0; i < premiums.size(); i++) {
+            thresholds[i] = premiums.get(i).getAbove() + 1L;
+            decimalThresholds[i] = BigDecimal.valueOf(thresholds[i]);
+            bands[i + 1] = i + 1;
+        }
+        return new FactorBands(thresholds, decimalThresholds, bands, 0, true);
+    }
+
+    private static BigDecimal[][] interestRates(ScoringRuleDefinition.InterestRate interestRate,
+                                                List<ScoringRuleDefinition.Premium> premiums) {
+        Map<LoanType, BigDecimal> baseRates = require(interestRate.getBaseRates(), "interest-rate.base-rates");
+        BigDecimal[] bandPremiums = new BigDecimal[premiums.size() + 1];
+        bandPremiums[0] = require(interestRate.getDefaultPremium(), "interest-rate.default-premium");
+        for (int i = 0; i < premiums.size(); i++) {
+            bandPremiums[i + 1] = premiums.get(i).getPremium();
+        }
+
+        BigDecimal[][] rates = new BigDecimal[LoanType.values().length][bandPremiums.length];
+        for (LoanType loanType : LoanType.values()) {
+            BigDecimal baseRate = require(baseRates.get(loanType), "interest-rate.base-rates." + loanType);
+            for (int band = 0; band < bandPremiums.length; band++) {
+                BigDecimal rate = baseRate.add(bandPremiums[band]).setScale(2, RoundingMode.HALF_UP);
+                if (rate.signum() < 0) {
+                    throw new InvalidScoringRulesException("interest rate of " + loanType + " must not be negative");
+                }
+                rates[loanType.ordinal()][band] = rate;
+            }
+        }
+        return rates;
+    }
+
+    private static int factor(Integer factor, String name) {
+        if (require(factor, name) < 0) {
+            throw new InvalidScoringRulesException(name + " must not be negative");
+        }
+        return factor;
+    }
+
+    /**
+     * A four-decimal ratio reaches {@code min} exactly when its basis points reach {@code min}'s, rounded up.
+     */
+    private static long toBasisPoints(BigDecimal min, String name) {
+        try {
+            return min.movePointRight(RATIO_SCALE).setScale(0, RoundingMode.CEILING).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new InvalidScoringRulesException(name + " band minimum " + min.toPlainString() + " is out of range", e);
+        }
+    }
+
+    private static <T> T require(T value, String name) {
+        if (value == null) {
+            throw new InvalidScoringRulesException(name + " is required");
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledRuleSet[" + version + "]";
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CompiledRuleSet rules && Objects.equals(definition, rules.definition);
+    }
+
+    @Override
+    public int hashCode() {
+        return definition.hashCode();
+    }
+}
@@ -0,0 +1,235 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.DuplicateApplicationException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.LoanApplicationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rejects new applications that repeat one submitted within {@code risk-engine.duplicates.window}: same
+ * email (ignoring case), loan type and loan amount.
+ * <p>
+ * The keys of recent applications are kept in a {@link BloomFilter}, so an application that is not a
+ * duplicate, the common case, is accepted without a query. Only when the filter reports a possible match
+ * does {@link Claims#check} count matching rows in {@code loan_applications}. The filter cannot forget keys, so
+ * two generations take turns: every {@code window} the older one is dropped and an empty one takes new
+ * keys, and lookups consult both, which covers at least the last {@code window}. The filter is filled
+ * from the applications of the last {@code window} when the application is ready; until then every check
+ * queries the database.
+ * <p>
+ * Published meters: {@code risk.applications.duplicate.checks}, tagged {@code outcome} {@code filtered}
+ * (accepted without a query), {@code false-positive} (queried, no match), {@code duplicate} or
+ * {@code unfiltered} (queried before the filter was filled); {@code risk.applications.duplicate.filter.false.positive.rate},
+ * the share of queried checks among those of non-duplicates; and
+ * {@code risk.applications.duplicate.filter.expected.false.positive.rate}, computed from the filter's fill.
+ * <p>
+ * The query only sees committed rows, so an accepted application's key is also claimed until it is stored:
+ * every request or batch checks its applications through its own {@link Claims}, and an application whose
+ * key another unreleased claim holds, in the same batch or in a concurrent request, is a duplicate without
+ * a query. Claims are released once the application is stored or its request has failed.
+ */
+@Component
+@Slf4j
+public class DuplicateApplicationDetector {
+
+    private final LoanApplicationRepository loanApplicationRepository;
+    private final RiskEngineProperties.Duplicates duplicates;
+
+    private final Counter filtered;
+    private final Counter falsePositives;
+    private final Counter duplicatesFound;
+    private final Counter unfiltered;
+
+    // Keys of accepted applications not yet stored, by the claims holding them
+    private final Map<String, Claims> inFlight = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private volatile long currentStartedAt = System.nanoTime();
+    private volatile boolean filled;
+
+    public DuplicateApplicationDetector(LoanApplicationRepository loanApplicationRepository,
+                                        RiskEngineProperties riskEngineProperties,
+                                        MeterRegistry meterRegistry) {
+        this.loanApplicationRepository = loanApplicationRepository;
+        this.duplicates = riskEngineProperties.getDuplicates();
+        this.current = newFilter();
+        this.previous = newFilter();
+
+        this.filtered = checks(meterRegistry, "filtered");
+        this.falsePositives = checks(meterRegistry, "false-positive");
+        this.duplicatesFound = checks(meterRegistry, "duplicate");
+        this.unfiltered = checks(meterRegistry, "unfiltered");
+        Gauge.builder("risk.applications.duplicate.filter.false.positive.rate", this, DuplicateApplicationDetector::falsePositiveRate)
+                .description("Share of non-duplicate applications the filter could not rule out")
+                .register(meterRegistry);
+        Gauge.builder("risk.applications.duplicate.filter.expected.false.positive.rate",
+                        this, detector -> detector.current.expectedFalsePositiveRate())
+                .description("False positive rate expected from the fill of the current filter generation")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void fill() {
+        if (!duplicates.isEnabled()) {
+            return;
+        }
+        // Added to the live generation, so keys checked while the query runs are kept
+        BloomFilter filter = current;
+        Long loaded = loanApplicationRepository.findByCreatedAtGreaterThanEqual(LocalDateTime.now().minus(duplicates.getWindow()))
+                .filter(DuplicateApplicationDetector::isCheckable)
+                .doOnNext(application -> filter.put(key(application)))
+                .count()
+                .doOnError(error -> log.error("Failed to fill the duplicate application filter, every check queries " +
+                        "the database: {}", error.getMessage()))
+                .onErrorResume(error -> Mono.empty())
+                .block();
+        if (loaded != null) {
+            filled = true;
+            log.info("Filled the duplicate application filter with {} recent applications", loaded);
+        }
+    }
+
+    /**
+     * Starts the claim scope of one request or batch; release it once its applications are stored or the
+     * request has failed.
+     */
+    public Claims claims() {
+        return new Claims();
+    }
+
+    private Mono<Void> checkNew(LoanApplication application, String key) {
+        rotateIfDue();
+        boolean wasFilled = filled;
+        boolean possibleDuplicate = !wasFilled || current.mightContain(key) || previous.mightContain(key);
+        current.put(key);
+        if (!possibleDuplicate) {
+            filtered.increment();
+            return Mono.empty();
+        }
+
+        return loanApplicationRepository.countMatchingSince(application.getEmail(), application.getLoanType(),
+                        application.getLoanAmount(), LocalDateTime.now().minus(duplicates.getWindow()))
+                .flatMap(matches -> {
+                    if (matches > 0) {
+                        return Mono.error(duplicate(application));
+                    }
+                    (wasFilled ? falsePositives : unfiltered).increment();
+                    return Mono.empty();
+                });
+    }
+
+    private DuplicateApplicationException duplicate(LoanApplication application) {
+        duplicatesFound.increment();
+        return DuplicateApplicationException.forLoan(application.getEmail(), application.getLoanType(),
+                application.getLoanAmount());
+    }
+
+    private void rotateIfDue() {
+        if (System.nanoTime() - currentStartedAt < duplicates.getWindow().toNanos()) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (now - currentStartedAt >= duplicates.getWindow().toNanos()) {
+                previous = current;
+                current = newFilter();
+                currentStartedAt = now;
+            }
+        }
+    }
+
+    private double falsePositiveRate() {
+        double queried = falsePositives.count();
+        double nonDuplicates = filtered.count() + queried;
+        return nonDuplicates == 0 ? 0 : queried / nonDuplicates;
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(duplicates.getExpectedApplications(), duplicates.getFalsePositiveRate());
+    }
+
+    private static Counter checks(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("risk.applications.duplicate.checks")
+                .description("Duplicate checks of new loan applications by outcome")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private static boolean isCheckable(LoanApplication application) {
+        return application.getEmail() != null && application.getLoanType() != null && application.getLoanAmount() != null;
+    }
+
+    // loan_amount is DECIMAL(15, 2), so amounts are compared as stored
+    private static String key(LoanApplication application) {
+        return application.getEmail().toLowerCase(Locale.ROOT) + '\n' + application.getLoanType().name() + '\n'
+                + application.getLoanAmount().setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    /**
+     * Claims of a single request or batch; safe to use from concurrent tasks.
+     */
+    public final class Claims {
+
+        private final Set<String> keys = ConcurrentHashMap.newKeySet();
+
+        private Claims() {
+        }
+
+        /**
+         * Completes empty unless the application is new (has no id) and matches an application submitted
+         * within the window or one claimed and not yet released, in which case it fails with a
+         * {@link DuplicateApplicationException}. An accepted application's key is claimed until released.
+         */
+        public Mono<Void> check(LoanApplication application) {
+            if (!duplicates.isEnabled() || application.getId() != null || !isCheckable(application)) {
+                return Mono.empty();
+            }
+            return Mono.defer(() -> {
+                String key = key(application);
+                if (inFlight.putIfAbsent(key, this) != null) {
+                    return Mono.error(duplicate(application));
+                }
+                keys.add(key);
+                return checkNew(application, key)
+                        .doOnError(error -> release(key));
+            });
+        }
+
+        /**
+         * Releases the claim of an accepted application once it is stored.
+         */
+        public void release(LoanApplication application) {
+            if (duplicates.isEnabled() && application.getId() == null && isCheckable(application)) {
+                release(key(application));
+            }
+        }
+
+        /**
+         * Releases every claim still held.
+         */
+        public void release() {
+            keys.forEach(this::release);
+        }
+
+        private void release(String key) {
+            keys.remove(key);
+            inFlight.remove(key, this);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidLoanApplicationException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidRiskScoreException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The constraints {@code schema.sql} declares on {@code loan_applications} and {@code risk_assessments},
+ * checked before an evaluation is acknowledged, so that an insert the database would reject is reported
+ * to the client instead of failing after the response has started or after the assessment was accepted.
+ */
+final class EvaluationConstraints {
+
+    private static final BigDecimal MIN_LOAN_AMOUNT = BigDecimal.valueOf(1000);
+    private static final int MIN_RISK_SCORE = 1;
+    private static final int MAX_RISK_SCORE = 1000;
+
+    private EvaluationConstraints() {
+    }
+
+    /**
+     * Checks the row of a new application ({@code id} {@code null}) and of its assessment.
+     *
+     * @throws InvalidLoanApplicationException if a column would be rejected
+     * @throws InvalidRiskScoreException       if the risk score is outside 1-1000
+     */
+    static void check(LoanApplication application, RiskAssessment assessment) {
+        if (application.getId() == null) {
+            check(application);
+        }
+        check(assessment);
+    }
+
+    static void check(LoanApplication application) {
+        require(application.getApplicantName() != null && application.getApplicantName().length() <= 100,
+                "applicantName is required and may have at most 100 characters");
+        require(application.getEmail() != null && application.getEmail().length() <= 255,
+                "email is required and may have at most 255 characters");
+        require(application.getAge() != null && application.getAge() >= 18 && application.getAge() <= 100,
+                "age is required and must be between 18 and 100");
+        require(application.getAnnualIncome() != null && application.getAnnualIncome().signum() > 0,
+                "annualIncome is required and must be positive");
+        require(application.getLoanAmount() != null && application.getLoanAmount().compareTo(MIN_LOAN_AMOUNT) >= 0,
+                "loanAmount is required and must be at least 1000");
+        require(application.getLoanType() != null, "loanType is required");
+        require(application.getLoanTermMonths() != null && application.getLoanTermMonths() >= 1
+                && application.getLoanTermMonths() <= 480, "loanTermMonths is required and must be between 1 and 480");
+        require(application.getCreditScore() == null
+                || (application.getCreditScore() >= 300 && application.getCreditScore() <= 850),
+                "creditScore must be between 300 and 850");
+        require(application.getEmploymentYears() == null || application.getEmploymentYears() >= 0,
+                "employmentYears must not be negative");
+        require(application.getMonthlyDebtPayments() == null || application.getMonthlyDebtPayments().signum() >= 0,
+                "monthlyDebtPayments must not be negative");
+        require(application.getDownPayment() == null || application.getDownPayment().signum() >= 0,
+                "downPayment must not be negative");
+        requireDecimal(application.getAnnualIncome(), 15, 2, "annualIncome");
+        requireDecimal(application.getLoanAmount(), 15, 2, "loanAmount");
+        requireDecimal(application.getMonthlyDebtPayments(), 15, 2, "monthlyDebtPayments");
+        requireDecimal(application.getDownPayment(), 15, 2, "downPayment");
+        requireDecimal(application.getCollateralValue(), 15, 2, "collateralValue");
+    }
+
+    static void check(RiskAssessment assessment) {
+        Integer riskScore = assessment.getRiskScore();
+        if (riskScore == null || riskScore < MIN_RISK_SCORE || riskScore > MAX_RISK_SCORE) {
+            throw new InvalidRiskScoreException(riskScore == null ? 0 : riskScore);
+        }
+        require(assessment.getRecommendedInterestRate() != null && assessment.getRecommendedInterestRate().signum() >= 0,
+                "the recommended interest rate must not be negative");
+        requireDecimal(assessment.getRecommendedInterestRate(), 5, 2, "recommended interest rate");
+        requireDecimal(assessment.getDebtToIncomeRatio(), 5, 4, "debt-to-income ratio");
+        requireDecimal(assessment.getLoanToValueRatio(), 5, 4, "loan-to-value ratio");
+    }
+
+    private static void require(boolean valid, String message) {
+        if (!valid) {
+            throw new InvalidLoanApplicationException("Invalid loan application: " + message);
+        }
+    }
+
+    // DECIMAL(precision, scale) rounds to the scale and rejects values with more integer digits than fit
+    private static void requireDecimal(BigDecimal value, int precision, int scale, String name) {
+        if (value == null) {
+            return;
+        }
+        BigDecimal rounded = value.setScale(scale, RoundingMode.HALF_UP);
+        if (rounded.precision() - rounded.scale() > precision - scale) {
+            throw new InvalidLoanApplicationException("Invalid loan application: " + name + " " + value.toPlainString()
+                    + " exceeds DECIMAL(" + precision + ", " + scale + ")");
+        }
+    }
+}
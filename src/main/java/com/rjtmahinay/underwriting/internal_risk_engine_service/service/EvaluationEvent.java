@@ -0,0 +1,51 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder event committed for every stored evaluation. Its duration runs from scoring to the
+ * stored assessment; decoding happened before and is reported separately. Like any JFR event it can be
+ * limited to slow evaluations with a threshold, e.g.
+ * {@code jfr configure +com.rjtmahinay.underwriting.Evaluation#threshold=10ms}.
+ */
+@Name("com.rjtmahinay.underwriting.Evaluation")
+@Label("Loan Evaluation")
+@Category("Risk Engine")
+@Description("An evaluated loan application, with the time spent in each stage")
+@StackTrace(false)
+class EvaluationEvent extends Event {
+
+    @Label("Assessment Id")
+    long assessmentId;
+
+    @Label("Loan Type")
+    String loanType;
+
+    @Label("Risk Level")
+    String riskLevel;
+
+    @Label("Risk Score")
+    int riskScore;
+
+    @Label("Batch Size")
+    @Description("Assessments stored in the same chunk of a batch evaluation, 0 for /evaluate")
+    int batchSize;
+
+    @Label("Decode")
+    @Timespan(Timespan.NANOSECONDS)
+    long decode;
+
+    @Label("Score")
+    @Timespan(Timespan.NANOSECONDS)
+    long score;
+
+    @Label("Store")
+    @Timespan(Timespan.NANOSECONDS)
+    long store;
+}
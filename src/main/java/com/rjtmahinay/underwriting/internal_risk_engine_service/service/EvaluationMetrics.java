@@ -0,0 +1,255 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskLevel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Stage-level meters of {@code /evaluate} and {@code /batch-evaluate}, tagged {@code loan.type} and, once
+ * scored, {@code risk.level} ({@code unknown} when absent):
+ * <ul>
+ *     <li>{@code risk.evaluation.decode}: JSON decoding of one loan application, recorded by
+ *     {@link #decodeTimingModule()} for every endpoint, including streamed lines</li>
+ *     <li>{@code risk.evaluation.score}: scoring of one application</li>
+ *     <li>{@code risk.evaluation.store}: storing the assessment of one {@code /evaluate} request</li>
+ *     <li>{@code risk.evaluation.batch.store} and {@code risk.evaluation.batch.chunk.size}: storing one chunk of
+ *     a batch and the assessments in it</li>
+ *     <li>{@code risk.assessments.risk.score}: distribution of the scores</li>
+ *     <li>{@code risk.assessments.decisions}: evaluations by {@code decision}, {@code approved} or
+ *     {@code rejected}</li>
+ * </ul>
+ * The whole request is timed by Spring's {@code http.server.requests}. Meters are registered up front for
+ * every tag combination, so recording is a clock read and an array lookup.
+ * <p>
+ * Each evaluation also carries an {@link EvaluationTrace} of its own stage timings. Once its assessment is
+ * stored they are committed as an {@link EvaluationEvent} to JDK Flight Recorder, and the timings of
+ * {@code /evaluate} requests are offered to the {@link SlowRequestRecorder}.
+ */
+@Component
+public class EvaluationMetrics {
+
+    private static final String UNKNOWN = "unknown";
+    private static final LoanType[] LOAN_TYPES = LoanType.values();
+    private static final RiskLevel[] RISK_LEVELS = RiskLevel.values();
+
+    // Indexed by ordinal, with the last slot for a missing value
+    private final Timer[] decodeTimers = new Timer[LOAN_TYPES.length + 1];
+    private final Timer[][] scoreTimers = new Timer[LOAN_TYPES.length + 1][RISK_LEVELS.length + 1];
+    private final Timer[][] storeTimers = new Timer[LOAN_TYPES.length + 1][RISK_LEVELS.length + 1];
+    private final DistributionSummary[][] riskScores = new DistributionSummary[LOAN_TYPES.length + 1][RISK_LEVELS.length + 1];
+    private final Counter[] approvals = new Counter[LOAN_TYPES.length + 1];
+    private final Counter[] rejections = new Counter[LOAN_TYPES.length + 1];
+    private final Timer batchStoreTimer;
+    private final DistributionSummary batchChunkSize;
+    private final SlowRequestRecorder slowRequestRecorder;
+
+    // The application last decoded on each thread, handed to the trace started for it
+    private final ThreadLocal<Decoded> lastDecoded = ThreadLocal.withInitial(Decoded::new);
+
+    public EvaluationMetrics(MeterRegistry meterRegistry, SlowRequestRecorder slowRequestRecorder) {
+        this.slowRequestRecorder = slowRequestRecorder;
+        for (int type = 0; type <= LOAN_TYPES.length; type++) {
+            String loanType = type < LOAN_TYPES.length ? LOAN_TYPES[type].name() : UNKNOWN;
+            decodeTimers[type] = Timer.builder("risk.evaluation.decode")
+                    .description("JSON decoding of a loan application")
+                    .tag("loan.type", loanType)
+                    .register(meterRegistry);
+            approvals[type] = decisions(meterRegistry, loanType, "approved");
+            rejections[type] = decisions(meterRegistry, loanType, "rejected");
+            for (int level = 0; level <= RISK_LEVELS.length; level++) {
+                String riskLevel = level < RISK_LEVELS.length ? RISK_LEVELS[level].name() : UNKNOWN;
+                scoreTimers[type][level] = Timer.builder("risk.evaluation.score")
+                        .description("Scoring of a loan application")
+                        .tags("loan.type", loanType, "risk.level", riskLevel)
+                        .register(meterRegistry);
+                storeTimers[type][level] = Timer.builder("risk.evaluation.store")
+                        .description("Storing the assessment of an /evaluate request")
+                        .tags("loan.type", loanType, "risk.level", riskLevel)
+                        .register(meterRegistry);
+                riskScores[type][level] = DistributionSummary.builder("risk.assessments.risk.score")
+                        .description("Risk scores of evaluated applications")
+                        .tags("loan.type", loanType, "risk.level", riskLevel)
+                        .register(meterRegistry);
+            }
+        }
+        batchStoreTimer = Timer.builder("risk.evaluation.batch.store")
+                .description("Storing one chunk of a batch evaluation")
+                .register(meterRegistry);
+        batchChunkSize = DistributionSummary.builder("risk.evaluation.batch.chunk.size")
+                .description("Assessments stored per chunk of a batch evaluation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the trace of an application's evaluation. If the application was decoded on this thread, as
+     * a request body or batch element is on the thread that then handles it, its decoding time is included.
+     */
+    public EvaluationTrace trace(LoanApplication application) {
+        Decoded decoded = lastDecoded.get();
+        long decodeNanos = decoded.application == application ? decoded.nanos : 0;
+        decoded.application = null;
+        return new EvaluationTrace(application.getLoanType(), decodeNanos);
+    }
+
+    /**
+     * Scores the application with {@code scoring} and records the time taken, the score and the decision.
+     */
+    public RiskAssessment score(EvaluationTrace trace, Supplier<RiskAssessment> scoring) {
+        long started = System.nanoTime();
+        RiskAssessment assessment = scoring.get();
+        long elapsed = System.nanoTime() - started;
+        trace.assessment = assessment;
+        trace.scoreNanos = elapsed;
+
+        int type = index(trace.loanType, LOAN_TYPES.length);
+        int level = index(assessment.getRiskLevel(), RISK_LEVELS.length);
+        scoreTimers[type][level].record(elapsed, TimeUnit.NANOSECONDS);
+        if (assessment.getRiskScore() != null) {
+            riskScores[type][level].record(assessment.getRiskScore());
+        }
+        if (Boolean.TRUE.equals(assessment.getApprovalRecommendation())) {
+            approvals[type].increment();
+        } else if (Boolean.FALSE.equals(assessment.getApprovalRecommendation())) {
+            rejections[type].increment();
+        }
+        return assessment;
+    }
+
+    /**
+     * Times {@code store}, from subscription to success, as the store stage of the {@code /evaluate}
+     * request traced by {@code trace}, and then publishes the trace.
+     */
+    public Mono<RiskAssessment> timeStore(EvaluationTrace trace, Mono<RiskAssessment> store) {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            return store.doOnSuccess(stored -> {
+                long finished = System.nanoTime();
+                storeTimers[index(trace.loanType, LOAN_TYPES.length)][index(stored.getRiskLevel(), RISK_LEVELS.length)]
+                        .record(finished - started, TimeUnit.NANOSECONDS);
+                trace.assessment = stored;
+                finish(trace, finished - started, finished, 0);
+                slowRequestRecorder.record(trace);
+            });
+        });
+    }
+
+    /**
+     * Times {@code store}, from subscription to completion, as the store stage of a batch chunk holding
+     * the assessments of {@code traces}, and then publishes the traces. The assessments must have their
+     * ids set by {@code store}.
+     */
+    public <T> Flux<T> timeChunkStore(List<EvaluationTrace> traces, Flux<T> store) {
+        return Flux.defer(() -> {
+            long started = System.nanoTime();
+            return store.doOnComplete(() -> {
+                long finished = System.nanoTime();
+                batchStoreTimer.record(finished - started, TimeUnit.NANOSECONDS);
+                batchChunkSize.record(traces.size());
+                for (EvaluationTrace trace : traces) {
+                    finish(trace, finished - started, finished, traces.size());
+                }
+            });
+        });
+    }
+
+    /**
+     * Jackson module that times the deserialization of every {@link LoanApplication}, wherever the
+     * {@code ObjectMapper} it is registered with decodes one.
+     */
+    public Module decodeTimingModule() {
+        SimpleModule module = new SimpleModule("LoanApplicationDecodeTiming");
+        module.setDeserializerModifier(new BeanDeserializerModifier() {
+            @Override
+            public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription description,
+                                                          JsonDeserializer<?> deserializer) {
+                return description.getBeanClass() == LoanApplication.class
+                        ? new TimedDeserializer(deserializer)
+                        : deserializer;
+            }
+        });
+        return module;
+    }
+
+    private static void finish(EvaluationTrace trace, long storeNanos, long finishedAt, int batchSize) {
+        trace.storeNanos = storeNanos;
+        trace.finishedAt = finishedAt;
+        trace.batchSize = batchSize;
+        EvaluationEvent event = trace.event;
+        if (event != null && event.shouldCommit()) {
+            RiskAssessment assessment = trace.assessment;
+            event.assessmentId = assessment.getId() != null ? assessment.getId() : 0;
+            event.loanType = trace.loanType != null ? trace.loanType.name() : UNKNOWN;
+            event.riskLevel = assessment.getRiskLevel() != null ? assessment.getRiskLevel().name() : UNKNOWN;
+            event.riskScore = assessment.getRiskScore() != null ? assessment.getRiskScore() : 0;
+            event.batchSize = batchSize;
+            event.decode = trace.decodeNanos;
+            event.score = trace.scoreNanos;
+            event.store = storeNanos;
+            event.commit();
+        }
+    }
+
+    private static Counter decisions(MeterRegistry meterRegistry, String loanType, String decision) {
+        return Counter.builder("risk.assessments.decisions")
+                .description("Evaluated applications by recommended decision")
+                .tags("loan.type", loanType, "decision", decision)
+                .register(meterRegistry);
+    }
+
+    private static int index(Enum<?> value, int missing) {
+        return value == null ? missing : value.ordinal();
+    }
+
+    private final class TimedDeserializer extends DelegatingDeserializer {
+
+        TimedDeserializer(JsonDeserializer<?> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> delegate) {
+            return new TimedDeserializer(delegate);
+        }
+
+        @Override
+        public Object deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            long started = System.nanoTime();
+            Object value = super.deserialize(parser, context);
+            if (value instanceof LoanApplication application) {
+                long elapsed = System.nanoTime() - started;
+                decodeTimers[index(application.getLoanType(), LOAN_TYPES.length)].record(elapsed, TimeUnit.NANOSECONDS);
+                Decoded decoded = lastDecoded.get();
+                decoded.application = application;
+                decoded.nanos = elapsed;
+            }
+            return value;
+        }
+    }
+
+    private static final class Decoded {
+        LoanApplication application;
+        long nanos;
+    }
+}
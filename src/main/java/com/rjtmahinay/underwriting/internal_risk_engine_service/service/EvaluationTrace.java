@@ -0,0 +1,65 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.SlowRequest;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Stage timings of one evaluation, started by {@link EvaluationMetrics#trace} and filled in as the
+ * evaluation is scored and stored. Each stage is written before the signal that starts the next one, so
+ * the fields need no synchronization.
+ */
+public final class EvaluationTrace {
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    final LoanType loanType;
+    final long decodeNanos;
+    final long startedAt = System.nanoTime();
+    final long receivedAt = System.currentTimeMillis();
+    // Null unless a recording has the event enabled
+    final EvaluationEvent event;
+
+    RiskAssessment assessment;
+    long scoreNanos;
+    long storeNanos;
+    long finishedAt;
+    int batchSize;
+
+    EvaluationTrace(LoanType loanType, long decodeNanos) {
+        this.loanType = loanType;
+        this.decodeNanos = decodeNanos;
+        EvaluationEvent event = new EvaluationEvent();
+        if (event.isEnabled()) {
+            event.begin();
+            this.event = event;
+        } else {
+            this.event = null;
+        }
+    }
+
+    /**
+     * Time from the start of decoding until the assessment was stored, including any wait between stages.
+     */
+    long durationNanos() {
+        return decodeNanos + finishedAt - startedAt;
+    }
+
+    SlowRequest toSlowRequest() {
+        return SlowRequest.builder()
+                .receivedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(receivedAt), ZoneId.systemDefault()))
+                .assessmentId(assessment.getId())
+                .loanType(loanType)
+                .riskLevel(assessment.getRiskLevel())
+                .riskScore(assessment.getRiskScore())
+                .durationMillis(durationNanos() / NANOS_PER_MILLI)
+                .decodeMillis(decodeNanos / NANOS_PER_MILLI)
+                .scoreMillis(scoreNanos / NANOS_PER_MILLI)
+                .storeMillis(storeNanos / NANOS_PER_MILLI)
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import java.math.BigDecimal;
+
+/**
+ * One compiled factor rule: ascending band thresholds and the factor of each band.
+ * <p>
+ * {@code factors[0]} applies below the first threshold and {@code factors[i]} from {@code thresholds[i - 1]}
+ * on, so the band of a value is the number of thresholds it reaches. Counting compares instead of returning
+ * from an if-chain keeps the evaluation free of data-dependent branches whatever the number of bands.
+ * Ratios, which every scorer rounds half-up to four decimals, compare either their basis points
+ * ({@link #factorForRatioBasisPoints}) against {@link #thresholds()} or their scale-4 {@link BigDecimal}
+ * ({@link #factorForRatio}) against {@link #decimalThresholds()}, with identical results. Integer bands are
+ * additionally expanded into a table with one entry per value between the first and the last threshold, so
+ * their factor ({@link #factorForValue}) is a single clamped array load. The lookups are named by the kind of
+ * input rather than overloaded, so that an {@code int} value is never silently widened to basis points or
+ * the other way round.
+ */
+final class FactorBands {
+
+    private final long[] thresholds;
+    private final BigDecimal[] decimalThresholds;
+    private final int[] factors;
+    private final int missingFactor;
+    // Integer bands only: factor of every value from tableStart (just below the first threshold) to tableEnd;
+    // null for ratio bands, so that looking up a value in them fails instead of returning the first band
+    private final int[] table;
+    private final int tableStart;
+    private final int tableEnd;
+
+    FactorBands(long[] thresholds, BigDecimal[] decimalThresholds, int[] factors, int missingFactor, boolean integral) {
+        this.thresholds = thresholds;
+        this.decimalThresholds = decimalThresholds;
+        this.factors = factors;
+        this.missingFactor = missingFactor;
+        if (integral && thresholds.length > 0) {
+            this.tableStart = Math.toIntExact(thresholds[0] - 1);
+            this.tableEnd = Math.toIntExact(thresholds[thresholds.length - 1]);
+            this.table = new int[tableEnd - tableStart + 1];
+            for (int value = tableStart; value <= tableEnd; value++) {
+                table[value - tableStart] = factorForRatioBasisPoints(value);
+            }
+        } else {
+            this.tableStart = 0;
+            this.tableEnd = 0;
+            this.table = integral ? new int[]{factors[0]} : null;
+        }
+    }
+
+    /**
+     * Factor of an integer input, such as a credit score; only for bands compiled as integral.
+     */
+    int factorForValue(int value) {
+        return table[Math.min(Math.max(value, tableStart), tableEnd) - tableStart];
+    }
+
+    /**
+     * Factor of a ratio in basis points, that is the ratio rounded half-up to four decimals times 10,000.
+     */
+    int factorForRatioBasisPoints(long value) {
+        long[] bounds = thresholds;
+        int band = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            band += value >= bounds[i] ? 1 : 0;
+        }
+        return factors[band];
+    }
+
+    /**
+     * Factor of a ratio rounded half-up to four decimals.
+     */
+    int factorForRatio(BigDecimal ratio) {
+        BigDecimal[] bounds = decimalThresholds;
+        int band = 0;
+        for (int i = 0; i < bounds.length; i++) {
+            band += ratio.compareTo(bounds[i]) >= 0 ? 1 : 0;
+        }
+        return factors[band];
+    }
+
+    /**
+     * {@link #factorForValue(int)} of an optional input, {@link #missingFactor()} when it is absent.
+     */
+    int factorForValue(Integer value) {
+        return value == null ? missingFactor : factorForValue(value.intValue());
+    }
+
+    int missingFactor() {
+        return missingFactor;
+    }
+
+    long[] thresholds() {
+        return thresholds;
+    }
+
+    BigDecimal[] decimalThresholds() {
+        return decimalThresholds;
+    }
+
+    int[] factors() {
+        return factors;
+    }
+}
@@ -0,0 +1,173 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.AssessmentReasons;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.ReasonCode;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskLevel;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+
+/**
+ * Scoring kernel that mirrors {@link RiskScoringService} on scaled {@code long} values, evaluating the
+ * same {@link CompiledRuleSet}.
+ * <p>
+ * Monetary inputs are converted to cents and every ratio is carried in basis points
+ * (four decimal places, the same scale the BigDecimal path divides to), rounded half-up
+ * exactly like {@link RoundingMode#HALF_UP}. Each ratio is computed once per application
+ * and nothing is allocated apart from the returned {@link RiskAssessment} and its fields.
+ * <p>
+ * Inputs that cannot be represented exactly in cents, that are large enough to overflow the
+ * ratio arithmetic, or that make the reference implementation throw are not handled here:
+ * {@link #score(LoanApplication, CompiledRuleSet)} returns {@code null} and the caller uses the BigDecimal path.
+ */
+@Component
+public class FixedPointRiskScorer {
+
+    // Largest magnitude in cents for which debt * 10^6 still fits in a long
+    static final long MAX_CENTS = Long.MAX_VALUE / 1_000_000L;
+    static final long ABSENT = Long.MIN_VALUE;
+    static final long NOT_REPRESENTABLE = Long.MIN_VALUE + 1;
+
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L};
+
+    /**
+     * Scores the application, or returns {@code null} when it falls outside the fixed-point domain.
+     */
+    public RiskAssessment score(LoanApplication application, CompiledRuleSet rules) {
+        LoanType loanType = application.getLoanType();
+        long income = toCents(application.getAnnualIncome());
+        long loan = toCents(application.getLoanAmount());
+        long debt = toCents(application.getMonthlyDebtPayments());
+        long downPayment = toCents(application.getDownPayment());
+        long collateral = toCents(application.getCollateralValue());
+        if (loanType == null
+                || income == NOT_REPRESENTABLE || loan == NOT_REPRESENTABLE || debt == NOT_REPRESENTABLE
+                || downPayment == NOT_REPRESENTABLE || collateral == NOT_REPRESENTABLE) {
+            return null;
+        }
+
+        boolean secured = Boolean.TRUE.equals(application.getHasCollateral());
+        boolean collateralRatioApplies = secured && collateral != ABSENT && loan != ABSENT;
+        if (loan == 0 && (income != ABSENT || collateralRatioApplies)) {
+            return null; // the reference path divides by the loan amount and throws
+        }
+
+        Integer creditScore = application.getCreditScore();
+        int creditScoreFactor = rules.creditScoreFactor(creditScore);
+        FactorBands incomeBands = rules.incomeToLoanBands();
+        int incomeFactor = income == ABSENT || loan == ABSENT ? incomeBands.missingFactor()
+                : incomeBands.factorForRatioBasisPoints(divideHalfUp(income * 10_000L, loan));
+        int employmentFactor = rules.employmentFactor(application.getEmploymentYears());
+        FactorBands collateralBands = rules.collateralToLoanBands();
+        int collateralFactor = collateralRatioApplies
+                ? collateralBands.factorForRatioBasisPoints(divideHalfUp(collateral * 10_000L, loan)) : collateralBands.missingFactor();
+        int loanTypeFactor = rules.loanTypeFactor(loanType);
+
+        int totalRiskScore = creditScoreFactor + incomeFactor + employmentFactor +
+                collateralFactor + loanTypeFactor;
+        RiskLevel riskLevel = RiskLevel.fromScore(totalRiskScore);
+
+        // Debt-to-income is needed by approval, the stored ratio and the reason codes; compute it once
+        long dti = 0;
+        boolean hasDti = false;
+        if (income != ABSENT && debt != ABSENT) {
+            long monthlyIncome = divideHalfUp(income * 100L, 12L);
+            if (monthlyIncome != 0) {
+                dti = divideHalfUp(debt * 1_000_000L, monthlyIncome);
+                hasDti = true;
+            }
+        }
+
+        boolean approvalRecommendation = rules.approve(totalRiskScore, dti);
+
+        return RiskAssessment.builder()
+                .loanApplicationId(application.getId())
+                .riskScore(totalRiskScore)
+                .riskLevel(riskLevel)
+                .approvalRecommendation(approvalRecommendation)
+                .recommendedInterestRate(rules.interestRate(loanType, totalRiskScore))
+                .debtToIncomeRatio(hasDti ? BigDecimal.valueOf(dti, 4) : BigDecimal.ZERO)
+                .loanToValueRatio(loanToValueRatio(loan, downPayment))
+                .creditScoreFactor(creditScoreFactor)
+                .incomeFactor(incomeFactor)
+                .employmentFactor(employmentFactor)
+                .collateralFactor(collateralFactor)
+                .loanTypeFactor(loanTypeFactor)
+                .reasonCodes(reasonCodes(creditScore != null, creditScore == null ? 0 : creditScore, dti, secured, rules))
+                .createdAt(LocalDateTime.now())
+                .ruleSetVersion(rules.getVersion())
+                .loanType(loanType)
+                .build();
+    }
+
+    /**
+     * Converts an amount to cents without allocating, or returns {@link #ABSENT} for {@code null}
+     * and {@link #NOT_REPRESENTABLE} when the value has more than two decimals or is too large.
+     */
+    static long toCents(BigDecimal value) {
+        if (value == null) {
+            return ABSENT;
+        }
+        int scale = value.scale();
+        if (scale < 0 || scale > 2 || value.precision() > 15) {
+            return NOT_REPRESENTABLE;
+        }
+        // Below 2^52 the unscaled value survives the round trip through double exactly
+        long unscaled = Math.round(value.doubleValue() * POWERS_OF_TEN[scale]);
+        long cents = unscaled * POWERS_OF_TEN[2 - scale];
+        return Math.abs(cents) > MAX_CENTS ? NOT_REPRESENTABLE : cents;
+    }
+
+    /**
+     * Integer division rounded like {@link RoundingMode#HALF_UP}: ties go away from zero.
+     */
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (2 * Math.abs(remainder) >= Math.abs(divisor)) {
+            quotient += (dividend ^ divisor) < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    private static BigDecimal loanToValueRatio(long loan, long downPayment) {
+        if (loan == ABSENT) {
+            return BigDecimal.ZERO;
+        }
+        long propertyValue = downPayment == ABSENT ? loan : loan + downPayment;
+        if (propertyValue == 0) {
+            return BigDecimal.ONE;
+        }
+        return BigDecimal.valueOf(divideHalfUp(loan * 10_000L, propertyValue), 4);
+    }
+
+    /**
+     * Reason codes from the inputs behind them; {@code creditScore} is ignored unless {@code hasCreditScore}.
+     */
+    static long reasonCodes(boolean hasCreditScore, int creditScore, long dti, boolean secured, CompiledRuleSet rules) {
+        int codes = 0;
+        int quotedCreditScore = 0;
+        if (hasCreditScore) {
+            if (rules.isExcellentCreditScore(creditScore)) {
+                codes |= ReasonCode.EXCELLENT_CREDIT_SCORE.mask();
+                quotedCreditScore = creditScore;
+            } else if (rules.isPoorCreditScore(creditScore)) {
+                codes |= ReasonCode.POOR_CREDIT_SCORE.mask();
+                quotedCreditScore = creditScore;
+            }
+        }
+
+        if (rules.isHighDebtToIncome(dti)) {
+            codes |= ReasonCode.HIGH_DEBT_TO_INCOME.mask();
+        }
+
+        codes |= secured ? ReasonCode.SECURED_BY_COLLATERAL.mask() : ReasonCode.UNSECURED_LOAN.mask();
+
+        return AssessmentReasons.encode(codes, quotedCreditScore);
+    }
+}
@@ -0,0 +1,547 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskLevel;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Layout of a CSV of loan applications for {@link BulkScoringRunner}, and the scoring of its rows straight
+ * from the bytes of a mapped block.
+ * <p>
+ * The header names the columns, in any order and case, with or without underscores, so an export of
+ * {@code loan_applications} can be scored as it is: {@code loan_type}, {@code annual_income} and
+ * {@code loan_amount} are required; {@code id} (or {@code loan_application_id}), {@code credit_score},
+ * {@code employment_years}, {@code monthly_debt_payments}, {@code down_payment}, {@code has_collateral} and
+ * {@code collateral_value} are optional, and any other column is skipped. Fields may be quoted, but must not
+ * contain line breaks, so that a row starts after every {@code '\n'}.
+ * <p>
+ * Rows are parsed into a {@link ColumnarLoanBatch} without creating a {@code String} or {@code BigDecimal}
+ * per field, scored with {@link BatchRiskScoringService}, and written as CSV bytes, one output row per input
+ * row in input order. A row that cannot be scored, because a field does not parse or lies outside the
+ * columnar domain (amounts with more than two decimals, for example), is written with only its id and an
+ * error.
+ */
+final class LoanApplicationCsv {
+
+    static final int MAX_ROW_LENGTH = 64 * 1024;
+
+    static final String OUTPUT_HEADER = "id,risk_score,risk_level,approval_recommendation,recommended_interest_rate,"
+            + "debt_to_income_ratio,loan_to_value_ratio,credit_score_factor,income_factor,employment_factor,"
+            + "collateral_factor,loan_type_factor,reason_codes,rule_set_version,error\n";
+
+    private static final int BATCH_SIZE = 4096;
+    private static final long INVALID = Long.MIN_VALUE;
+    private static final int INVALID_INT = Integer.MIN_VALUE;
+    private static final byte[][] LOAN_TYPE_NAMES = Arrays.stream(LoanType.values())
+            .map(type -> type.name().getBytes(StandardCharsets.US_ASCII))
+            .toArray(byte[][]::new);
+    private static final byte[][] RISK_LEVEL_NAMES = Arrays.stream(RiskLevel.values())
+            .map(level -> level.name().getBytes(StandardCharsets.US_ASCII))
+            .toArray(byte[][]::new);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OUT_OF_RANGE = "out of range".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] MALFORMED = "malformed row".getBytes(StandardCharsets.US_ASCII);
+    // Commas of the empty fields between the id and the error of a row that was not scored
+    private static final byte[] UNSCORED = ",,,,,,,,,,,,,,".getBytes(StandardCharsets.US_ASCII);
+
+    enum Column {
+        ID("id", "loanapplicationid"),
+        LOAN_TYPE("loantype"),
+        ANNUAL_INCOME("annualincome"),
+        LOAN_AMOUNT("loanamount"),
+        CREDIT_SCORE("creditscore"),
+        EMPLOYMENT_YEARS("employmentyears"),
+        MONTHLY_DEBT_PAYMENTS("monthlydebtpayments"),
+        DOWN_PAYMENT("downpayment"),
+        HAS_COLLATERAL("hascollateral"),
+        COLLATERAL_VALUE("collateralvalue");
+
+        private final String[] names;
+
+        Column(String... names) {
+            this.names = names;
+        }
+
+        static Column named(String header) {
+            String normalized = header.replace("_", "").toLowerCase(Locale.ROOT);
+            for (Column column : values()) {
+                if (Arrays.asList(column.names).contains(normalized)) {
+                    return column;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Column of every field position of a row, null for skipped fields
+    private final Column[] columns;
+    private final byte[][] invalidMessages;
+    private final int lastColumn;
+    private final boolean hasId;
+
+    LoanApplicationCsv(String header) {
+        String[] names = header.strip().split(",", -1);
+        this.columns = new Column[names.length];
+        this.invalidMessages = new byte[names.length][];
+        int last = -1;
+        boolean[] present = new boolean[Column.values().length];
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].strip().replace("\"", "");
+            Column column = Column.named(name);
+            if (column == null) {
+                continue;
+            }
+            if (present[column.ordinal()]) {
+                throw new IllegalArgumentException("Column " + name + " appears more than once");
+            }
+            present[column.ordinal()] = true;
+            columns[i] = column;
+            invalidMessages[i] = ("invalid " + name).replace(',', ' ').getBytes(StandardCharsets.US_ASCII);
+            last = i;
+        }
+        for (Column required : List.of(Column.LOAN_TYPE, Column.ANNUAL_INCOME, Column.LOAN_AMOUNT)) {
+            if (!present[required.ordinal()]) {
+                throw new IllegalArgumentException("The CSV header has no " + required.name().toLowerCase(Locale.ROOT)
+                        + " column: " + header.strip());
+            }
+        }
+        this.lastColumn = last;
+        this.hasId = present[Column.ID.ordinal()];
+    }
+
+    boolean hasId() {
+        return hasId;
+    }
+
+    /**
+     * Scores every row that starts at or after {@code position} and before {@code rowsEnd}; the last row may
+     * run past {@code rowsEnd} up to the limit of the buffer.
+     *
+     * @param endOfFile whether the buffer ends at the end of the file, so that its last row may lack a
+     *                  line break
+     * @param load      whether to also return the assessments of rows with an id, to be stored
+     */
+    Block score(ByteBuffer buffer, int position, int rowsEnd, boolean endOfFile,
+                BatchRiskScoringService scoringService, CompiledRuleSet rules, boolean load) {
+        BlockScorer scorer = new BlockScorer(buffer, scoringService, rules, load);
+        int limit = buffer.limit();
+        while (position < rowsEnd && position < limit) {
+            int lineEnd = indexOf(buffer, (byte) '\n', position, limit);
+            if (lineEnd < 0) {
+                if (!endOfFile) {
+                    throw new IllegalStateException("A row is longer than " + MAX_ROW_LENGTH + " bytes");
+                }
+                lineEnd = limit;
+            }
+            int rowEnd = lineEnd > position && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (rowEnd > position) {
+                scorer.row(position, rowEnd);
+            }
+            position = lineEnd + 1;
+        }
+        scorer.flush();
+        return scorer.block;
+    }
+
+    /**
+     * Output of one block: its CSV rows and, when loading, the assessments to store.
+     */
+    static final class Block {
+        byte[] output = new byte[1024];
+        int length;
+        long rows;
+        long invalidRows;
+        final List<RiskAssessment> assessments = new ArrayList<>();
+    }
+
+    private final class BlockScorer {
+
+        private final ByteBuffer in;
+        private final BatchRiskScoringService scoringService;
+        private final CompiledRuleSet rules;
+        private final boolean load;
+        private final Block block = new Block();
+        private final byte[] ruleSetVersion;
+        // Formatted interest rates; the compiled rules hand out the same instances for every row
+        private final Map<BigDecimal, byte[]> interestRates = new IdentityHashMap<>();
+
+        private final ColumnarLoanBatch batch = new ColumnarLoanBatch(BATCH_SIZE);
+        private final ColumnarRiskScores scores = new ColumnarRiskScores(BATCH_SIZE);
+        // Per pending row: its id, whether it is secured, and its error, null once it is in the batch
+        private final long[] ids = new long[BATCH_SIZE];
+        private final boolean[] secured = new boolean[BATCH_SIZE];
+        private final byte[][] errors = new byte[BATCH_SIZE][];
+        private final int[] batchIndexes = new int[BATCH_SIZE];
+        private int pending;
+
+        // Fields of the row being parsed
+        private long id;
+        private int loanType;
+        private long annualIncome;
+        private long loanAmount;
+        private int creditScore;
+        private int employmentYears;
+        private long monthlyDebt;
+        private long downPayment;
+        private boolean hasCollateral;
+        private long collateralValue;
+
+        BlockScorer(ByteBuffer in, BatchRiskScoringService scoringService, CompiledRuleSet rules, boolean load) {
+            this.in = in;
+            this.scoringService = scoringService;
+            this.rules = rules;
+            this.load = load;
+            this.ruleSetVersion = csvField(rules.getVersion());
+        }
+
+        void row(int start, int end) {
+            if (pending == BATCH_SIZE) {
+                flush();
+            }
+            block.rows++;
+            byte[] error = parse(start, end);
+            int row = pending++;
+            ids[row] = id;
+            secured[row] = hasCollateral;
+            if (error == null) {
+                try {
+                    int index = batch.size();
+                    batch.set(index, creditScore, annualIncome, loanAmount, employmentYears, monthlyDebt,
+                            downPayment, hasCollateral ? collateralValue : ColumnarLoanBatch.ABSENT, loanType);
+                    batch.setSize(index + 1);
+                    batchIndexes[row] = index;
+                } catch (IllegalArgumentException outsideDomain) {
+                    error = OUT_OF_RANGE;
+                }
+            }
+            errors[row] = error;
+        }
+
+        void flush() {
+            if (batch.size() > 0) {
+                scoringService.score(batch, scores, rules);
+            }
+            for (int row = 0; row < pending; row++) {
+                if (ids[row] >= 0) {
+                    writeLong(ids[row]);
+                }
+                if (errors[row] != null) {
+                    block.invalidRows++;
+                    write(UNSCORED);
+                    write(errors[row]);
+                } else {
+                    writeAssessment(row, batchIndexes[row]);
+                }
+                write((byte) '\n');
+            }
+            pending = 0;
+            batch.setSize(0);
+        }
+
+        private void writeAssessment(int row, int i) {
+            int riskScore = scores.getRiskScores()[i];
+            RiskLevel riskLevel = RiskLevel.fromScore(riskScore);
+            LoanType type = LoanType.values()[batch.getLoanTypeOrdinals()[i]];
+            BigDecimal interestRate = rules.interestRate(type, riskScore);
+            int creditScore = batch.getCreditScores()[i];
+            long dti = scores.getDebtToIncomeBasisPoints()[i];
+            long reasonCodes = FixedPointRiskScorer.reasonCodes(creditScore != ColumnarLoanBatch.ABSENT, creditScore,
+                    dti, secured[row], rules);
+
+            write((byte) ',');
+            writeLong(riskScore);
+            write((byte) ',');
+            write(RISK_LEVEL_NAMES[riskLevel.ordinal()]);
+            write((byte) ',');
+            write(scores.getApprovalRecommendations()[i] ? TRUE : FALSE);
+            write((byte) ',');
+            write(interestRates.computeIfAbsent(interestRate,
+                    rate -> rate.toPlainString().getBytes(StandardCharsets.US_ASCII)));
+            write((byte) ',');
+            writeBasisPoints(dti);
+            write((byte) ',');
+            writeBasisPoints(scores.getLoanToValueBasisPoints()[i]);
+            write((byte) ',');
+            writeLong(scores.getCreditScoreFactors()[i]);
+            write((byte) ',');
+            writeLong(scores.getIncomeFactors()[i]);
+            write((byte) ',');
+            writeLong(scores.getEmploymentFactors()[i]);
+            write((byte) ',');
+            writeLong(scores.getCollateralFactors()[i]);
+            write((byte) ',');
+            writeLong(scores.getLoanTypeFactors()[i]);
+            write((byte) ',');
+            writeLong(reasonCodes);
+            write((byte) ',');
+            write(ruleSetVersion);
+            write((byte) ',');
+
+            if (load && ids[row] >= 0) {
+                block.assessments.add(RiskAssessment.builder()
+                        .loanApplicationId(ids[row])
+                        .riskScore(riskScore)
+                        .riskLevel(riskLevel)
+                        .approvalRecommendation(scores.getApprovalRecommendations()[i])
+                        .recommendedInterestRate(interestRate)
+                        .debtToIncomeRatio(BigDecimal.valueOf(dti, 4))
+                        .loanToValueRatio(BigDecimal.valueOf(scores.getLoanToValueBasisPoints()[i], 4))
+                        .creditScoreFactor(scores.getCreditScoreFactors()[i])
+                        .incomeFactor(scores.getIncomeFactors()[i])
+                        .employmentFactor(scores.getEmploymentFactors()[i])
+                        .collateralFactor(scores.getCollateralFactors()[i])
+                        .loanTypeFactor(scores.getLoanTypeFactors()[i])
+                        .reasonCodes(reasonCodes)
+                        .createdAt(LocalDateTime.now())
+                        .ruleSetVersion(rules.getVersion())
+                        .loanType(type)
+                        .build());
+            }
+        }
+
+        /**
+         * Parses a row into the fields above and returns null, or the error of the first field that does
+         * not parse.
+         */
+        private byte[] parse(int start, int end) {
+            id = ColumnarLoanBatch.ABSENT;
+            loanType = -1;
+            annualIncome = ColumnarLoanBatch.ABSENT;
+            loanAmount = ColumnarLoanBatch.ABSENT;
+            creditScore = ColumnarLoanBatch.ABSENT;
+            employmentYears = ColumnarLoanBatch.ABSENT;
+            monthlyDebt = ColumnarLoanBatch.ABSENT;
+            downPayment = ColumnarLoanBatch.ABSENT;
+            hasCollateral = false;
+            collateralValue = ColumnarLoanBatch.ABSENT;
+
+            byte[] error = null;
+            int field = 0;
+            int position = start;
+            while (field <= lastColumn) {
+                int fieldStart = position;
+                int fieldEnd;
+                int next;
+                if (position < end && in.get(position) == '"') {
+                    int quote = position + 1;
+                    while (true) {
+                        quote = indexOf(in, (byte) '"', quote, end);
+                        if (quote < 0) {
+                            return MALFORMED;
+                        }
+                        if (quote + 1 < end && in.get(quote + 1) == '"') {
+                            quote += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    fieldStart = position + 1;
+                    fieldEnd = quote;
+                    next = quote + 1;
+                    if (next < end && in.get(next) != ',') {
+                        return MALFORMED;
+                    }
+                } else {
+                    next = indexOf(in, (byte) ',', position, end);
+                    if (next < 0) {
+                        next = end;
+                    }
+                    fieldEnd = next;
+                }
+
+                if (columns[field] != null && error == null && !parseField(columns[field], fieldStart, fieldEnd)) {
+                    error = invalidMessages[field];
+                }
+                field++;
+                if (next >= end) {
+                    break;
+                }
+                position = next + 1;
+            }
+            if (field <= lastColumn) {
+                return MALFORMED;
+            }
+            if (error == null && (loanType < 0 || annualIncome == ColumnarLoanBatch.ABSENT
+                    || loanAmount == ColumnarLoanBatch.ABSENT)) {
+                return OUT_OF_RANGE;
+            }
+            return error;
+        }
+
+        private boolean parseField(Column column, int start, int end) {
+            switch (column) {
+                case ID -> id = parseScaled(in, start, end, 0);
+                case LOAN_TYPE -> {
+                    loanType = parseLoanType(in, start, end);
+                    return loanType >= 0;
+                }
+                case ANNUAL_INCOME -> annualIncome = parseScaled(in, start, end, 2);
+                case LOAN_AMOUNT -> loanAmount = parseScaled(in, start, end, 2);
+                case CREDIT_SCORE -> {
+                    creditScore = parseInt(in, start, end);
+                    return creditScore != INVALID_INT;
+                }
+                case EMPLOYMENT_YEARS -> {
+                    employmentYears = parseInt(in, start, end);
+                    return employmentYears != INVALID_INT;
+                }
+                case MONTHLY_DEBT_PAYMENTS -> monthlyDebt = parseScaled(in, start, end, 2);
+                case DOWN_PAYMENT -> downPayment = parseScaled(in, start, end, 2);
+                case HAS_COLLATERAL -> {
+                    int value = parseBoolean(in, start, end);
+                    hasCollateral = value == 1;
+                    return value >= 0;
+                }
+                case COLLATERAL_VALUE -> collateralValue = parseScaled(in, start, end, 2);
+            }
+            return id != INVALID && annualIncome != INVALID && loanAmount != INVALID
+                    && monthlyDebt != INVALID && downPayment != INVALID && collateralValue != INVALID;
+        }
+
+        private void writeBasisPoints(long basisPoints) {
+            writeLong(basisPoints / 10_000);
+            write((byte) '.');
+            long fraction = basisPoints % 10_000;
+            for (long digit = 1000; digit > 0; digit /= 10) {
+                write((byte) ('0' + fraction / digit % 10));
+            }
+        }
+
+        private void writeLong(long value) {
+            if (value < 0) {
+                write((byte) '-');
+                value = -value;
+            }
+            long divisor = 1;
+            while (value / divisor >= 10) {
+                divisor *= 10;
+            }
+            for (; divisor > 0; divisor /= 10) {
+                write((byte) ('0' + value / divisor % 10));
+            }
+        }
+
+        private void write(byte[] bytes) {
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, block.output, block.length, bytes.length);
+            block.length += bytes.length;
+        }
+
+        private void write(byte b) {
+            ensureCapacity(1);
+            block.output[block.length++] = b;
+        }
+
+        private void ensureCapacity(int bytes) {
+            if (block.length + bytes > block.output.length) {
+                block.output = Arrays.copyOf(block.output, Math.max(block.output.length * 2, block.length + bytes));
+            }
+        }
+    }
+
+    /**
+     * Parses a non-negative number into a {@code long} scaled by 10^{@code scale}: with a scale of 0 an
+     * integer, with 2 an amount in cents. Returns {@link ColumnarLoanBatch#ABSENT} for an empty field and
+     * {@link #INVALID} for anything else that is not such a number, has more significant decimals than the
+     * scale or exceeds the columnar domain.
+     */
+    private static long parseScaled(ByteBuffer in, int start, int end, int scale) {
+        if (start == end) {
+            return ColumnarLoanBatch.ABSENT;
+        }
+        long value = 0;
+        int decimals = -1;
+        for (int p = start; p < end; p++) {
+            byte b = in.get(p);
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (b < '0' || b > '9') {
+                return INVALID;
+            }
+            if (decimals >= scale) {
+                // Beyond the scale only trailing zeros are allowed, as in 75000.000
+                if (b != '0') {
+                    return INVALID;
+                }
+                continue;
+            }
+            if (decimals >= 0) {
+                decimals++;
+            }
+            value = value * 10 + (b - '0');
+            if (value > FixedPointRiskScorer.MAX_CENTS) {
+                return INVALID;
+            }
+        }
+        for (int d = Math.max(decimals, 0); d < scale; d++) {
+            value *= 10;
+        }
+        return value > FixedPointRiskScorer.MAX_CENTS ? INVALID : value;
+    }
+
+    private static int parseInt(ByteBuffer in, int start, int end) {
+        long value = parseScaled(in, start, end, 0);
+        return value == INVALID || value > Integer.MAX_VALUE ? INVALID_INT : (int) value;
+    }
+
+    private static int parseLoanType(ByteBuffer in, int start, int end) {
+        for (int type = 0; type < LOAN_TYPE_NAMES.length; type++) {
+            if (equalsIgnoreCase(in, start, end, LOAN_TYPE_NAMES[type])) {
+                return type;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 1 for true, 0 for false or an empty field, -1 for anything else.
+     */
+    private static int parseBoolean(ByteBuffer in, int start, int end) {
+        if (start == end || equalsIgnoreCase(in, start, end, FALSE) || (end - start == 1 && in.get(start) == '0')) {
+            return 0;
+        }
+        return equalsIgnoreCase(in, start, end, TRUE) || (end - start == 1 && in.get(start) == '1') ? 1 : -1;
+    }
+
+    private static boolean equalsIgnoreCase(ByteBuffer in, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            byte b = in.get(start + i);
+            if (b != expected[i] && (b ^ 0x20) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int indexOf(ByteBuffer in, byte b, int from, int to) {
+        for (int p = from; p < to; p++) {
+            if (in.get(p) == b) {
+                return p;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] csvField(String value) {
+        String field = value.contains(",") || value.contains("\"") || value.contains("\n")
+                ? '"' + value.replace("\"", "\"\"") + '"' : value;
+        return field.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,423 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.ScoringRuleDefinition;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.PortfolioOutcome;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.PortfolioSimulation;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskLevel;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.LoanApplicationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * What-if analysis of the scoring rules: scores the stored loan applications with the current rules and with
+ * alternate ones and reports how approvals, the risk level mix, the average risk score and the average
+ * recommended interest rate would move. Nothing is written.
+ * <p>
+ * The alternate rules are the current ones with the rules given in the request replaced, and are validated as
+ * a rules file would be. The applications are scored from an in-memory snapshot of {@code loan_applications}
+ * in {@link ColumnarLoanBatch} segments of {@value #SEGMENT_SIZE} rows. Only the first simulation waits for
+ * the snapshot to load; once it is older than {@code risk-engine.simulation.snapshot-ttl}, the next simulation
+ * starts a reload in the background and is answered from the old snapshot meanwhile.
+ * <p>
+ * A simulation is a fork-join task over the segments on a pool of {@code parallelism} threads: tasks split
+ * until they cover {@value #LEAF_SEGMENTS} segments, score each segment under both rule sets with the columnar
+ * scorer into reused arrays, and tally the outcomes, which are merged as the tasks join.
+ */
+@Service
+@Slf4j
+public class PortfolioSimulationService {
+
+    static final int SEGMENT_SIZE = 4096;
+    private static final int LEAF_SEGMENTS = 2;
+    private static final int LOAD_CHUNK_SIZE = 5000;
+    private static final String SCENARIO_VERSION = "what-if";
+
+    private final LoanApplicationRepository loanApplicationRepository;
+    private final BatchRiskScoringService batchRiskScoringService;
+    private final ScoringRuleSetProvider scoringRuleSetProvider;
+    private final ObjectMapper objectMapper;
+    private final RiskEngineProperties.Simulation simulation;
+    private final ForkJoinPool forkJoinPool;
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+    // The load in progress, if any
+    private final AtomicReference<Mono<Snapshot>> loading = new AtomicReference<>();
+
+    public PortfolioSimulationService(LoanApplicationRepository loanApplicationRepository,
+                                      BatchRiskScoringService batchRiskScoringService,
+                                      ScoringRuleSetProvider scoringRuleSetProvider,
+                                      ObjectMapper objectMapper,
+                                      RiskEngineProperties riskEngineProperties) {
+        this.loanApplicationRepository = loanApplicationRepository;
+        this.batchRiskScoringService = batchRiskScoringService;
+        this.scoringRuleSetProvider = scoringRuleSetProvider;
+        this.objectMapper = objectMapper;
+        this.simulation = riskEngineProperties.getSimulation();
+        this.forkJoinPool = new ForkJoinPool(simulation.getParallelism() > 0
+                ? simulation.getParallelism() : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Scores the stored applications with the current rules and with the current rules overridden by
+     * {@code overrides}: every rule given there replaces the current one, and every rule left out (null, or
+     * an empty list of bands or premiums) is kept. Loan type factors and base rates are replaced per loan type.
+     *
+     * @throws com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidScoringRulesException
+     *         if the alternate rules are invalid
+     */
+    public Mono<PortfolioSimulation> simulate(ScoringRuleDefinition overrides) {
+        return Mono.defer(() -> {
+            CompiledRuleSet baseline = scoringRuleSetProvider.current();
+            CompiledRuleSet scenario = scenario(baseline, overrides);
+            return snapshot().flatMap(applications -> Mono.fromFuture(() -> CompletableFuture.supplyAsync(
+                    () -> simulate(applications, baseline, scenario), forkJoinPool)));
+        });
+    }
+
+    private PortfolioSimulation simulate(Snapshot applications, CompiledRuleSet baseline, CompiledRuleSet scenario) {
+        long started = System.nanoTime();
+        Comparison comparison = new SimulationTask(applications.segments, 0, applications.segments.size(),
+                batchRiskScoringService, baseline, scenario).invoke();
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        log.info("Simulated scoring rules {} against {} on {} applications in {} ms",
+                scenario.getVersion(), baseline.getVersion(), applications.applications, elapsedMillis);
+
+        Tally before = comparison.baseline;
+        Tally after = comparison.scenario;
+        Map<RiskLevel, Double> mixChange = new EnumMap<>(RiskLevel.class);
+        for (RiskLevel level : RiskLevel.values()) {
+            mixChange.put(level, round(after.percent(after.levels[level.ordinal()])
+                    - before.percent(before.levels[level.ordinal()]), 2));
+        }
+        return PortfolioSimulation.builder()
+                .applications(applications.applications)
+                .unscorableApplications(applications.unscorable)
+                .truncated(applications.truncated)
+                .snapshotTakenAt(applications.takenAt)
+                .baseline(before.outcome(baseline.getVersion()))
+                .scenario(after.outcome(scenario.getVersion()))
+                .approvalRateChange(round(after.percent(after.approved) - before.percent(before.approved), 2))
+                .riskLevelMixChange(mixChange)
+                .averageRiskScoreChange(round(after.averageRiskScore() - before.averageRiskScore(), 2))
+                .averageInterestRateChange(round(after.averageInterestRate() - before.averageInterestRate(), 4))
+                .newlyApproved(comparison.newlyApproved)
+                .newlyRejected(comparison.newlyRejected)
+                .elapsedMillis(elapsedMillis)
+                .build();
+    }
+
+    private CompiledRuleSet scenario(CompiledRuleSet baseline, ScoringRuleDefinition overrides) {
+        // A deep copy, so the definition of the rules in use is never modified
+        ScoringRuleDefinition rules = objectMapper.convertValue(baseline.getDefinition(), ScoringRuleDefinition.class);
+        rules.setVersion(SCENARIO_VERSION);
+        if (overrides == null) {
+            return CompiledRuleSet.compile(rules);
+        }
+        if (overrides.getVersion() != null) {
+            rules.setVersion(overrides.getVersion());
+        }
+        override(rules.getCreditScore(), overrides.getCreditScore());
+        override(rules.getIncomeToLoanRatio(), overrides.getIncomeToLoanRatio());
+        override(rules.getEmploymentYears(), overrides.getEmploymentYears());
+        override(rules.getCollateralToLoanRatio(), overrides.getCollateralToLoanRatio());
+        if (overrides.getLoanTypeFactors() != null) {
+            rules.getLoanTypeFactors().putAll(overrides.getLoanTypeFactors());
+        }
+
+        ScoringRuleDefinition.Approval approval = overrides.getApproval();
+        if (approval != null) {
+            if (approval.getApproveMaxScore() != null) {
+                rules.getApproval().setApproveMaxScore(approval.getApproveMaxScore());
+            }
+            if (approval.getConditionalMaxScore() != null) {
+                rules.getApproval().setConditionalMaxScore(approval.getConditionalMaxScore());
+            }
+            if (approval.getMaxDebtToIncomeRatio() != null) {
+                rules.getApproval().setMaxDebtToIncomeRatio(approval.getMaxDebtToIncomeRatio());
+            }
+        }
+
+        ScoringRuleDefinition.InterestRate interestRate = overrides.getInterestRate();
+        if (interestRate != null) {
+            if (interestRate.getBaseRates() != null) {
+                rules.getInterestRate().getBaseRates().putAll(interestRate.getBaseRates());
+            }
+            if (interestRate.getDefaultPremium() != null) {
+                rules.getInterestRate().setDefaultPremium(interestRate.getDefaultPremium());
+            }
+            if (interestRate.getPremiums() != null && !interestRate.getPremiums().isEmpty()) {
+                rules.getInterestRate().setPremiums(interestRate.getPremiums());
+            }
+        }
+        return CompiledRuleSet.compile(rules);
+    }
+
+    private static void override(ScoringRuleDefinition.Bands bands, ScoringRuleDefinition.Bands overrides) {
+        if (overrides == null) {
+            return;
+        }
+        if (overrides.getMissingFactor() != null) {
+            bands.setMissingFactor(overrides.getMissingFactor());
+        }
+        if (overrides.getDefaultFactor() != null) {
+            bands.setDefaultFactor(overrides.getDefaultFactor());
+        }
+        if (overrides.getBands() != null && !overrides.getBands().isEmpty()) {
+            bands.setBands(overrides.getBands());
+        }
+    }
+
+    private Mono<Snapshot> snapshot() {
+        Snapshot current = snapshot.get();
+        if (current != null && current.loadedAt + simulation.getSnapshotTtl().toNanos() - System.nanoTime() > 0) {
+            return Mono.just(current);
+        }
+        Mono<Snapshot> load = loading.get();
+        if (load == null) {
+            // Off the caller's thread, which a reload in the background must not hold up
+            Mono<Snapshot> started = loadSnapshot()
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .doOnNext(snapshot::set)
+                    .doFinally(signal -> loading.set(null))
+                    .cache();
+            if (!loading.compareAndSet(null, started)) {
+                return snapshot();
+            }
+            load = started;
+            started.subscribe(loaded -> { }, error -> log.error("Failed to load loan applications for simulations: {}",
+                    error.getMessage(), error));
+        }
+        return current != null ? Mono.just(current) : load;
+    }
+
+    private Mono<Snapshot> loadSnapshot() {
+        return Mono.defer(() -> {
+            long started = System.nanoTime();
+            SnapshotBuilder builder = new SnapshotBuilder(simulation.getMaxApplications());
+            return loanApplicationRepository.findPageAfter(0L, LOAD_CHUNK_SIZE).collectList()
+                    .expand(chunk -> chunk.size() < LOAD_CHUNK_SIZE || builder.truncated
+                            ? Mono.empty()
+                            : loanApplicationRepository.findPageAfter(chunk.get(chunk.size() - 1).getId(), LOAD_CHUNK_SIZE)
+                                    .collectList())
+                    .doOnNext(builder::add)
+                    .then(Mono.fromSupplier(() -> {
+                        Snapshot loaded = builder.build();
+                        log.info("Loaded {} loan applications for simulations in {} ms{}", loaded.applications,
+                                (System.nanoTime() - started) / 1_000_000,
+                                loaded.truncated ? "; applications beyond risk-engine.simulation.max-applications are left out" : "");
+                        return loaded;
+                    }));
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        forkJoinPool.shutdownNow();
+    }
+
+    private static double round(double value, int decimals) {
+        double scale = Math.pow(10, decimals);
+        return Math.round(value * scale) / scale;
+    }
+
+    private static final class Snapshot {
+        final List<ColumnarLoanBatch> segments;
+        final long applications;
+        final long unscorable;
+        final boolean truncated;
+        final LocalDateTime takenAt = LocalDateTime.now();
+        final long loadedAt = System.nanoTime();
+
+        Snapshot(List<ColumnarLoanBatch> segments, long applications, long unscorable, boolean truncated) {
+            this.segments = segments;
+            this.applications = applications;
+            this.unscorable = unscorable;
+            this.truncated = truncated;
+        }
+    }
+
+    private static final class SnapshotBuilder {
+        final int maxApplications;
+        final List<ColumnarLoanBatch> segments = new ArrayList<>();
+        ColumnarLoanBatch segment;
+        long applications;
+        long unscorable;
+        boolean truncated;
+
+        SnapshotBuilder(int maxApplications) {
+            this.maxApplications = maxApplications;
+        }
+
+        void add(List<LoanApplication> chunk) {
+            for (LoanApplication application : chunk) {
+                if (applications == maxApplications) {
+                    truncated = true;
+                    return;
+                }
+                if (segment == null || segment.size() == SEGMENT_SIZE) {
+                    segment = new ColumnarLoanBatch(SEGMENT_SIZE);
+                    segments.add(segment);
+                }
+                try {
+                    segment.set(segment.size(), application);
+                } catch (IllegalArgumentException e) {
+                    unscorable++;
+                    continue;
+                }
+                segment.setSize(segment.size() + 1);
+                applications++;
+            }
+        }
+
+        Snapshot build() {
+            return new Snapshot(List.copyOf(segments), applications, unscorable, truncated);
+        }
+    }
+
+    /**
+     * Scores the segments {@code [from, to)} under both rule sets.
+     */
+    private static final class SimulationTask extends RecursiveTask<Comparison> {
+
+        private final List<ColumnarLoanBatch> segments;
+        private final int from;
+        private final int to;
+        private final BatchRiskScoringService scorer;
+        private final CompiledRuleSet baseline;
+        private final CompiledRuleSet scenario;
+
+        SimulationTask(List<ColumnarLoanBatch> segments, int from, int to, BatchRiskScoringService scorer,
+                       CompiledRuleSet baseline, CompiledRuleSet scenario) {
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+            this.scorer = scorer;
+            this.baseline = baseline;
+            this.scenario = scenario;
+        }
+
+        @Override
+        protected Comparison compute() {
+            if (to - from > LEAF_SEGMENTS) {
+                int middle = (from + to) >>> 1;
+                SimulationTask left = new SimulationTask(segments, from, middle, scorer, baseline, scenario);
+                left.fork();
+                Comparison right = new SimulationTask(segments, middle, to, scorer, baseline, scenario).compute();
+                return right.merge(left.join());
+            }
+
+            Comparison comparison = new Comparison();
+            ColumnarRiskScores before = new ColumnarRiskScores(SEGMENT_SIZE);
+            ColumnarRiskScores after = new ColumnarRiskScores(SEGMENT_SIZE);
+            for (int index = from; index < to; index++) {
+                ColumnarLoanBatch segment = segments.get(index);
+                scorer.score(segment, before, baseline);
+                scorer.score(segment, after, scenario);
+                int[] loanTypes = segment.getLoanTypeOrdinals();
+                for (int row = 0; row < segment.size(); row++) {
+                    boolean approvedBefore = before.getApprovalRecommendations()[row];
+                    boolean approvedAfter = after.getApprovalRecommendations()[row];
+                    comparison.baseline.add(loanTypes[row], before.getRiskScores()[row], approvedBefore, baseline);
+                    comparison.scenario.add(loanTypes[row], after.getRiskScores()[row], approvedAfter, scenario);
+                    if (approvedBefore != approvedAfter) {
+                        if (approvedAfter) {
+                            comparison.newlyApproved++;
+                        } else {
+                            comparison.newlyRejected++;
+                        }
+                    }
+                }
+            }
+            return comparison;
+        }
+    }
+
+    private static final class Comparison {
+        final Tally baseline = new Tally();
+        final Tally scenario = new Tally();
+        long newlyApproved;
+        long newlyRejected;
+
+        Comparison merge(Comparison other) {
+            baseline.merge(other.baseline);
+            scenario.merge(other.scenario);
+            newlyApproved += other.newlyApproved;
+            newlyRejected += other.newlyRejected;
+            return this;
+        }
+    }
+
+    private static final class Tally {
+        final long[] levels = new long[RiskLevel.values().length];
+        long applications;
+        long approved;
+        long riskScoreSum;
+        long interestRateHundredthsSum;
+
+        void add(int loanType, int riskScore, boolean approved, CompiledRuleSet rules) {
+            applications++;
+            if (approved) {
+                this.approved++;
+            }
+            riskScoreSum += riskScore;
+            interestRateHundredthsSum += rules.interestRateHundredths(loanType, riskScore);
+            levels[RiskLevel.fromScore(riskScore).ordinal()]++;
+        }
+
+        void merge(Tally other) {
+            for (int level = 0; level < levels.length; level++) {
+                levels[level] += other.levels[level];
+            }
+            applications += other.applications;
+            approved += other.approved;
+            riskScoreSum += other.riskScoreSum;
+            interestRateHundredthsSum += other.interestRateHundredthsSum;
+        }
+
+        double percent(long count) {
+            return applications > 0 ? count * 100.0 / applications : 0.0;
+        }
+
+        double averageRiskScore() {
+            return applications > 0 ? (double) riskScoreSum / applications : 0.0;
+        }
+
+        double averageInterestRate() {
+            return applications > 0 ? interestRateHundredthsSum / 100.0 / applications : 0.0;
+        }
+
+        PortfolioOutcome outcome(String ruleSetVersion) {
+            Map<RiskLevel, Long> counts = new EnumMap<>(RiskLevel.class);
+            Map<RiskLevel, Double> mix = new EnumMap<>(RiskLevel.class);
+            for (RiskLevel level : RiskLevel.values()) {
+                counts.put(level, levels[level.ordinal()]);
+                mix.put(level, round(percent(levels[level.ordinal()]), 2));
+            }
+            return PortfolioOutcome.builder()
+                    .ruleSetVersion(ruleSetVersion)
+                    .approvedApplications(approved)
+                    .rejectedApplications(applications - approved)
+                    .approvalRate(round(percent(approved), 2))
+                    .riskLevelCounts(counts)
+                    .riskLevelMix(mix)
+                    .averageRiskScore(round(averageRiskScore(), 2))
+                    .averageInterestRate(round(averageInterestRate(), 4))
+                    .build();
+        }
+    }
+}
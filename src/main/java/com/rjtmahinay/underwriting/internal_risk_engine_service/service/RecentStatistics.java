@@ -0,0 +1,175 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.WindowedStatistics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Assessments stored during the last {@code risk-engine.statistics.windows} (by default the last minute,
+ * five minutes and hour), for alerting on current rather than all-time approval rates and throughput.
+ * <p>
+ * {@link RiskStatisticsAggregator} records every stored assessment into the bucket of the current second in
+ * a ring with one bucket per second of the longest window, so the memory used is fixed whatever the
+ * traffic. Recording is lock-free: the bucket of a second that has passed around the ring is replaced with
+ * a compare-and-set, and the counts are atomic increments. A window is summed over its buckets up to the
+ * last complete second without touching the database; unlike the all-time statistics the windows are not
+ * rebuilt at startup, so just after startup they cover only the seconds since.
+ * <p>
+ * Published meters, tagged {@code window}: {@code risk.statistics.window.throughput} (assessments per
+ * second), {@code risk.statistics.window.approval.rate} (percent) and
+ * {@code risk.statistics.window.risk.score.average}.
+ */
+@Component
+public class RecentStatistics {
+
+    private static final int TOTAL = 0;
+    private static final int APPROVED = 1;
+    private static final int REJECTED = 2;
+    private static final int RISK_SCORE_SUM = 3;
+    private static final int RISK_SCORES = 4;
+
+    private final List<Duration> windows;
+    private final AtomicReferenceArray<Bucket> buckets;
+    private final long startedAt = currentSecond();
+
+    public RecentStatistics(RiskEngineProperties riskEngineProperties, MeterRegistry meterRegistry) {
+        this.windows = List.copyOf(riskEngineProperties.getStatistics().getWindows());
+        long longest = 0;
+        for (Duration window : windows) {
+            if (window.getSeconds() < 1) {
+                throw new IllegalArgumentException("Statistics windows must be at least one second, got " + window);
+            }
+            longest = Math.max(longest, window.getSeconds());
+        }
+        // One more bucket than the longest window, for the second in progress
+        this.buckets = new AtomicReferenceArray<>(Math.toIntExact(longest + 1));
+
+        for (Duration window : windows) {
+            gauge(meterRegistry, "risk.statistics.window.throughput", "Assessments stored per second",
+                    window, WindowedStatistics::getEvaluationsPerSecond);
+            gauge(meterRegistry, "risk.statistics.window.approval.rate", "Approved assessments in percent",
+                    window, WindowedStatistics::getApprovalRate);
+            gauge(meterRegistry, "risk.statistics.window.risk.score.average", "Average risk score",
+                    window, WindowedStatistics::getAverageRiskScore);
+        }
+    }
+
+    public void record(RiskAssessment assessment) {
+        record(assessment, currentSecond());
+    }
+
+    void record(RiskAssessment assessment, long second) {
+        AtomicLongArray counts = bucket(second).counts;
+        counts.incrementAndGet(TOTAL);
+        if (Boolean.TRUE.equals(assessment.getApprovalRecommendation())) {
+            counts.incrementAndGet(APPROVED);
+        } else if (Boolean.FALSE.equals(assessment.getApprovalRecommendation())) {
+            counts.incrementAndGet(REJECTED);
+        }
+        if (assessment.getRiskScore() != null) {
+            counts.addAndGet(RISK_SCORE_SUM, assessment.getRiskScore());
+            counts.incrementAndGet(RISK_SCORES);
+        }
+    }
+
+    /**
+     * Every configured window, shortest first.
+     */
+    public List<WindowedStatistics> windows() {
+        long now = currentSecond();
+        return windows.stream()
+                .sorted()
+                .map(window -> window(window, now))
+                .toList();
+    }
+
+    WindowedStatistics window(Duration window, long now) {
+        long seconds = window.getSeconds();
+        long[] sums = new long[RISK_SCORES + 1];
+        // The seconds [now - seconds, now - 1]; the current one is still being filled
+        for (long second = now - seconds; second < now; second++) {
+            Bucket bucket = buckets.get(index(second));
+            if (bucket != null && bucket.second == second) {
+                for (int count = 0; count < sums.length; count++) {
+                    sums[count] += bucket.counts.get(count);
+                }
+            }
+        }
+
+        long observed = Math.max(0, Math.min(seconds, now - startedAt));
+        long total = sums[TOTAL];
+        return WindowedStatistics.builder()
+                .window(format(window))
+                .windowSeconds(seconds)
+                .observedSeconds(observed)
+                .totalAssessments(total)
+                .approvedAssessments(sums[APPROVED])
+                .rejectedAssessments(sums[REJECTED])
+                .approvalRate(round(total > 0 ? (double) sums[APPROVED] / total * 100 : 0.0))
+                .rejectionRate(round(total > 0 ? (double) sums[REJECTED] / total * 100 : 0.0))
+                .averageRiskScore(round(sums[RISK_SCORES] > 0 ? (double) sums[RISK_SCORE_SUM] / sums[RISK_SCORES] : 0.0))
+                .evaluationsPerSecond(round(observed > 0 ? (double) total / observed : 0.0))
+                .build();
+    }
+
+    private Bucket bucket(long second) {
+        int index = index(second);
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            // A bucket newer than the second belongs to a recorder that fell behind by a lap; count it there
+            if (bucket != null && bucket.second >= second) {
+                return bucket;
+            }
+            Bucket next = new Bucket(second);
+            if (buckets.compareAndSet(index, bucket, next)) {
+                return next;
+            }
+        }
+    }
+
+    private int index(long second) {
+        return (int) Math.floorMod(second, (long) buckets.length());
+    }
+
+    private void gauge(MeterRegistry meterRegistry, String name, String description, Duration window,
+                       ToDoubleFunction<WindowedStatistics> value) {
+        Gauge.builder(name, this, statistics -> value.applyAsDouble(statistics.window(window, currentSecond())))
+                .description(description + " over the window")
+                .tag("window", format(window))
+                .register(meterRegistry);
+    }
+
+    private static long currentSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    static String format(Duration window) {
+        long seconds = window.getSeconds();
+        if (seconds % 3600 == 0) {
+            return seconds / 3600 + "h";
+        }
+        return seconds % 60 == 0 ? seconds / 60 + "m" : seconds + "s";
+    }
+
+    private static final class Bucket {
+        final long second;
+        final AtomicLongArray counts = new AtomicLongArray(RISK_SCORES + 1);
+
+        Bucket(long second) {
+            this.second = second;
+        }
+    }
+}
@@ -0,0 +1,489 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RescoringFailure;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RescoringJob;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RescoringProgress;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.LoanApplicationRepository;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RescoringFailureRepository;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RescoringJobRepository;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RiskAssessmentRepository;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-scores every stored loan application with the current scoring rules, storing a new assessment for
+ * each, for when the rules have changed.
+ * <p>
+ * A job walks {@code loan_applications} by id in chunks of {@code risk-engine.rescoring.chunk-size}. Chunks
+ * are fetched one after the other, scored on up to {@code parallelism} threads at once, and stored in id
+ * order, each with one batched insert in a transaction that also moves the job's checkpoint in
+ * {@code rescoring_jobs} past the chunk. A job that stops, whether the process crashed or the database
+ * failed, therefore resumes after the last stored chunk without scoring any application twice: on startup
+ * unless {@code resume-on-startup} is off, or when it is started again.
+ * <p>
+ * An application that fails to score, or whose assessment the database would reject, is skipped rather than
+ * failing its chunk: it is recorded in {@code rescoring_failures} in the chunk's transaction, counted, and
+ * listed in the progress, and the checkpoint moves past it, so that a resumed job does not stop at the same
+ * chunk again. Assessments are checked against the table's constraints before the insert; if the batched
+ * insert still fails, the chunk is stored row by row and the rows the database rejects are skipped the same way.
+ * <p>
+ * A job holds at most two database connections, one fetching and one storing, and before each query it
+ * waits while live requests are queued for a connection of the pool, so it takes only connections that
+ * nobody else is waiting for. A job scores with the rules current when it started; if they change before
+ * it completes, it stops as superseded and a new job has to be started for the new rules.
+ * <p>
+ * Only one instance should run jobs against the same database.
+ */
+@Service
+@Slf4j
+public class RescoringService {
+
+    private static final String FAILED = "FAILED";
+    private static final int MAX_LISTED_FAILURES = 100;
+    private static final int MAX_REASON_LENGTH = 1000;
+
+    private final LoanApplicationRepository loanApplicationRepository;
+    private final RiskAssessmentRepository riskAssessmentRepository;
+    private final RescoringJobRepository rescoringJobRepository;
+    private final RescoringFailureRepository rescoringFailureRepository;
+    private final RiskScoringService riskScoringService;
+    private final ScoringRuleSetProvider scoringRuleSetProvider;
+    private final RiskStatisticsAggregator riskStatisticsAggregator;
+    private final TransactionalOperator transactionalOperator;
+    private final RiskEngineProperties.Rescoring rescoring;
+    // Null when connections are not pooled
+    private final ConnectionPool connectionPool;
+
+    private final AtomicBoolean starting = new AtomicBoolean();
+    // The job this instance runs or last ran
+    private volatile Run run;
+
+    public RescoringService(LoanApplicationRepository loanApplicationRepository,
+                            RiskAssessmentRepository riskAssessmentRepository,
+                            RescoringJobRepository rescoringJobRepository,
+                            RescoringFailureRepository rescoringFailureRepository,
+                            RiskScoringService riskScoringService,
+                            ScoringRuleSetProvider scoringRuleSetProvider,
+                            RiskStatisticsAggregator riskStatisticsAggregator,
+                            TransactionalOperator transactionalOperator,
+                            RiskEngineProperties riskEngineProperties,
+                            ConnectionFactory connectionFactory) {
+        this.loanApplicationRepository = loanApplicationRepository;
+        this.riskAssessmentRepository = riskAssessmentRepository;
+        this.rescoringJobRepository = rescoringJobRepository;
+        this.rescoringFailureRepository = rescoringFailureRepository;
+        this.riskScoringService = riskScoringService;
+        this.scoringRuleSetProvider = scoringRuleSetProvider;
+        this.riskStatisticsAggregator = riskStatisticsAggregator;
+        this.transactionalOperator = transactionalOperator;
+        this.rescoring = riskEngineProperties.getRescoring();
+        this.connectionPool = connectionFactory instanceof ConnectionPool pool ? pool : null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        if (!rescoring.isResumeOnStartup()) {
+            return;
+        }
+        rescoringJobRepository.findFirstByStatusOrderByIdDesc(RescoringJob.Status.RUNNING)
+                .flatMap(unfinished -> start())
+                .subscribe(
+                        progress -> log.info("Resumed re-scoring job {} after application {}",
+                                progress.getJobId(), progress.getLastApplicationId()),
+                        error -> log.error("Failed to resume re-scoring: {}", error.getMessage(), error));
+    }
+
+    /**
+     * Resumes the unfinished job if it scores with the current rules, or starts a new one, and returns its
+     * progress. Returns the progress of the running job instead if this instance is already running one.
+     */
+    public Mono<RescoringProgress> start() {
+        return Mono.defer(() -> {
+            Run current = run;
+            if ((current != null && current.active) || !starting.compareAndSet(false, true)) {
+                return progress();
+            }
+            String version = scoringRuleSetProvider.current().getVersion();
+            return rescoringJobRepository.findFirstByStatusOrderByIdDesc(RescoringJob.Status.RUNNING)
+                    .flatMap(unfinished -> version.equals(unfinished.getRuleSetVersion())
+                            ? Mono.just(unfinished)
+                            : rescoringJobRepository.updateStatus(unfinished.getId(), RescoringJob.Status.SUPERSEDED.name())
+                                    .then(Mono.empty()))
+                    .switchIfEmpty(Mono.defer(() -> rescoringJobRepository.save(RescoringJob.builder()
+                            .ruleSetVersion(version)
+                            .status(RescoringJob.Status.RUNNING)
+                            .lastApplicationId(0L)
+                            .totalApplications(0L)
+                            .rescoredApplications(0L)
+                            .failedApplications(0L)
+                            .startedAt(LocalDateTime.now())
+                            .updatedAt(LocalDateTime.now())
+                            .build())))
+                    .flatMap(job -> loanApplicationRepository.countAfter(job.getLastApplicationId())
+                            .flatMap(remaining -> {
+                                job.setTotalApplications(job.getRescoredApplications() + job.getFailedApplications() + remaining);
+                                return rescoringJobRepository.save(job);
+                            }))
+                    .map(job -> {
+                        Run started = new Run(job);
+                        run = started;
+                        log.info("Re-scoring {} applications with rules {} after application {} (job {})",
+                                job.getTotalApplications() - job.getRescoredApplications() - job.getFailedApplications(),
+                                job.getRuleSetVersion(), job.getLastApplicationId(), job.getId());
+                        started.subscription = process(started);
+                        return started.progress();
+                    })
+                    .flatMap(this::withFailedApplicationIds)
+                    .doFinally(signal -> starting.set(false));
+        });
+    }
+
+    /**
+     * Stops the running job, or the unfinished job of an instance that stopped, so it is not resumed.
+     */
+    public Mono<RescoringProgress> cancel() {
+        return Mono.defer(() -> {
+            Run current = run;
+            if (current != null && current.active) {
+                current.subscription.dispose();
+                current.stop(RescoringJob.Status.CANCELLED.name(), null);
+                return rescoringJobRepository.updateStatus(current.job.getId(), RescoringJob.Status.CANCELLED.name())
+                        .then(progress());
+            }
+            return rescoringJobRepository.findFirstByStatusOrderByIdDesc(RescoringJob.Status.RUNNING)
+                    .flatMap(unfinished -> rescoringJobRepository.updateStatus(unfinished.getId(),
+                            RescoringJob.Status.CANCELLED.name()))
+                    .then(progress());
+        });
+    }
+
+    /**
+     * Progress of the job this instance runs, or else of the latest job; empty if there has been none.
+     */
+    public Mono<RescoringProgress> progress() {
+        return Mono.defer(() -> {
+            Run current = run;
+            if (current != null && current.active) {
+                return withFailedApplicationIds(current.progress());
+            }
+            return rescoringJobRepository.findFirstByOrderByIdDesc()
+                    .map(job -> current != null && current.job.getId().equals(job.getId())
+                            ? current.progress(job)
+                            : Run.progress(job, job.getStatus().name(), null))
+                    .flatMap(this::withFailedApplicationIds);
+        });
+    }
+
+    private Mono<RescoringProgress> withFailedApplicationIds(RescoringProgress progress) {
+        if (progress.getFailedApplications() == 0) {
+            progress.setFailedApplicationIds(List.of());
+            return Mono.just(progress);
+        }
+        return rescoringFailureRepository.findApplicationIds(progress.getJobId(), MAX_LISTED_FAILURES)
+                .collectList()
+                .map(ids -> {
+                    progress.setFailedApplicationIds(ids);
+                    return progress;
+                });
+    }
+
+    private Disposable process(Run run) {
+        int chunkSize = Math.max(1, rescoring.getChunkSize());
+        int parallelism = rescoring.getParallelism() > 0
+                ? rescoring.getParallelism() : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        return fetch(run, run.job.getLastApplicationId(), chunkSize)
+                .expand(chunk -> chunk.size() < chunkSize
+                        ? Mono.empty()
+                        : fetch(run, chunk.get(chunk.size() - 1).getId(), chunkSize))
+                .filter(chunk -> !chunk.isEmpty())
+                .flatMapSequential(chunk -> Mono.fromCallable(() -> score(run, chunk)).subscribeOn(Schedulers.parallel()),
+                        parallelism, 1)
+                .concatMap(chunk -> store(run, chunk))
+                .then(rescoringJobRepository.updateStatus(run.job.getId(), RescoringJob.Status.COMPLETED.name()))
+                .subscribe(
+                        updated -> {
+                            run.stop(RescoringJob.Status.COMPLETED.name(), null);
+                            log.info("Re-scoring job {} completed: {} applications", run.job.getId(), run.rescored.get());
+                        },
+                        error -> fail(run, error));
+    }
+
+    private Mono<List<LoanApplication>> fetch(Run run, long afterId, int chunkSize) {
+        return whenPoolIdle(run).then(loanApplicationRepository.findPageAfter(afterId, chunkSize).collectList());
+    }
+
+    private ScoredChunk score(Run run, List<LoanApplication> chunk) {
+        List<RiskAssessment> assessments = new ArrayList<>(chunk.size());
+        List<RescoringFailure> failures = new ArrayList<>();
+        for (LoanApplication application : chunk) {
+            try {
+                RiskAssessment assessment = riskScoringService.calculateRiskAssessment(application);
+                if (!run.job.getRuleSetVersion().equals(assessment.getRuleSetVersion())) {
+                    throw new RulesChangedException(run.job.getRuleSetVersion(), assessment.getRuleSetVersion());
+                }
+                EvaluationConstraints.check(assessment);
+                assessments.add(assessment);
+            } catch (RulesChangedException ex) {
+                throw ex;
+            } catch (RuntimeException ex) {
+                failures.add(failure(run, application.getId(), ex));
+            }
+        }
+        return new ScoredChunk(chunk.get(chunk.size() - 1).getId(), assessments, failures);
+    }
+
+    private Mono<Void> store(Run run, ScoredChunk chunk) {
+        return whenPoolIdle(run)
+                .then(riskAssessmentRepository.insertAll(chunk.assessments)
+                        .then(checkpoint(run, chunk))
+                        .as(transactionalOperator::transactional)
+                        .thenReturn(chunk)
+                        .onErrorResume(error -> {
+                            log.debug("Re-scoring job {} failed to store a chunk of {} assessments, storing them one " +
+                                    "by one: {}", run.job.getId(), chunk.assessments.size(), error.getMessage());
+                            return storeIndividually(run, chunk);
+                        }))
+                .doOnNext(stored -> {
+                    stored.assessments.forEach(riskStatisticsAggregator::record);
+                    run.checkpointed(stored.lastApplicationId, stored.assessments.size(), stored.failures.size());
+                })
+                .then();
+    }
+
+    /**
+     * Fallback after a chunk insert failed: inserts the assessments one by one in one transaction, skipping
+     * the rows the database rejects. H2 rolls back only the failing statement, not the transaction.
+     */
+    private Mono<ScoredChunk> storeIndividually(Run run, ScoredChunk chunk) {
+        List<RiskAssessment> stored = new ArrayList<>(chunk.assessments.size());
+        List<RescoringFailure> failures = new ArrayList<>(chunk.failures);
+        return Flux.fromIterable(chunk.assessments)
+                .concatMap(assessment -> {
+                    // Ids generated by the rolled-back chunk insert are not in the table
+                    assessment.setId(null);
+                    return riskAssessmentRepository.insertAll(List.of(assessment))
+                            .doOnNext(stored::add)
+                            .onErrorResume(error -> {
+                                failures.add(failure(run, assessment.getLoanApplicationId(), error));
+                                return Mono.empty();
+                            });
+                })
+                .then(Mono.fromSupplier(() -> new ScoredChunk(chunk.lastApplicationId, stored, failures)))
+                .flatMap(storable -> checkpoint(run, storable).thenReturn(storable))
+                .as(transactionalOperator::transactional);
+    }
+
+    // Records the skipped applications and moves the checkpoint past the chunk
+    private Mono<Void> checkpoint(Run run, ScoredChunk chunk) {
+        return rescoringFailureRepository.saveAll(chunk.failures)
+                .then(rescoringJobRepository.checkpoint(run.job.getId(), chunk.lastApplicationId,
+                        chunk.assessments.size(), chunk.failures.size()))
+                .then();
+    }
+
+    private static RescoringFailure failure(Run run, Long applicationId, Throwable error) {
+        String reason = describe(error);
+        log.warn("Re-scoring job {} skipped application {}: {}", run.job.getId(), applicationId, reason);
+        return RescoringFailure.builder()
+                .jobId(run.job.getId())
+                .loanApplicationId(applicationId)
+                .reason(reason.length() > MAX_REASON_LENGTH ? reason.substring(0, MAX_REASON_LENGTH) : reason)
+                .failedAt(LocalDateTime.now())
+                .build();
+    }
+
+    // Message of the root cause without the SQL statement H2 appends to it
+    private static String describe(Throwable error) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(error);
+        String message = cause.getMessage();
+        if (message == null) {
+            return cause.getClass().getSimpleName();
+        }
+        int statement = message.indexOf("; SQL statement:");
+        return statement < 0 ? message : message.substring(0, statement);
+    }
+
+    /**
+     * Completes once no request is waiting for a connection of the pool, checking every
+     * {@code busy-backoff}.
+     */
+    private Mono<Void> whenPoolIdle(Run run) {
+        return Mono.defer(() -> {
+            if (connectionPool == null || connectionPool.getMetrics()
+                    .map(metrics -> metrics.pendingAcquireSize() == 0).orElse(true)) {
+                return Mono.empty();
+            }
+            return Mono.delay(rescoring.getBusyBackoff())
+                    .doOnNext(ignored -> run.throttledNanos.addAndGet(rescoring.getBusyBackoff().toNanos()))
+                    .then(whenPoolIdle(run));
+        });
+    }
+
+    private void fail(Run run, Throwable error) {
+        if (error instanceof RulesChangedException) {
+            run.stop(RescoringJob.Status.SUPERSEDED.name(), error.getMessage());
+            rescoringJobRepository.updateStatus(run.job.getId(), RescoringJob.Status.SUPERSEDED.name()).subscribe(
+                    updated -> log.warn("Re-scoring job {} superseded: {}", run.job.getId(), error.getMessage()),
+                    updateError -> log.error("Failed to mark re-scoring job {} superseded: {}",
+                            run.job.getId(), updateError.getMessage()));
+            return;
+        }
+        // The checkpoint stays RUNNING, so the job resumes when started again
+        run.stop(FAILED, error.getMessage());
+        log.error("Re-scoring job {} failed after application {}: {}", run.job.getId(), run.lastApplicationId,
+                error.getMessage(), error);
+    }
+
+    /**
+     * A scored chunk: the assessments to store and the applications skipped, up to the chunk's last application.
+     */
+    private static final class ScoredChunk {
+        final long lastApplicationId;
+        final List<RiskAssessment> assessments;
+        final List<RescoringFailure> failures;
+
+        ScoredChunk(long lastApplicationId, List<RiskAssessment> assessments, List<RescoringFailure> failures) {
+            this.lastApplicationId = lastApplicationId;
+            this.assessments = assessments;
+            this.failures = failures;
+        }
+    }
+
+    private static final class RulesChangedException extends RuntimeException {
+
+        RulesChangedException(String jobVersion, String currentVersion) {
+            super("The scoring rules changed from " + jobVersion + " to " + currentVersion
+                    + "; start a new job to re-score with them", null, false, false);
+        }
+    }
+
+    /**
+     * A job as run by this instance, with the progress it made since it started or resumed here.
+     */
+    private static final class Run {
+
+        final RescoringJob job;
+        final long resumedAt = System.nanoTime();
+        // Applications re-scored or skipped before this instance started or resumed the job
+        final long processedBefore;
+        final AtomicLong rescored;
+        final AtomicLong failed;
+        final AtomicLong throttledNanos = new AtomicLong();
+        volatile long lastApplicationId;
+        volatile boolean active = true;
+        volatile String status = RescoringJob.Status.RUNNING.name();
+        volatile String error;
+        volatile LocalDateTime updatedAt;
+        volatile long stoppedAt;
+        Disposable subscription;
+
+        Run(RescoringJob job) {
+            this.job = job;
+            this.processedBefore = job.getRescoredApplications() + job.getFailedApplications();
+            this.rescored = new AtomicLong(job.getRescoredApplications());
+            this.failed = new AtomicLong(job.getFailedApplications());
+            this.lastApplicationId = job.getLastApplicationId();
+            this.updatedAt = job.getUpdatedAt();
+        }
+
+        void checkpointed(long lastApplicationId, int stored, int skipped) {
+            this.lastApplicationId = lastApplicationId;
+            this.rescored.addAndGet(stored);
+            this.failed.addAndGet(skipped);
+            this.updatedAt = LocalDateTime.now();
+        }
+
+        void stop(String status, String error) {
+            this.stoppedAt = System.nanoTime();
+            this.status = status;
+            this.error = error;
+            this.updatedAt = LocalDateTime.now();
+            this.active = false;
+        }
+
+        RescoringProgress progress() {
+            long now = active ? System.nanoTime() : stoppedAt;
+            double seconds = (now - resumedAt) / 1e9;
+            long done = rescored.get();
+            long skipped = failed.get();
+            long processed = done + skipped;
+            long total = Math.max(job.getTotalApplications(), processed);
+            double rate = seconds > 0 ? (processed - processedBefore) / seconds : 0;
+            RescoringProgress progress = RescoringProgress.builder()
+                    .jobId(job.getId())
+                    .status(status)
+                    .active(active)
+                    .ruleSetVersion(job.getRuleSetVersion())
+                    .totalApplications(total)
+                    .rescoredApplications(done)
+                    .failedApplications(skipped)
+                    .lastApplicationId(lastApplicationId)
+                    .percentComplete(percent(processed, total))
+                    .applicationsPerSecond(Math.round(rate * 10.0) / 10.0)
+                    .throttledSeconds(Math.round(throttledNanos.get() / 1e8) / 10.0)
+                    .startedAt(job.getStartedAt())
+                    .updatedAt(updatedAt)
+                    .error(error)
+                    .build();
+            if (active && rate > 0) {
+                long remainingMillis = (long) ((total - processed) / rate * 1000);
+                progress.setEstimatedCompletion(LocalDateTime.now().plus(remainingMillis, ChronoUnit.MILLIS));
+            }
+            return progress;
+        }
+
+        /**
+         * Progress of this run once stopped, with the checkpoint as stored.
+         */
+        RescoringProgress progress(RescoringJob stored) {
+            RescoringProgress progress = progress();
+            if (!FAILED.equals(status)) {
+                progress.setStatus(stored.getStatus().name());
+            }
+            return progress;
+        }
+
+        static RescoringProgress progress(RescoringJob job, String status, String error) {
+            long processed = job.getRescoredApplications() + job.getFailedApplications();
+            long total = Math.max(job.getTotalApplications(), processed);
+            return RescoringProgress.builder()
+                    .jobId(job.getId())
+                    .status(status)
+                    .ruleSetVersion(job.getRuleSetVersion())
+                    .totalApplications(total)
+                    .rescoredApplications(job.getRescoredApplications())
+                    .failedApplications(job.getFailedApplications())
+                    .lastApplicationId(job.getLastApplicationId())
+                    .percentComplete(percent(processed, total))
+                    .startedAt(job.getStartedAt())
+                    .updatedAt(job.getUpdatedAt())
+                    .error(error)
+                    .build();
+        }
+
+        private static double percent(long done, long total) {
+            return total > 0 ? Math.round(done * 1000.0 / total) / 10.0 : 100.0;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Read-through cache of stored assessments by id. Assessments are not updated after they are written,
+ * apart from the one-off conversion of their notes, which invalidates the rows it touches; entries
+ * therefore need no expiry. The cache is bounded by {@code risk-engine.cache.maximum-size} and evicts
+ * with Caffeine's frequency-aware W-TinyLFU policy.
+ * <p>
+ * The cache holds futures, so concurrent misses for the same id share one query. Ids that do not exist
+ * complete empty and are not cached. Hit, miss and eviction counters are published as the
+ * {@code cache.*} meters tagged {@code cache=riskAssessments}.
+ */
+@Component
+public class RiskAssessmentCache {
+
+    static final String CACHE_NAME = "riskAssessments";
+
+    private final AsyncCache<Long, RiskAssessment> cache;
+
+    public RiskAssessmentCache(RiskEngineProperties riskEngineProperties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(riskEngineProperties.getCache().getMaximumSize())
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the cached assessment, or subscribes to {@code loader} once for all concurrent callers
+     * asking for the same id and caches its result.
+     */
+    public Mono<RiskAssessment> get(Long id, Function<Long, Mono<RiskAssessment>> loader) {
+        // suppressCancel: one caller cancelling must not cancel the query other callers are waiting on
+        return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture()), true);
+    }
+
+    public void invalidate(Long id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    public void put(RiskAssessment assessment) {
+        if (assessment.getId() != null) {
+            cache.put(assessment.getId(), CompletableFuture.completedFuture(assessment));
+        }
+    }
+}
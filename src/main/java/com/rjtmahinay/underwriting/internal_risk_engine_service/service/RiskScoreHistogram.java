@@ -0,0 +1,49 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskScoreDistribution;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent fixed-bucket histogram with one bucket per risk score from 0 to {@link #MAX_SCORE}.
+ * Scores outside that range are counted in the first or last bucket.
+ */
+class RiskScoreHistogram {
+
+    static final int MAX_SCORE = 1000;
+
+    private final AtomicLongArray counts = new AtomicLongArray(MAX_SCORE + 1);
+
+    void record(int score) {
+        counts.incrementAndGet(bucket(score));
+    }
+
+    void add(int score, long delta) {
+        counts.addAndGet(bucket(score), delta);
+    }
+
+    long[] counts() {
+        long[] snapshot = new long[counts.length()];
+        for (int score = 0; score < snapshot.length; score++) {
+            snapshot[score] = counts.get(score);
+        }
+        return snapshot;
+    }
+
+    RiskScoreDistribution distribution() {
+        SortedMap<Integer, Long> buckets = new TreeMap<>();
+        for (int score = 0; score < counts.length(); score++) {
+            long count = counts.get(score);
+            if (count != 0) {
+                buckets.put(score, count);
+            }
+        }
+        return RiskScoreDistribution.of(buckets);
+    }
+
+    static int bucket(int score) {
+        return Math.min(Math.max(score, 0), MAX_SCORE);
+    }
+}
@@ -0,0 +1,209 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessmentTotals;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskLevel;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskScoreCount;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskScoreDistribution;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskScoreDistributionReport;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RiskAssessmentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * In-memory totals and risk score histograms over {@code risk_assessments}, so the statistics endpoints
+ * never scan the table.
+ * <p>
+ * {@link UnderwritingService} records every assessment once it has been stored, which also counts it in
+ * the sliding windows of {@link RecentStatistics}. Counters are
+ * {@link LongAdder}s, so concurrent saves do not contend on a single cache line, and reads are O(1).
+ * Histograms keep one bucket per score overall, per {@link LoanType} and per {@link RiskLevel}.
+ * <p>
+ * Everything is rebuilt from the database with two aggregate queries when the application is ready and
+ * reconciled with it every {@code risk-engine.statistics.reconcile-interval}. Saves that complete while
+ * the queries run may or may not be part of their result, so a counter or bucket is only corrected when
+ * the database value lies outside the range it moved through during the queries; the correction is
+ * applied as a delta and never discards concurrent increments.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RiskStatisticsAggregator {
+
+    private final RiskAssessmentRepository riskAssessmentRepository;
+    private final RecentStatistics recentStatistics;
+
+    private final LongAdder totalAssessments = new LongAdder();
+    private final LongAdder approvedAssessments = new LongAdder();
+    private final LongAdder rejectedAssessments = new LongAdder();
+    private final LongAdder riskScoreSum = new LongAdder();
+
+    private final RiskScoreHistogram overallHistogram = new RiskScoreHistogram();
+    private final Map<LoanType, RiskScoreHistogram> loanTypeHistograms = histograms(LoanType.class);
+    private final Map<RiskLevel, RiskScoreHistogram> riskLevelHistograms = histograms(RiskLevel.class);
+
+    public void record(RiskAssessment assessment) {
+        recentStatistics.record(assessment);
+        totalAssessments.increment();
+        if (Boolean.TRUE.equals(assessment.getApprovalRecommendation())) {
+            approvedAssessments.increment();
+        } else if (Boolean.FALSE.equals(assessment.getApprovalRecommendation())) {
+            rejectedAssessments.increment();
+        }
+
+        Integer riskScore = assessment.getRiskScore();
+        if (riskScore == null) {
+            return;
+        }
+        riskScoreSum.add(riskScore);
+        overallHistogram.record(riskScore);
+        if (assessment.getLoanType() != null) {
+            loanTypeHistograms.get(assessment.getLoanType()).record(riskScore);
+        }
+        if (assessment.getRiskLevel() != null) {
+            riskLevelHistograms.get(assessment.getRiskLevel()).record(riskScore);
+        }
+    }
+
+    public RiskAssessmentTotals snapshot() {
+        return new RiskAssessmentTotals(totalAssessments.sum(), approvedAssessments.sum(),
+                rejectedAssessments.sum(), riskScoreSum.sum());
+    }
+
+    public RiskScoreDistributionReport distribution() {
+        return new RiskScoreDistributionReport(overallHistogram.distribution(),
+                distributions(loanTypeHistograms), distributions(riskLevelHistograms));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        RiskAssessmentTotals totals = reconcile().block();
+        log.info("Statistics rebuilt from database: {} assessments", totals != null ? totals.getTotalAssessments() : 0);
+    }
+
+    @Scheduled(initialDelayString = "${risk-engine.statistics.reconcile-interval:5m}",
+            fixedDelayString = "${risk-engine.statistics.reconcile-interval:5m}")
+    public Mono<RiskAssessmentTotals> reconcile() {
+        return Mono.defer(() -> {
+            RiskAssessmentTotals before = snapshot();
+            HistogramCounts histogramsBefore = histogramCounts();
+            return Mono.zip(riskAssessmentRepository.getAssessmentTotals(),
+                            riskAssessmentRepository.getRiskScoreCounts().collectList())
+                    .map(database -> {
+                        boolean corrected = correctTotals(database.getT1(), before, snapshot());
+                        corrected |= correctHistograms(database.getT2(), histogramsBefore, histogramCounts());
+                        if (corrected) {
+                            log.debug("Statistics corrected from {} to database totals {}", before, database.getT1());
+                        }
+                        return snapshot();
+                    });
+        }).doOnError(error -> log.error("Failed to reconcile statistics: {}", error.getMessage()));
+    }
+
+    private boolean correctTotals(RiskAssessmentTotals database, RiskAssessmentTotals before, RiskAssessmentTotals after) {
+        boolean corrected = correct(totalAssessments::add, database.getTotalAssessments(),
+                before.getTotalAssessments(), after.getTotalAssessments());
+        corrected |= correct(approvedAssessments::add, database.getApprovedAssessments(),
+                before.getApprovedAssessments(), after.getApprovedAssessments());
+        corrected |= correct(rejectedAssessments::add, database.getRejectedAssessments(),
+                before.getRejectedAssessments(), after.getRejectedAssessments());
+        corrected |= correct(riskScoreSum::add, database.getRiskScoreSum(),
+                before.getRiskScoreSum(), after.getRiskScoreSum());
+        return corrected;
+    }
+
+    private boolean correctHistograms(List<RiskScoreCount> rows, HistogramCounts before, HistogramCounts after) {
+        HistogramCounts database = new HistogramCounts();
+        for (RiskScoreCount row : rows) {
+            int bucket = RiskScoreHistogram.bucket(row.getRiskScore());
+            database.overall[bucket] += row.getAssessments();
+            if (row.getLoanType() != null) {
+                database.byLoanType.get(row.getLoanType())[bucket] += row.getAssessments();
+            }
+            if (row.getRiskLevel() != null) {
+                database.byRiskLevel.get(row.getRiskLevel())[bucket] += row.getAssessments();
+            }
+        }
+
+        boolean corrected = correct(overallHistogram, database.overall, before.overall, after.overall);
+        for (LoanType loanType : LoanType.values()) {
+            corrected |= correct(loanTypeHistograms.get(loanType), database.byLoanType.get(loanType),
+                    before.byLoanType.get(loanType), after.byLoanType.get(loanType));
+        }
+        for (RiskLevel riskLevel : RiskLevel.values()) {
+            corrected |= correct(riskLevelHistograms.get(riskLevel), database.byRiskLevel.get(riskLevel),
+                    before.byRiskLevel.get(riskLevel), after.byRiskLevel.get(riskLevel));
+        }
+        return corrected;
+    }
+
+    private static boolean correct(RiskScoreHistogram histogram, long[] database, long[] before, long[] after) {
+        boolean corrected = false;
+        for (int bucket = 0; bucket < database.length; bucket++) {
+            int score = bucket;
+            corrected |= correct(delta -> histogram.add(score, delta), database[bucket], before[bucket], after[bucket]);
+        }
+        return corrected;
+    }
+
+    private static boolean correct(LongConsumer counter, long database, long before, long after) {
+        if (database < before) {
+            counter.accept(database - before);
+            return true;
+        }
+        if (database > after) {
+            counter.accept(database - after);
+            return true;
+        }
+        return false;
+    }
+
+    private HistogramCounts histogramCounts() {
+        HistogramCounts counts = new HistogramCounts();
+        counts.overall = overallHistogram.counts();
+        loanTypeHistograms.forEach((loanType, histogram) -> counts.byLoanType.put(loanType, histogram.counts()));
+        riskLevelHistograms.forEach((riskLevel, histogram) -> counts.byRiskLevel.put(riskLevel, histogram.counts()));
+        return counts;
+    }
+
+    private static <K extends Enum<K>> Map<K, RiskScoreHistogram> histograms(Class<K> keyType) {
+        Map<K, RiskScoreHistogram> histograms = new EnumMap<>(keyType);
+        for (K key : keyType.getEnumConstants()) {
+            histograms.put(key, new RiskScoreHistogram());
+        }
+        return histograms;
+    }
+
+    private static <K extends Enum<K>> Map<K, RiskScoreDistribution> distributions(Map<K, RiskScoreHistogram> histograms) {
+        Map<K, RiskScoreDistribution> distributions = new LinkedHashMap<>();
+        histograms.forEach((key, histogram) -> distributions.put(key, histogram.distribution()));
+        return distributions;
+    }
+
+    private static final class HistogramCounts {
+        long[] overall = new long[RiskScoreHistogram.MAX_SCORE + 1];
+        final Map<LoanType, long[]> byLoanType = emptyCounts(LoanType.class);
+        final Map<RiskLevel, long[]> byRiskLevel = emptyCounts(RiskLevel.class);
+
+        private static <K extends Enum<K>> Map<K, long[]> emptyCounts(Class<K> keyType) {
+            Map<K, long[]> counts = new EnumMap<>(keyType);
+            for (K key : keyType.getEnumConstants()) {
+                counts.put(key, new long[RiskScoreHistogram.MAX_SCORE + 1]);
+            }
+            return counts;
+        }
+    }
+}
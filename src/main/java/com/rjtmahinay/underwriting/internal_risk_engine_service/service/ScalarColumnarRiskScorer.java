@@ -0,0 +1,75 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import static com.rjtmahinay.underwriting.internal_risk_engine_service.service.ColumnarLoanBatch.ABSENT;
+
+/**
+ * Plain-loop implementation, used when the Vector API is unavailable and for the tail of a vectorized batch.
+ */
+class ScalarColumnarRiskScorer implements ColumnarRiskScorer {
+
+    @Override
+    public void score(ColumnarLoanBatch batch, ColumnarRiskScores scores, CompiledRuleSet rules) {
+        scoreFactors(batch, scores, rules, 0, batch.size());
+        scoreRatios(batch, scores, rules, 0, batch.size());
+    }
+
+    static void scoreFactors(ColumnarLoanBatch batch, ColumnarRiskScores scores, CompiledRuleSet rules,
+                             int from, int to) {
+        int[] creditScores = batch.getCreditScores();
+        long[] incomes = batch.getAnnualIncomeCents();
+        long[] loans = batch.getLoanAmountCents();
+        int[] employmentYears = batch.getEmploymentYears();
+        long[] collaterals = batch.getCollateralValueCents();
+        int[] loanTypes = batch.getLoanTypeOrdinals();
+        FactorBands creditScoreBands = rules.creditScoreBands();
+        FactorBands incomeBands = rules.incomeToLoanBands();
+        FactorBands employmentBands = rules.employmentBands();
+        FactorBands collateralBands = rules.collateralToLoanBands();
+        int[] loanTypeFactors = rules.loanTypeFactors();
+
+        for (int i = from; i < to; i++) {
+            int creditScoreFactor = creditScores[i] == ABSENT ? creditScoreBands.missingFactor()
+                    : creditScoreBands.factorForValue(creditScores[i]);
+            int incomeFactor = incomeBands.factorForRatioBasisPoints(FixedPointRiskScorer.divideHalfUp(incomes[i] * 10_000L, loans[i]));
+            int employmentFactor = employmentYears[i] == ABSENT ? employmentBands.missingFactor()
+                    : employmentBands.factorForValue(employmentYears[i]);
+            int collateralFactor = collaterals[i] == ABSENT ? collateralBands.missingFactor()
+                    : collateralBands.factorForRatioBasisPoints(FixedPointRiskScorer.divideHalfUp(collaterals[i] * 10_000L, loans[i]));
+            int loanTypeFactor = loanTypeFactors[loanTypes[i]];
+
+            scores.getCreditScoreFactors()[i] = creditScoreFactor;
+            scores.getIncomeFactors()[i] = incomeFactor;
+            scores.getEmploymentFactors()[i] = employmentFactor;
+            scores.getCollateralFactors()[i] = collateralFactor;
+            scores.getLoanTypeFactors()[i] = loanTypeFactor;
+            scores.getRiskScores()[i] = creditScoreFactor + incomeFactor + employmentFactor
+                    + collateralFactor + loanTypeFactor;
+        }
+    }
+
+    /**
+     * Debt-to-income, loan-to-value and the approval decision that depends on them. These need
+     * true divisions, so the vectorized scorer runs this pass as well.
+     */
+    static void scoreRatios(ColumnarLoanBatch batch, ColumnarRiskScores scores, CompiledRuleSet rules,
+                            int from, int to) {
+        long[] incomes = batch.getAnnualIncomeCents();
+        long[] loans = batch.getLoanAmountCents();
+        long[] debts = batch.getMonthlyDebtCents();
+        long[] downPayments = batch.getDownPaymentCents();
+        int[] riskScores = scores.getRiskScores();
+
+        for (int i = from; i < to; i++) {
+            long dti = 0;
+            if (debts[i] != ABSENT) {
+                long monthlyIncome = FixedPointRiskScorer.divideHalfUp(incomes[i] * 100L, 12L);
+                dti = FixedPointRiskScorer.divideHalfUp(debts[i] * 1_000_000L, monthlyIncome);
+            }
+            long propertyValue = downPayments[i] == ABSENT ? loans[i] : loans[i] + downPayments[i];
+
+            scores.getDebtToIncomeBasisPoints()[i] = dti;
+            scores.getLoanToValueBasisPoints()[i] = FixedPointRiskScorer.divideHalfUp(loans[i] * 10_000L, propertyValue);
+            scores.getApprovalRecommendations()[i] = rules.approve(riskScores[i], dti);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Memoizes scoring results by {@link ScoringKey}, so repeated and retried submissions with identical inputs
+ * skip the factor arithmetic and note generation.
+ * <p>
+ * Entries are assessment templates without the application id and creation time, which are filled in
+ * for every caller. The shared cache is bounded by {@code risk-engine.scoring.memo.maximum-size}; its
+ * hit and miss counts are published as the {@code cache.*} meters tagged {@code cache=riskScores}.
+ * A {@link Batch} additionally remembers every distinct input of one batch request (up to
+ * {@code batch-max-entries}), so duplicates within the batch are scored once even if the shared cache
+ * has evicted or declined to admit them; those hits are counted by
+ * {@code risk.scoring.memo.batch.duplicates}.
+ * <p>
+ * Templates carry the version of the scoring rules they were computed with. After the rules are reloaded a
+ * template of an older version counts as a miss and is replaced, so stale results are never returned.
+ */
+@Component
+public class ScoreMemoizer {
+
+    static final String CACHE_NAME = "riskScores";
+
+    private final boolean enabled;
+    private final int batchMaxEntries;
+    private final Cache<ScoringKey, RiskAssessment> cache;
+    private final Counter batchDuplicates;
+
+    public ScoreMemoizer(RiskEngineProperties riskEngineProperties, MeterRegistry meterRegistry) {
+        RiskEngineProperties.Memo memo = riskEngineProperties.getScoring().getMemo();
+        this.enabled = memo.isEnabled();
+        this.batchMaxEntries = memo.getBatchMaxEntries();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(memo.getMaximumSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        this.batchDuplicates = Counter.builder("risk.scoring.memo.batch.duplicates")
+                .description("Applications scored from an identical application earlier in the same batch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the memoized assessment for the application's inputs under {@code rules}, computing it with
+     * {@code scorer} on a miss.
+     */
+    public RiskAssessment score(LoanApplication application, CompiledRuleSet rules,
+                                BiFunction<LoanApplication, CompiledRuleSet, RiskAssessment> scorer) {
+        if (!enabled) {
+            return scorer.apply(application, rules);
+        }
+        return score(ScoringKey.of(application), rules, application, scorer);
+    }
+
+    /**
+     * Starts the de-duplication scope of one batch request.
+     */
+    public Batch batch() {
+        return new Batch();
+    }
+
+    private RiskAssessment score(ScoringKey key, CompiledRuleSet rules, LoanApplication application,
+                                 BiFunction<LoanApplication, CompiledRuleSet, RiskAssessment> scorer) {
+        RiskAssessment[] computed = new RiskAssessment[1];
+        RiskAssessment template = cache.get(key, ignored -> {
+            computed[0] = scorer.apply(application, rules);
+            return template(computed[0]);
+        });
+        if (computed[0] != null) {
+            return computed[0];
+        }
+        if (!rules.getVersion().equals(template.getRuleSetVersion())) {
+            RiskAssessment assessment = scorer.apply(application, rules);
+            cache.put(key, template(assessment));
+            return assessment;
+        }
+        return instantiate(template, application);
+    }
+
+    private static RiskAssessment template(RiskAssessment assessment) {
+        return assessment.toBuilder()
+                .id(null)
+                .loanApplicationId(null)
+                .createdAt(null)
+                .build();
+    }
+
+    private static RiskAssessment instantiate(RiskAssessment template, LoanApplication application) {
+        return template.toBuilder()
+                .loanApplicationId(application.getId())
+                .loanType(application.getLoanType())
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * Memoization scope of a single batch request; safe to use from concurrent scoring tasks.
+     */
+    public final class Batch {
+
+        private final Map<ScoringKey, RiskAssessment> templates = new ConcurrentHashMap<>();
+
+        private Batch() {
+        }
+
+        public RiskAssessment score(LoanApplication application, CompiledRuleSet rules,
+                                    BiFunction<LoanApplication, CompiledRuleSet, RiskAssessment> scorer) {
+            if (!enabled) {
+                return scorer.apply(application, rules);
+            }
+            ScoringKey key = ScoringKey.of(application);
+            RiskAssessment template = templates.get(key);
+            if (template != null && rules.getVersion().equals(template.getRuleSetVersion())) {
+                batchDuplicates.increment();
+                return instantiate(template, application);
+            }
+
+            RiskAssessment assessment = ScoreMemoizer.this.score(key, rules, application, scorer);
+            if (template != null) {
+                templates.put(key, template(assessment));
+            } else if (templates.size() < batchMaxEntries) {
+                templates.putIfAbsent(key, template(assessment));
+            }
+            return assessment;
+        }
+    }
+}
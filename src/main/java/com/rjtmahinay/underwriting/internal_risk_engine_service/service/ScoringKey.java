@@ -0,0 +1,95 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Canonical form of the inputs {@link RiskScoringService} reads from a {@link LoanApplication}.
+ * <p>
+ * Amounts are normalized with {@link BigDecimal#stripTrailingZeros()}, since scoring only depends on their
+ * values ({@code 75000} and {@code 75000.00} score the same), and a missing collateral flag counts as
+ * {@code false}, as it does in scoring. The 64-bit hash of the normalized fields is computed once;
+ * {@link #equals(Object)} still compares every field, so a hash collision can never return another
+ * application's score.
+ */
+final class ScoringKey {
+
+    private static final int ABSENT = Integer.MIN_VALUE;
+
+    private final int creditScore;
+    private final int employmentYears;
+    private final boolean hasCollateral;
+    private final LoanType loanType;
+    private final BigDecimal annualIncome;
+    private final BigDecimal loanAmount;
+    private final BigDecimal monthlyDebtPayments;
+    private final BigDecimal downPayment;
+    private final BigDecimal collateralValue;
+    private final long hash;
+
+    private ScoringKey(LoanApplication application) {
+        this.creditScore = application.getCreditScore() != null ? application.getCreditScore() : ABSENT;
+        this.employmentYears = application.getEmploymentYears() != null ? application.getEmploymentYears() : ABSENT;
+        this.hasCollateral = Boolean.TRUE.equals(application.getHasCollateral());
+        this.loanType = application.getLoanType();
+        this.annualIncome = normalize(application.getAnnualIncome());
+        this.loanAmount = normalize(application.getLoanAmount());
+        this.monthlyDebtPayments = normalize(application.getMonthlyDebtPayments());
+        this.downPayment = normalize(application.getDownPayment());
+        this.collateralValue = normalize(application.getCollateralValue());
+
+        long h = 0x9E3779B97F4A7C15L;
+        h = mix(h, creditScore);
+        h = mix(h, employmentYears);
+        h = mix(h, hasCollateral ? 1 : 0);
+        h = mix(h, loanType != null ? loanType.ordinal() : -1);
+        h = mix(h, Objects.hashCode(annualIncome));
+        h = mix(h, Objects.hashCode(loanAmount));
+        h = mix(h, Objects.hashCode(monthlyDebtPayments));
+        h = mix(h, Objects.hashCode(downPayment));
+        h = mix(h, Objects.hashCode(collateralValue));
+        this.hash = h;
+    }
+
+    static ScoringKey of(LoanApplication application) {
+        return new ScoringKey(application);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ScoringKey key)) {
+            return false;
+        }
+        return hash == key.hash
+                && creditScore == key.creditScore
+                && employmentYears == key.employmentYears
+                && hasCollateral == key.hasCollateral
+                && loanType == key.loanType
+                && Objects.equals(annualIncome, key.annualIncome)
+                && Objects.equals(loanAmount, key.loanAmount)
+                && Objects.equals(monthlyDebtPayments, key.monthlyDebtPayments)
+                && Objects.equals(downPayment, key.downPayment)
+                && Objects.equals(collateralValue, key.collateralValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static BigDecimal normalize(BigDecimal value) {
+        return value != null ? value.stripTrailingZeros() : null;
+    }
+
+    // One round of a 64-bit multiply-xorshift mixer (as in SplitMix64)
+    private static long mix(long h, int value) {
+        h = (h ^ value) * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,136 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.ScoringRuleDefinition;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidScoringRulesException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.bind.BindException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the {@link CompiledRuleSet} that scoring uses and swaps it atomically when the rules file changes.
+ * <p>
+ * The rules are read from {@code risk-engine.scoring.rules.location} at startup, which fails if they are
+ * invalid. Afterwards a file on the file system is checked every {@code reload-interval} and
+ * {@link #reload()} can be triggered on demand. A new rule set is compiled completely before it replaces the
+ * current one; an invalid file is logged and the running rules stay in place. Callers read {@link #current()}
+ * once per assessment or batch, so requests in flight finish with the rule set they started with.
+ * <p>
+ * The version identifies the rules an assessment was scored with, so a file whose rules changed while its
+ * version did not is rejected.
+ */
+@Component
+@Slf4j
+public class ScoringRuleSetProvider {
+
+    static final String RULES_PREFIX = "scoring-rules";
+
+    private final Resource resource;
+    private final AtomicReference<CompiledRuleSet> current;
+    private volatile LocalDateTime loadedAt;
+    private volatile long lastModified;
+
+    public ScoringRuleSetProvider(RiskEngineProperties riskEngineProperties, ResourceLoader resourceLoader) {
+        this.resource = resourceLoader.getResource(riskEngineProperties.getScoring().getRules().getLocation());
+        this.lastModified = lastModified();
+        this.current = new AtomicReference<>(load());
+        this.loadedAt = LocalDateTime.now();
+        log.info("Loaded scoring rules {} from {}", current.get().getVersion(), resource.getDescription());
+    }
+
+    public CompiledRuleSet current() {
+        return current.get();
+    }
+
+    public String getLocation() {
+        return resource.getDescription();
+    }
+
+    public LocalDateTime getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Reads and compiles the rules file and, if its rules differ from the current ones, makes it current.
+     *
+     * @return the rule set in use afterwards
+     * @throws InvalidScoringRulesException if the file cannot be read or compiled, or changes the rules
+     *                                      without changing the version
+     */
+    public synchronized CompiledRuleSet reload() {
+        CompiledRuleSet loaded = load();
+        CompiledRuleSet previous = current.get();
+        if (loaded.equals(previous)) {
+            return previous;
+        }
+        if (loaded.getVersion().equals(previous.getVersion())) {
+            throw new InvalidScoringRulesException("Scoring rules changed but are still version " + loaded.getVersion()
+                    + "; change the version to apply them");
+        }
+        current.set(loaded);
+        loadedAt = LocalDateTime.now();
+        log.info("Scoring rules reloaded: version {} replaces {}", loaded.getVersion(), previous.getVersion());
+        return loaded;
+    }
+
+    @Scheduled(initialDelayString = "${risk-engine.scoring.rules.reload-interval:10s}",
+            fixedDelayString = "${risk-engine.scoring.rules.reload-interval:10s}")
+    public void reloadIfModified() {
+        long modified = lastModified();
+        if (modified == lastModified) {
+            return;
+        }
+        lastModified = modified;
+        try {
+            reload();
+        } catch (InvalidScoringRulesException e) {
+            log.error("Keeping scoring rules {}: {}", current.get().getVersion(), e.getMessage());
+        }
+    }
+
+    private CompiledRuleSet load() {
+        List<PropertySource<?>> sources;
+        try {
+            sources = new YamlPropertySourceLoader().load(resource.getDescription(), resource);
+        } catch (IOException | RuntimeException e) {
+            throw new InvalidScoringRulesException("Cannot read scoring rules from " + resource.getDescription()
+                    + ": " + NestedExceptionUtils.getMostSpecificCause(e).getMessage(), e);
+        }
+
+        ScoringRuleDefinition definition;
+        try {
+            definition = new Binder(ConfigurationPropertySources.from(sources))
+                    .bind(RULES_PREFIX, ScoringRuleDefinition.class)
+                    .orElseThrow(() -> new InvalidScoringRulesException(
+                            resource.getDescription() + " has no " + RULES_PREFIX + " document"));
+        } catch (BindException e) {
+            throw new InvalidScoringRulesException("Invalid scoring rules in " + resource.getDescription()
+                    + ": " + NestedExceptionUtils.getMostSpecificCause(e).getMessage(), e);
+        }
+        return CompiledRuleSet.compile(definition);
+    }
+
+    /**
+     * Modification time of a rules file on the file system; rules packaged in the application never change.
+     */
+    private long lastModified() {
+        try {
+            return resource.isFile() ? resource.lastModified() : 0L;
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
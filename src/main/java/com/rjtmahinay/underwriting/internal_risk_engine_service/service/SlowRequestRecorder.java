@@ -0,0 +1,130 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.SlowRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the {@code risk-engine.slow-requests.size} slowest {@code /evaluate} requests, with their stage
+ * timings, per {@code risk-engine.slow-requests.window}. Each window has a fixed array; once it is full a
+ * request is only kept if it is slower than the fastest one held, which it replaces. The check against
+ * that threshold is a volatile read, so faster requests, nearly all of them, take no lock.
+ *
+ * <p>Like the duplicate filters, windows rotate: the current one and the one before it are reported, so
+ * a request stays visible for between one and two windows and startup requests do not crowd out later
+ * ones for the life of the process.
+ */
+@Component
+public class SlowRequestRecorder {
+
+    private final int size;
+    private final long windowNanos;
+    private volatile Generation current;
+    private volatile Generation previous;
+    private volatile long currentStartedAt = System.nanoTime();
+
+    public SlowRequestRecorder(RiskEngineProperties riskEngineProperties) {
+        RiskEngineProperties.SlowRequests slowRequests = riskEngineProperties.getSlowRequests();
+        this.size = Math.max(1, slowRequests.getSize());
+        this.windowNanos = slowRequests.getWindow().toNanos();
+        this.current = new Generation(size);
+        this.previous = new Generation(size);
+    }
+
+    void record(EvaluationTrace trace) {
+        rotateIfDue();
+        current.record(trace);
+    }
+
+    /**
+     * The slowest requests of the current and previous windows, slowest first.
+     */
+    public List<SlowRequest> slowest() {
+        rotateIfDue();
+        Generation held;
+        Generation before;
+        synchronized (this) {
+            held = current;
+            before = previous;
+        }
+        return Stream.concat(held.traces(), before.traces())
+                .sorted(Comparator.comparingLong(EvaluationTrace::durationNanos).reversed())
+                .limit(size)
+                .map(EvaluationTrace::toSlowRequest)
+                .toList();
+    }
+
+    public synchronized void clear() {
+        current = new Generation(size);
+        previous = new Generation(size);
+        currentStartedAt = System.nanoTime();
+    }
+
+    private void rotateIfDue() {
+        if (System.nanoTime() - currentStartedAt < windowNanos) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            long elapsed = now - currentStartedAt;
+            if (elapsed >= windowNanos) {
+                // After a quiet spell longer than a whole window the current requests are too old to keep
+                previous = elapsed < 2 * windowNanos ? current : new Generation(size);
+                current = new Generation(size);
+                currentStartedAt = now;
+            }
+        }
+    }
+
+    private static final class Generation {
+
+        private final EvaluationTrace[] slowest;
+        private int held;
+        // Duration of the fastest request held once the array is full; until then every request is kept
+        private volatile long threshold = -1;
+
+        Generation(int size) {
+            this.slowest = new EvaluationTrace[size];
+        }
+
+        void record(EvaluationTrace trace) {
+            long duration = trace.durationNanos();
+            if (duration <= threshold) {
+                return;
+            }
+            synchronized (this) {
+                if (held < slowest.length) {
+                    slowest[held++] = trace;
+                    if (held == slowest.length) {
+                        threshold = slowest[fastest()].durationNanos();
+                    }
+                    return;
+                }
+                int fastest = fastest();
+                if (duration > slowest[fastest].durationNanos()) {
+                    slowest[fastest] = trace;
+                    threshold = slowest[fastest()].durationNanos();
+                }
+            }
+        }
+
+        synchronized Stream<EvaluationTrace> traces() {
+            return Arrays.stream(Arrays.copyOf(slowest, held));
+        }
+
+        private int fastest() {
+            int fastest = 0;
+            for (int i = 1; i < held; i++) {
+                if (slowest[i].durationNanos() < slowest[fastest].durationNanos()) {
+                    fastest = i;
+                }
+            }
+            return fastest;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The overview statistics as one shared stream for {@code GET /statistics/stream}. Every
+ * {@code risk-engine.statistics.stream-interval} the overview is taken from the in-memory statistics and
+ * serialized once, however many clients are subscribed; a client that connects gets the last overview at
+ * once and then one per tick. A client that reads slower than the ticks arrive is not buffered for: it
+ * skips to the latest overview. The ticks only run while at least one client is subscribed.
+ * <p>
+ * Published meters: {@code risk.statistics.stream.subscribers} (gauge) and
+ * {@code risk.statistics.stream.overviews}, the overviews computed.
+ */
+@Component
+public class StatisticsStream {
+
+    private static final String EVENT = "overview";
+
+    private final Flux<ServerSentEvent<String>> overviews;
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    public StatisticsStream(UnderwritingService underwritingService, ObjectMapper objectMapper,
+                            RiskEngineProperties riskEngineProperties, MeterRegistry meterRegistry) {
+        Counter computed = Counter.builder("risk.statistics.stream.overviews")
+                .description("Overviews computed for the statistics stream")
+                .register(meterRegistry);
+        Gauge.builder("risk.statistics.stream.subscribers", subscribers, AtomicInteger::get)
+                .description("Clients subscribed to the statistics stream")
+                .register(meterRegistry);
+
+        this.overviews = Flux.interval(Duration.ZERO, riskEngineProperties.getStatistics().getStreamInterval())
+                .concatMap(tick -> underwritingService.getAssessmentTotals()
+                        .flatMap(totals -> Mono.fromCallable(() -> objectMapper.writeValueAsString(totals.overview())))
+                        .map(overview -> ServerSentEvent.builder(overview)
+                                .id(Long.toString(tick))
+                                .event(EVENT)
+                                .build()))
+                .doOnNext(event -> computed.increment())
+                .replay(1)
+                .refCount();
+    }
+
+    /**
+     * The shared stream for one client, conflated to the latest overview while the client is behind.
+     */
+    public Flux<ServerSentEvent<String>> overviews() {
+        return overviews
+                .onBackpressureLatest()
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+}
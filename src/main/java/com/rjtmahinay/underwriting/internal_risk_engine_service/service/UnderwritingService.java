@@ -1,13 +1,24 @@
 package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
 
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidPageRequestException;
 import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.RiskAssessmentNotFoundException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
 import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessmentPage;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessmentTotals;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskScoreDistributionReport;
 import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RiskAssessmentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
@@ -15,20 +26,62 @@ import reactor.core.publisher.Mono;
 public class UnderwritingService {
 
     private final RiskAssessmentRepository riskAssessmentRepository;
+    private final RiskStatisticsAggregator riskStatisticsAggregator;
+    private final RiskAssessmentCache riskAssessmentCache;
+    private final TransactionalOperator transactionalOperator;
+    private final RiskEngineProperties riskEngineProperties;
+    private final WriteBehindAssessmentWriter writeBehindAssessmentWriter;
+    private final AssessmentInsertCoalescer assessmentInsertCoalescer;
+    private final DuplicateApplicationDetector duplicateApplicationDetector;
 
     public Mono<RiskAssessment> getRiskAssessmentById(Long assessmentId) {
         if (assessmentId == null) {
             return Mono.error(new IllegalArgumentException("Assessment ID cannot be null"));
         }
         
-        return riskAssessmentRepository.findById(assessmentId)
+        // Assessments waiting in the write-ahead log are not in the table yet
+        return riskAssessmentCache.get(assessmentId, id -> writeBehindAssessmentWriter.findPending(id)
+                        .switchIfEmpty(Mono.defer(() -> riskAssessmentRepository.findById(id))))
                 .doOnNext(assessment -> log.debug("Retrieved risk assessment: {}", assessment.getId()))
                 .switchIfEmpty(Mono.error(new RiskAssessmentNotFoundException("Risk assessment not found with ID: " + assessmentId)));
     }
 
+    /**
+     * Returns up to {@code limit} assessments with an id greater than the one encoded in {@code cursor}
+     * (from the start when it is {@code null}), ordered by id, and the cursor for the next page.
+     */
+    public Mono<RiskAssessmentPage> getRiskAssessmentPage(String cursor, Integer limit) {
+        RiskEngineProperties.Pagination pagination = riskEngineProperties.getPagination();
+        int pageSize = limit != null ? limit : pagination.getDefaultPageSize();
+        if (pageSize < 1 || pageSize > pagination.getMaxPageSize()) {
+            return Mono.error(new InvalidPageRequestException(
+                    "Limit must be between 1 and " + pagination.getMaxPageSize() + ", was " + pageSize));
+        }
+
+        return Mono.fromCallable(() -> cursor == null || cursor.isEmpty() ? 0L : AssessmentCursor.decode(cursor))
+                // One extra row tells whether another page follows
+                .flatMap(afterId -> riskAssessmentRepository.findPageAfter(afterId, pageSize + 1).collectList())
+                .map(rows -> {
+                    if (rows.size() <= pageSize) {
+                        return new RiskAssessmentPage(rows, null);
+                    }
+                    List<RiskAssessment> items = rows.subList(0, pageSize);
+                    return new RiskAssessmentPage(items, AssessmentCursor.encode(items.get(pageSize - 1).getId()));
+                });
+    }
+
+    /**
+     * Streams every assessment in id order. Rows are read with successive keyset queries of
+     * {@code stream-chunk-size} rows, each issued only when the previous chunk has been consumed, so
+     * neither the table nor a long-running cursor is held open.
+     */
     public Flux<RiskAssessment> getAllRiskAssessments() {
-        return riskAssessmentRepository.findAll()
-                .doOnNext(assessment -> log.debug("Retrieved risk assessment: {}", assessment.getId()));
+        int chunkSize = riskEngineProperties.getPagination().getStreamChunkSize();
+        return riskAssessmentRepository.findPageAfter(0L, chunkSize).collectList()
+                .expand(chunk -> chunk.size() < chunkSize
+                        ? Mono.empty()
+                        : riskAssessmentRepository.findPageAfter(chunk.get(chunk.size() - 1).getId(), chunkSize).collectList())
+                .flatMapIterable(chunk -> chunk);
     }
 
     public Mono<RiskAssessment> saveRiskAssessment(RiskAssessment riskAssessment) {
@@ -36,26 +89,136 @@ public class UnderwritingService {
             return Mono.error(new IllegalArgumentException("Risk assessment cannot be null"));
         }
         
-        log.info("Saving risk assessment with score: {}", riskAssessment.getRiskScore());
+        log.debug("Saving risk assessment with score: {}", riskAssessment.getRiskScore());
         return riskAssessmentRepository.save(riskAssessment)
-                .doOnNext(saved -> log.info("Saved risk assessment with ID: {}", saved.getId()))
+                .doOnNext(saved -> {
+                    riskStatisticsAggregator.record(saved);
+                    riskAssessmentCache.put(saved);
+                    log.debug("Saved risk assessment with ID: {}", saved.getId());
+                })
                 .doOnError(error -> log.error("Failed to save risk assessment: {}", error.getMessage()));
     }
 
-    // Statistics and reporting methods
+    /**
+     * Stores a newly evaluated assessment. With {@code risk-engine.write-behind.enabled} it is appended to
+     * the write-ahead log and returned with its id before it reaches the table, unless too many
+     * assessments are already waiting. Otherwise it is inserted together with those of concurrent requests
+     * when {@code risk-engine.coalescing.enabled}, or saved with {@link #saveRiskAssessment}.
+     */
+    public Mono<RiskAssessment> storeRiskAssessment(RiskAssessment riskAssessment) {
+        if (riskAssessment == null) {
+            return saveRiskAssessment(null);
+        }
+        if (!writeBehindAssessmentWriter.isAccepting()) {
+            return assessmentInsertCoalescer.isEnabled()
+                    ? assessmentInsertCoalescer.save(riskAssessment)
+                    : saveRiskAssessment(riskAssessment);
+        }
+
+        return writeBehindAssessmentWriter.append(riskAssessment)
+                .doOnNext(logged -> log.debug("Logged risk assessment with ID: {}", logged.getId()))
+                .doOnError(error -> log.error("Failed to log risk assessment: {}", error.getMessage()));
+    }
+
+    /**
+     * Stores an evaluated application's assessment. An application without an id is new: unless the
+     * {@link DuplicateApplicationDetector} rejects it, it is stored together with its assessment. With
+     * {@code risk-engine.write-behind.enabled} both are logged in one write-ahead log record and returned
+     * before they reach the tables, unless too many assessments are already waiting; the application's
+     * duplicate claim is then held until they are stored. Otherwise they are inserted together, coalesced
+     * with concurrent requests when {@code risk-engine.coalescing.enabled}, or by {@link #saveEvaluations}.
+     * The assessment of an application that is already stored is stored with {@link #storeRiskAssessment}.
+     */
+    public Mono<RiskAssessment> storeEvaluation(LoanApplication application, RiskAssessment riskAssessment) {
+        if (application == null || riskAssessment == null) {
+            return Mono.error(new IllegalArgumentException("Loan application and risk assessment cannot be null"));
+        }
+        if (application.getId() != null) {
+            return storeRiskAssessment(riskAssessment);
+        }
+
+        return Mono.defer(() -> {
+            DuplicateApplicationDetector.Claims claims = duplicateApplicationDetector.claims();
+            if (writeBehindAssessmentWriter.isAccepting()) {
+                // The duplicate query only sees stored rows, so the claim is released by the flusher
+                return claims.check(application)
+                        .then(Mono.defer(() -> writeBehindAssessmentWriter.append(application, riskAssessment,
+                                () -> claims.release(application))))
+                        .doFinally(signal -> {
+                            if (signal != SignalType.ON_COMPLETE) {
+                                claims.release();
+                            }
+                        });
+            }
+            return claims.check(application)
+                    .then(Mono.defer(() -> assessmentInsertCoalescer.isEnabled()
+                            ? assessmentInsertCoalescer.save(application, riskAssessment)
+                            : saveEvaluations(List.of(application), List.of(riskAssessment)).single()))
+                    // Committed by now, so later checks find the row
+                    .doFinally(signal -> claims.release());
+        }).doOnNext(saved -> log.debug("Saved loan application {} with risk assessment {}",
+                saved.getLoanApplicationId(), saved.getId()));
+    }
+
+    /**
+     * Persists a chunk of evaluated applications, {@code riskAssessments.get(i)} being the assessment of
+     * {@code applications.get(i)}, in one transaction on one connection. Applications without an id are
+     * inserted together with their assessments by one batched statement, and their generated ids become the
+     * assessments' loan application ids; the assessments of stored applications are inserted by one batched
+     * insert. The chunk is stored atomically: if any row is rejected, none are kept. Statistics are updated
+     * once the transaction has committed. The applications are left unchanged.
+     */
+    public Flux<RiskAssessment> saveEvaluations(List<LoanApplication> applications, List<RiskAssessment> riskAssessments) {
+        List<LoanApplication> newApplications = new ArrayList<>();
+        List<RiskAssessment> ofNewApplications = new ArrayList<>();
+        List<RiskAssessment> ofStoredApplications = new ArrayList<>();
+        for (int i = 0; i < applications.size(); i++) {
+            if (applications.get(i).getId() == null) {
+                newApplications.add(applications.get(i));
+                ofNewApplications.add(riskAssessments.get(i));
+            } else {
+                ofStoredApplications.add(riskAssessments.get(i));
+            }
+        }
+
+        log.debug("Saving chunk of {} risk assessments, {} with new loan applications",
+                riskAssessments.size(), newApplications.size());
+        // Both inserts set the ids on the assessments in place, so the chunk keeps its order
+        return Flux.concat(riskAssessmentRepository.insertAllWithApplications(newApplications, ofNewApplications),
+                        riskAssessmentRepository.insertAll(ofStoredApplications))
+                .as(transactionalOperator::transactional)
+                .then(Mono.fromSupplier(() -> riskAssessments))
+                .doOnNext(saved -> saved.forEach(assessment -> {
+                    riskStatisticsAggregator.record(assessment);
+                    riskAssessmentCache.put(assessment);
+                }))
+                .flatMapIterable(saved -> saved)
+                .doOnError(error -> log.error("Failed to save chunk of {} risk assessments: {}",
+                        riskAssessments.size(), error.getMessage()));
+    }
+
+    // Statistics and reporting methods, served from the in-memory aggregator
+    public Mono<RiskAssessmentTotals> getAssessmentTotals() {
+        return Mono.fromSupplier(riskStatisticsAggregator::snapshot);
+    }
+
     public Mono<Long> getApprovedAssessmentsCount() {
-        return riskAssessmentRepository.countApprovedAssessments();
+        return getAssessmentTotals().map(RiskAssessmentTotals::getApprovedAssessments);
     }
 
     public Mono<Long> getRejectedAssessmentsCount() {
-        return riskAssessmentRepository.countRejectedAssessments();
+        return getAssessmentTotals().map(RiskAssessmentTotals::getRejectedAssessments);
     }
 
     public Mono<Double> getAverageRiskScore() {
-        return riskAssessmentRepository.getAverageRiskScore();
+        return getAssessmentTotals().map(RiskAssessmentTotals::averageRiskScore);
     }
 
     public Mono<Long> getTotalAssessmentsCount() {
-        return riskAssessmentRepository.count();
+        return getAssessmentTotals().map(RiskAssessmentTotals::getTotalAssessments);
+    }
+
+    public Mono<RiskScoreDistributionReport> getRiskScoreDistribution() {
+        return Mono.fromSupplier(riskStatisticsAggregator::distribution);
     }
 }
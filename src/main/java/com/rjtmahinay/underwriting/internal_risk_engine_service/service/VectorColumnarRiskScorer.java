@@ -0,0 +1,154 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.GE;
+import static jdk.incubator.vector.VectorOperators.L2I;
+import static jdk.incubator.vector.VectorOperators.LT;
+
+/**
+ * {@code jdk.incubator.vector} implementation of the factor pass.
+ * <p>
+ * Band thresholds and factors come from the {@link CompiledRuleSet}; lanes are blended band by band in
+ * ascending order, so the highest band a value reaches wins. Ratio bands are evaluated without dividing: for positive {@code x} and {@code y},
+ * {@code round_half_up(x * 10^4 / y) >= t} holds exactly when {@code 2 * 10^4 * x >= (2t - 1) * y},
+ * so each band is one multiply and one compare per lane. Amount columns are processed with the preferred
+ * {@link LongVector} species and the {@code int} columns with an {@link IntVector} species of the same
+ * lane count. Each factor group runs in its own small loop: the Vector API only avoids boxing when C2
+ * inlines everything, and one large loop body exceeds its inlining budget. The remainder of the batch
+ * and the ratio pass, which needs real divisions, run on {@link ScalarColumnarRiskScorer}.
+ * <p>
+ * Only load this class when the {@code jdk.incubator.vector} module is present, and only instantiate it when
+ * {@link #isSupported()}: with a 64-bit preferred species there is no {@code int} species of the same lane count.
+ */
+final class VectorColumnarRiskScorer implements ColumnarRiskScorer {
+
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    // Null when the preferred species has a single lane
+    private static final VectorSpecies<Integer> INTS = LONGS.length() > 1
+            ? VectorSpecies.of(int.class, VectorShape.forBitSize(LONGS.vectorBitSize() / 2))
+            : null;
+
+    VectorColumnarRiskScorer() {
+        if (!isSupported()) {
+            throw new IllegalStateException("The preferred vector species " + LONGS + " has a single lane");
+        }
+    }
+
+    static boolean isSupported() {
+        return INTS != null;
+    }
+
+    @Override
+    public void score(ColumnarLoanBatch batch, ColumnarRiskScores scores, CompiledRuleSet rules) {
+        int size = batch.size();
+        int upperBound = LONGS.loopBound(size);
+
+        bandFactors(batch.getCreditScores(), rules.creditScoreBands(), scores.getCreditScoreFactors(), upperBound);
+        bandFactors(batch.getEmploymentYears(), rules.employmentBands(), scores.getEmploymentFactors(), upperBound);
+        loanTypeFactors(batch.getLoanTypeOrdinals(), rules.loanTypeFactors(), scores.getLoanTypeFactors(), upperBound);
+        incomeFactors(batch.getAnnualIncomeCents(), batch.getLoanAmountCents(), rules.incomeToLoanBands(),
+                scores.getIncomeFactors(), upperBound);
+        collateralFactors(batch.getCollateralValueCents(), batch.getLoanAmountCents(), rules.collateralToLoanBands(),
+                scores.getCollateralFactors(), upperBound);
+        riskScores(scores, upperBound);
+
+        ScalarColumnarRiskScorer.scoreFactors(batch, scores, rules, upperBound, size);
+        ScalarColumnarRiskScorer.scoreRatios(batch, scores, rules, 0, size);
+    }
+
+    /**
+     * Factors of an {@code int} column whose missing values are {@link ColumnarLoanBatch#ABSENT}.
+     */
+    private static void bandFactors(int[] values, FactorBands bands, int[] factors, int upperBound) {
+        long[] thresholds = bands.thresholds();
+        int[] bandFactors = bands.factors();
+        int missingFactor = bands.missingFactor();
+        for (int i = 0; i < upperBound; i += INTS.length()) {
+            IntVector value = IntVector.fromArray(INTS, values, i);
+            IntVector factor = IntVector.broadcast(INTS, bandFactors[0]);
+            for (int band = 0; band < thresholds.length; band++) {
+                factor = factor.blend(bandFactors[band + 1], value.compare(GE, (int) thresholds[band]));
+            }
+            factor.blend(missingFactor, value.compare(LT, 0))
+                    .intoArray(factors, i);
+        }
+    }
+
+    private static void loanTypeFactors(int[] loanTypes, int[] loanTypeFactors, int[] factors, int upperBound) {
+        for (int i = 0; i < upperBound; i += INTS.length()) {
+            IntVector.fromArray(INTS, loanTypeFactors, 0, loanTypes, i)
+                    .intoArray(factors, i);
+        }
+    }
+
+    private static void incomeFactors(long[] incomes, long[] loans, FactorBands bands, int[] factors, int upperBound) {
+        for (int i = 0; i < upperBound; i += LONGS.length()) {
+            LongVector loan = LongVector.fromArray(LONGS, loans, i);
+            LongVector income = LongVector.fromArray(LONGS, incomes, i).mul(20_000L);
+            toInts(ratioFactors(income, loan, bands))
+                    .intoArray(factors, i);
+        }
+    }
+
+    private static void collateralFactors(long[] collaterals, long[] loans, FactorBands bands, int[] factors,
+                                          int upperBound) {
+        for (int i = 0; i < upperBound; i += LONGS.length()) {
+            LongVector loan = LongVector.fromArray(LONGS, loans, i);
+            LongVector collateralValue = LongVector.fromArray(LONGS, collaterals, i);
+            LongVector collateral = collateralValue.mul(20_000L);
+            toInts(ratioFactors(collateral, loan, bands)
+                    .blend((long) bands.missingFactor(), collateralValue.compare(LT, 0L)))
+                    .intoArray(factors, i);
+        }
+    }
+
+    private static void riskScores(ColumnarRiskScores scores, int upperBound) {
+        int[] creditScoreFactors = scores.getCreditScoreFactors();
+        int[] incomeFactors = scores.getIncomeFactors();
+        int[] employmentFactors = scores.getEmploymentFactors();
+        int[] collateralFactors = scores.getCollateralFactors();
+        int[] loanTypeFactors = scores.getLoanTypeFactors();
+        int[] riskScores = scores.getRiskScores();
+        for (int i = 0; i < upperBound; i += INTS.length()) {
+            IntVector.fromArray(INTS, creditScoreFactors, i)
+                    .add(IntVector.fromArray(INTS, incomeFactors, i))
+                    .add(IntVector.fromArray(INTS, employmentFactors, i))
+                    .add(IntVector.fromArray(INTS, collateralFactors, i))
+                    .add(IntVector.fromArray(INTS, loanTypeFactors, i))
+                    .intoArray(riskScores, i);
+        }
+    }
+
+    /**
+     * Band factors of the ratio {@code x / y}, given {@code doubledScaledX = 2 * 10^4 * x}.
+     */
+    private static LongVector ratioFactors(LongVector doubledScaledX, LongVector y, FactorBands bands) {
+        long[] thresholds = bands.thresholds();
+        int[] bandFactors = bands.factors();
+        LongVector factor = LongVector.broadcast(LONGS, bandFactors[0]);
+        for (int band = 0; band < thresholds.length; band++) {
+            factor = factor.blend((long) bandFactors[band + 1], atLeast(doubledScaledX, y, thresholds[band]));
+        }
+        return factor;
+    }
+
+    /**
+     * Lanes where {@code round_half_up(x * 10^4 / y) >= basisPoints}, given {@code doubledScaledX = 2 * 10^4 * x}.
+     */
+    private static VectorMask<Long> atLeast(LongVector doubledScaledX, LongVector y, long basisPoints) {
+        return doubledScaledX.compare(GE, y.mul(2 * basisPoints - 1));
+    }
+
+    /**
+     * Narrows factor lanes to {@code int}. Blending in {@code long} lanes and converting the result is
+     * intrinsified on JDK 17, whereas casting the comparison masks to the {@code int} species is not.
+     */
+    private static IntVector toInts(LongVector factors) {
+        return (IntVector) factors.convertShape(L2I, INTS, 0);
+    }
+}
@@ -0,0 +1,353 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties.WriteAheadLogSync;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidLoanApplicationException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.InvalidRiskScoreException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.exception.LoanApplicationNotFoundException;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.LoanApplicationRepository;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.repository.RiskAssessmentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind persistence of evaluated assessments, enabled by {@code risk-engine.write-behind.enabled}.
+ * <p>
+ * {@link #append} gives an assessment an id from the {@link AssessmentIdAllocator}, appends it to the
+ * {@link AssessmentWriteAheadLog} and returns without waiting for the database. The assessment of a new loan
+ * application is logged in the same record as the application, which gets its id from the allocator too.
+ * Every {@code flush-interval} the pending entries are written in batches of up to {@code flush-batch-size}
+ * rows, in log order, their new applications to {@code loan_applications} first and then the assessments to
+ * {@code risk_assessments} in the same transaction, and the log is told how far they are stored. Assessments
+ * are recorded by the {@link RiskStatisticsAggregator} once stored, like synchronously saved ones, and can be
+ * looked up by id while pending; the assessments of a pending application may be logged before it is stored.
+ * <p>
+ * An assessment is only acknowledged if the database will accept it: it and a new application must pass the
+ * constraints of their tables ({@link EvaluationConstraints}), and any other application must be stored or
+ * pending. A batch the
+ * database still rejects, for instance because the application was deleted in the meantime, is retried row
+ * by row and the rejected rows are moved to {@code rejected_assessments}, listed by
+ * {@code /actuator/rejectedassessments}, instead of being dropped. Any other failure, including one to
+ * record a rejected row, leaves the batch pending for the next flush.
+ * <p>
+ * When the application starts, assessments and applications logged but not stored before it stopped are
+ * queued again and the id sequences are moved past their ids. The flusher writes with {@code MERGE}, so an assessment stored
+ * just before a crash, whose progress had not reached the log yet, is written again without harm.
+ */
+@Component
+@DependsOnDatabaseInitialization
+@RequiredArgsConstructor
+@Slf4j
+public class WriteBehindAssessmentWriter {
+
+    private static final Duration SHUTDOWN_FLUSH_TIMEOUT = Duration.ofSeconds(30);
+    private static final int MAX_REASON_LENGTH = 1000;
+    private static final String SQL_STATEMENT = "; SQL statement:";
+
+    private final RiskAssessmentRepository riskAssessmentRepository;
+    private final LoanApplicationRepository loanApplicationRepository;
+    private final AssessmentIdAllocator assessmentIdAllocator;
+    private final RiskStatisticsAggregator riskStatisticsAggregator;
+    private final RiskAssessmentCache riskAssessmentCache;
+    private final TransactionalOperator transactionalOperator;
+    private final RiskEngineProperties riskEngineProperties;
+
+    // In log order; only the flusher removes entries
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+    private final Map<Long, RiskAssessment> pendingById = new ConcurrentHashMap<>();
+    // Ids of the new applications not yet stored
+    private final Set<Long> pendingApplicationIds = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private AssessmentWriteAheadLog writeAheadLog;
+
+    @PostConstruct
+    public void open() throws IOException {
+        RiskEngineProperties.WriteBehind writeBehind = riskEngineProperties.getWriteBehind();
+        if (!writeBehind.isEnabled()) {
+            return;
+        }
+        Path directory = Path.of(writeBehind.getDirectory()).toAbsolutePath();
+        long[] lastId = {0};
+        long[] lastApplicationId = {0};
+        writeAheadLog = AssessmentWriteAheadLog.open(directory, writeBehind.getSegmentSize().toBytes(),
+                writeBehind.getSync(), (application, assessment, position) -> {
+                    enqueue(application, assessment, position, null);
+                    lastId[0] = Math.max(lastId[0], assessment.getId());
+                    if (application != null) {
+                        lastApplicationId[0] = Math.max(lastApplicationId[0], application.getId());
+                    }
+                });
+        if (pendingCount.get() > 0) {
+            riskAssessmentRepository.reserveIdsThrough(lastId[0])
+                    .then(riskAssessmentRepository.reserveApplicationIdsThrough(lastApplicationId[0]))
+                    .block();
+            log.info("Replayed {} assessments from the write-ahead log in {}", pendingCount.get(), directory);
+        }
+    }
+
+    /**
+     * Whether {@link #append} may be used: write-behind is enabled and the pending assessments are within
+     * {@code max-pending-assessments}.
+     */
+    public boolean isAccepting() {
+        return writeAheadLog != null
+                && pendingCount.get() < riskEngineProperties.getWriteBehind().getMaxPendingAssessments();
+    }
+
+    /**
+     * Assigns the assessment an id and logs it for insertion; completes once the log is as durable as
+     * {@code risk-engine.write-behind.sync} asks. Fails without logging it if the database would reject it:
+     * with {@link InvalidRiskScoreException} or {@link InvalidLoanApplicationException} for a column out of
+     * range, with {@link LoanApplicationNotFoundException} if its application does not exist.
+     */
+    public Mono<RiskAssessment> append(RiskAssessment assessment) {
+        return Mono.<Void>fromRunnable(() -> EvaluationConstraints.check(assessment))
+                .then(Mono.defer(() -> pendingApplicationIds.contains(assessment.getLoanApplicationId())
+                        ? Mono.just(true)
+                        : loanApplicationRepository.existsById(assessment.getLoanApplicationId())))
+                .flatMap(exists -> exists
+                        ? assessmentIdAllocator.nextId()
+                        : Mono.error(new LoanApplicationNotFoundException(assessment.getLoanApplicationId())))
+                .flatMap(id -> {
+                    assessment.setId(id);
+                    return logEntry(null, assessment, null);
+                });
+    }
+
+    /**
+     * Assigns a new application and its assessment their ids and logs them in one record for insertion;
+     * completes like {@link #append(RiskAssessment)}. Fails without logging them with
+     * {@link InvalidRiskScoreException} or {@link InvalidLoanApplicationException} if the database would
+     * reject either. {@code onStored} runs once both are stored, or the assessment was rejected. The
+     * application is left unchanged.
+     */
+    public Mono<RiskAssessment> append(LoanApplication application, RiskAssessment assessment, Runnable onStored) {
+        return Mono.<Void>fromRunnable(() -> {
+                    EvaluationConstraints.check(application);
+                    EvaluationConstraints.check(assessment);
+                })
+                .then(Mono.defer(assessmentIdAllocator::nextApplicationId))
+                .zipWith(Mono.defer(assessmentIdAllocator::nextId))
+                .flatMap(ids -> {
+                    LoanApplication logged = application.toBuilder()
+                            .id(ids.getT1())
+                            .createdAt(application.getCreatedAt() != null ? application.getCreatedAt() : LocalDateTime.now())
+                            .build();
+                    assessment.setId(ids.getT2());
+                    assessment.setLoanApplicationId(ids.getT1());
+                    return logEntry(logged, assessment, onStored);
+                });
+    }
+
+    private Mono<RiskAssessment> logEntry(LoanApplication application, RiskAssessment assessment, Runnable onStored) {
+        Mono<Pending> logged = Mono.fromSupplier(() -> {
+            Pending entry;
+            // Queued in log order, so the flusher never marks a position stored past a pending entry
+            synchronized (pending) {
+                entry = enqueue(application, assessment, writeAheadLog.append(application, assessment), onStored);
+            }
+            riskAssessmentCache.put(assessment);
+            return entry;
+        });
+        if (riskEngineProperties.getWriteBehind().getSync() == WriteAheadLogSync.EVERY_WRITE) {
+            logged = logged.publishOn(Schedulers.boundedElastic())
+                    .doOnNext(entry -> writeAheadLog.sync(entry.position));
+        }
+        return logged.map(entry -> entry.assessment);
+    }
+
+    /**
+     * Returns the assessment with the given id if it is waiting to be stored.
+     */
+    public Mono<RiskAssessment> findPending(Long id) {
+        return Mono.justOrEmpty(pendingById.get(id));
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    @Scheduled(fixedDelayString = "${risk-engine.write-behind.sync-interval:100ms}")
+    public void sync() {
+        if (writeAheadLog != null && riskEngineProperties.getWriteBehind().getSync() == WriteAheadLogSync.INTERVAL) {
+            writeAheadLog.sync();
+        }
+    }
+
+    /**
+     * Stores every assessment pending when called, batch by batch.
+     *
+     * @return the number of assessments stored
+     */
+    @Scheduled(fixedDelayString = "${risk-engine.write-behind.flush-interval:200ms}")
+    public Mono<Long> flush() {
+        return Mono.defer(() -> {
+            if (writeAheadLog == null || pending.isEmpty() || !flushing.compareAndSet(false, true)) {
+                return Mono.just(0L);
+            }
+            return Flux.defer(this::flushBatch)
+                    .repeat(() -> !pending.isEmpty())
+                    .reduce(0L, Long::sum)
+                    .onErrorResume(error -> {
+                        log.warn("Failed to store logged assessments, retrying on the next flush: {}", error.getMessage());
+                        return Mono.just(0L);
+                    })
+                    .doFinally(signal -> flushing.set(false));
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        if (writeAheadLog == null) {
+            return;
+        }
+        // A scheduled flush may still be running; keep flushing until it and the rest are done
+        long deadline = System.nanoTime() + SHUTDOWN_FLUSH_TIMEOUT.toNanos();
+        while (!pending.isEmpty() && System.nanoTime() < deadline) {
+            try {
+                Long stored = flush().block(SHUTDOWN_FLUSH_TIMEOUT);
+                if (stored == null || stored == 0) {
+                    Thread.sleep(flushRetryDelay());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.warn("Stopping with {} assessments in the write-ahead log; they are stored on the next start",
+                    pendingCount.get());
+        }
+        writeAheadLog.close();
+    }
+
+    private long flushRetryDelay() {
+        return Math.min(riskEngineProperties.getWriteBehind().getFlushInterval().toMillis(), 100);
+    }
+
+    private Mono<Long> flushBatch() {
+        int batchSize = riskEngineProperties.getWriteBehind().getFlushBatchSize();
+        List<Pending> batch = new ArrayList<>(Math.min(batchSize, pendingCount.get()));
+        Iterator<Pending> entries = pending.iterator();
+        while (batch.size() < batchSize && entries.hasNext()) {
+            batch.add(entries.next());
+        }
+        Set<Long> rejected = ConcurrentHashMap.newKeySet();
+        return store(batch)
+                .as(transactionalOperator::transactional)
+                .onErrorResume(DataIntegrityViolationException.class, error -> {
+                    log.warn("Batch of {} logged assessments rejected, storing them one by one: {}",
+                            batch.size(), error.getMessage());
+                    // Not in a transaction, so a new application is kept even if its assessment is rejected
+                    return Flux.fromIterable(batch)
+                            .concatMap(entry -> store(List.of(entry))
+                                    .onErrorResume(DataIntegrityViolationException.class, rowError -> {
+                                        RiskAssessment assessment = entry.assessment;
+                                        log.error("Moving logged assessment {} to rejected_assessments: {}",
+                                                assessment.getId(), rowError.getMessage());
+                                        return riskAssessmentRepository.reject(assessment, reason(rowError))
+                                                .then(Mono.fromRunnable(() -> rejected.add(assessment.getId())));
+                                    }))
+                            .reduce(0L, Long::sum);
+                })
+                .map(written -> complete(batch, rejected));
+    }
+
+    // New applications first, so that the assessments of the batch find them
+    private Mono<Long> store(List<Pending> entries) {
+        List<LoanApplication> applications = entries.stream()
+                .filter(entry -> entry.application != null)
+                .map(entry -> entry.application)
+                .toList();
+        return riskAssessmentRepository.upsertApplications(applications)
+                .then(riskAssessmentRepository.upsertAll(entries.stream().map(entry -> entry.assessment).toList()));
+    }
+
+    private long complete(List<Pending> batch, Set<Long> rejected) {
+        for (Pending stored : batch) {
+            pending.poll();
+            pendingById.remove(stored.assessment.getId());
+            if (stored.application != null) {
+                pendingApplicationIds.remove(stored.application.getId());
+            }
+            if (rejected.contains(stored.assessment.getId())) {
+                riskAssessmentCache.invalidate(stored.assessment.getId());
+            } else {
+                riskStatisticsAggregator.record(stored.assessment);
+            }
+            if (stored.onStored != null) {
+                stored.onStored.run();
+            }
+        }
+        pendingCount.addAndGet(-batch.size());
+        writeAheadLog.markStored(batch.get(batch.size() - 1).position);
+        log.debug("Stored {} logged assessments", batch.size() - rejected.size());
+        return batch.size() - rejected.size();
+    }
+
+    // The root cause without the SQL statement the driver appends to it
+    private static String reason(Throwable error) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(error);
+        String message = cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+        int statement = message.indexOf(SQL_STATEMENT);
+        String reason = statement < 0 ? message : message.substring(0, statement);
+        return reason.length() <= MAX_REASON_LENGTH ? reason : reason.substring(0, MAX_REASON_LENGTH);
+    }
+
+    private Pending enqueue(LoanApplication application, RiskAssessment assessment, long position, Runnable onStored) {
+        Pending entry = new Pending(application, assessment, position, onStored);
+        pendingById.put(assessment.getId(), assessment);
+        if (application != null) {
+            pendingApplicationIds.add(application.getId());
+        }
+        pending.add(entry);
+        pendingCount.incrementAndGet();
+        return entry;
+    }
+
+    private static final class Pending {
+        // Null unless the application was new when the assessment was logged
+        final LoanApplication application;
+        final RiskAssessment assessment;
+        final long position;
+        // Null for entries replayed from the log
+        final Runnable onStored;
+
+        Pending(LoanApplication application, RiskAssessment assessment, long position, Runnable onStored) {
+            this.application = application;
+            this.assessment = assessment;
+            this.position = position;
+            this.onStored = onStored;
+        }
+    }
+}
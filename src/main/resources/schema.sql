@@ -1,8 +1,11 @@
 -- Database schema for Internal Risk Engine Service
 
+-- Ids of loan applications; write-behind persistence reserves blocks of them ahead of the insert
+CREATE SEQUENCE IF NOT EXISTS loan_application_ids;
+
 -- Create loan_applications table
 CREATE TABLE IF NOT EXISTS loan_applications (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT DEFAULT NEXT VALUE FOR loan_application_ids PRIMARY KEY,
     applicant_name VARCHAR(100) NOT NULL,
     email VARCHAR(255) NOT NULL,
     age INTEGER NOT NULL CHECK (age >= 18 AND age <= 100),
@@ -20,9 +23,12 @@ CREATE TABLE IF NOT EXISTS loan_applications (
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
 
+-- Ids of risk assessments; write-behind persistence reserves blocks of them ahead of the insert
+CREATE SEQUENCE IF NOT EXISTS risk_assessment_ids;
+
 -- Create risk_assessments table
 CREATE TABLE IF NOT EXISTS risk_assessments (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT DEFAULT NEXT VALUE FOR risk_assessment_ids PRIMARY KEY,
     loan_application_id BIGINT NOT NULL,
     risk_score INTEGER NOT NULL CHECK (risk_score >= 1 AND risk_score <= 1000),
     risk_level VARCHAR(20) NOT NULL,
@@ -35,17 +41,99 @@ CREATE TABLE IF NOT EXISTS risk_assessments (
     employment_factor INTEGER DEFAULT 0,
     collateral_factor INTEGER DEFAULT 0,
     loan_type_factor INTEGER DEFAULT 0,
+    -- Reason codes and their parameters; notes are rendered from them on request
+    reason_codes BIGINT,
+    -- Text notes of assessments stored before reason codes existed
     assessment_notes TEXT,
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    rule_set_version VARCHAR(64),
     FOREIGN KEY (loan_application_id) REFERENCES loan_applications(id) ON DELETE CASCADE
 );
 
+-- Databases created before assessments recorded the version of the scoring rules
+ALTER TABLE risk_assessments ADD COLUMN IF NOT EXISTS rule_set_version VARCHAR(64);
+
+-- Databases created before notes were stored as reason codes; AssessmentNotesMigration converts their notes
+ALTER TABLE risk_assessments ADD COLUMN IF NOT EXISTS reason_codes BIGINT;
+
+-- Databases created before assessment ids came from risk_assessment_ids; the sequence continues after
+-- the largest stored id and never moves back
+ALTER TABLE risk_assessments ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE risk_assessments ALTER COLUMN id SET DEFAULT NEXT VALUE FOR risk_assessment_ids;
+ALTER SEQUENCE risk_assessment_ids RESTART WITH (
+    SELECT GREATEST(COALESCE(MAX(id), 0) + 1,
+        (SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'RISK_ASSESSMENT_IDS'))
+    FROM risk_assessments);
+
+-- Databases created before application ids came from loan_application_ids; as for risk_assessment_ids
+ALTER TABLE loan_applications ALTER COLUMN id DROP IDENTITY;
+ALTER TABLE loan_applications ALTER COLUMN id SET DEFAULT NEXT VALUE FOR loan_application_ids;
+ALTER SEQUENCE loan_application_ids RESTART WITH (
+    SELECT GREATEST(COALESCE(MAX(id), 0) + 1,
+        (SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'LOAN_APPLICATION_IDS'))
+    FROM loan_applications);
+
+-- Email in lower case, maintained by the database, so that the duplicate check compares emails ignoring case
+-- through an index
+ALTER TABLE loan_applications ADD COLUMN IF NOT EXISTS email_lower VARCHAR(255) GENERATED ALWAYS AS (LOWER(email));
+
+-- Re-scoring jobs; a job resumes after the last application whose new assessment it stored
+CREATE TABLE IF NOT EXISTS rescoring_jobs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    rule_set_version VARCHAR(64) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    last_application_id BIGINT NOT NULL DEFAULT 0,
+    total_applications BIGINT NOT NULL DEFAULT 0,
+    rescored_applications BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Jobs created before a job skipped the applications it failed to re-score
+ALTER TABLE rescoring_jobs ADD COLUMN IF NOT EXISTS failed_applications BIGINT NOT NULL DEFAULT 0;
+
+-- Applications a re-scoring job skipped, because scoring failed or the database would reject the assessment
+CREATE TABLE IF NOT EXISTS rescoring_failures (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    job_id BIGINT NOT NULL,
+    loan_application_id BIGINT NOT NULL,
+    reason VARCHAR(1000) NOT NULL,
+    failed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (job_id) REFERENCES rescoring_jobs(id) ON DELETE CASCADE
+);
+
+-- Assessments acknowledged by write-behind persistence that risk_assessments rejected when they were flushed.
+-- They are kept here with every column of the assessment, without its constraints, instead of being dropped
+CREATE TABLE IF NOT EXISTS rejected_assessments (
+    id BIGINT PRIMARY KEY,
+    loan_application_id BIGINT,
+    risk_score INTEGER,
+    risk_level VARCHAR(20),
+    approval_recommendation BOOLEAN,
+    recommended_interest_rate DECFLOAT,
+    debt_to_income_ratio DECFLOAT,
+    loan_to_value_ratio DECFLOAT,
+    credit_score_factor INTEGER,
+    income_factor INTEGER,
+    employment_factor INTEGER,
+    collateral_factor INTEGER,
+    loan_type_factor INTEGER,
+    assessment_notes TEXT,
+    created_at TIMESTAMP,
+    rule_set_version VARCHAR(64),
+    reason_codes BIGINT,
+    reason VARCHAR(1000) NOT NULL,
+    rejected_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
 -- Create indexes for better performance
 CREATE INDEX IF NOT EXISTS idx_loan_applications_email ON loan_applications(email);
 CREATE INDEX IF NOT EXISTS idx_loan_applications_loan_type ON loan_applications(loan_type);
 CREATE INDEX IF NOT EXISTS idx_loan_applications_created_at ON loan_applications(created_at);
+CREATE INDEX IF NOT EXISTS idx_loan_applications_duplicate_key ON loan_applications(email_lower, loan_type, loan_amount, created_at);
 
 CREATE INDEX IF NOT EXISTS idx_risk_assessments_loan_application_id ON risk_assessments(loan_application_id);
 CREATE INDEX IF NOT EXISTS idx_risk_assessments_risk_level ON risk_assessments(risk_level);
 CREATE INDEX IF NOT EXISTS idx_risk_assessments_approval_recommendation ON risk_assessments(approval_recommendation);
 CREATE INDEX IF NOT EXISTS idx_risk_assessments_created_at ON risk_assessments(created_at);
+CREATE INDEX IF NOT EXISTS idx_rescoring_failures_job_id ON rescoring_failures(job_id);
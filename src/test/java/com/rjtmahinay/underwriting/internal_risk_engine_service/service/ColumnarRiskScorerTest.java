@@ -0,0 +1,190 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Both columnar scorers must produce, row by row, the factors, score, approval and ratios of the
+ * {@code BigDecimal} reference path; applications outside the columnar domain must be rejected by
+ * {@link ColumnarLoanBatch} so that they are scored one by one.
+ */
+class ColumnarRiskScorerTest {
+
+    private static final long SEED = 20240618L;
+    // Not a multiple of any vector length, so the scalar tail is covered too
+    private static final int APPLICATIONS = 50_003;
+
+    private RiskScoringService reference;
+    private CompiledRuleSet rules;
+
+    @BeforeEach
+    void setUp() {
+        RiskEngineProperties properties = new RiskEngineProperties();
+        properties.getScoring().setEngine(RiskEngineProperties.ScoringEngine.BIG_DECIMAL);
+        properties.getScoring().getMemo().setEnabled(false);
+        ScoringRuleSetProvider provider = new ScoringRuleSetProvider(properties, new DefaultResourceLoader());
+        reference = new RiskScoringService(properties, new FixedPointRiskScorer(),
+                new ScoreMemoizer(properties, new SimpleMeterRegistry()), provider);
+        rules = provider.current();
+    }
+
+    @Test
+    void scalarMatchesReferenceOnRandomizedApplications() {
+        assertMatchesReference(new ScalarColumnarRiskScorer(), randomApplications());
+    }
+
+    @Test
+    void vectorMatchesReferenceOnRandomizedApplications() {
+        assertThat(VectorColumnarRiskScorer.isSupported()).isTrue();
+        assertMatchesReference(new VectorColumnarRiskScorer(), randomApplications());
+    }
+
+    @Test
+    void scalarMatchesReferenceOnBandEdges() {
+        assertMatchesReference(new ScalarColumnarRiskScorer(), bandEdgeApplications());
+    }
+
+    @Test
+    void vectorMatchesReferenceOnBandEdges() {
+        assertMatchesReference(new VectorColumnarRiskScorer(), bandEdgeApplications());
+    }
+
+    @Test
+    void rejectsApplicationsOutsideTheColumnarDomain() {
+        List<LoanApplication> outside = List.of(
+                application().annualIncome(new BigDecimal("75000.125")).build(),
+                application().loanAmount(new BigDecimal("1E+17")).build(),
+                application().creditScore(-1).build(),
+                application().creditScore(Integer.MIN_VALUE).build(),
+                application().employmentYears(-1).build(),
+                application().monthlyDebtPayments(new BigDecimal("-0.01")).build());
+
+        ColumnarLoanBatch batch = new ColumnarLoanBatch(1);
+        for (LoanApplication application : outside) {
+            assertThatThrownBy(() -> batch.set(0, application))
+                    .as("columnar row of %s", application)
+                    .isInstanceOf(IllegalArgumentException.class);
+            // Left to the reference path, which still scores it
+            assertThat(reference.calculateRiskAssessment(application)).isNotNull();
+        }
+        // The reference throws on a zero loan amount; the columnar domain excludes it
+        assertThatThrownBy(() -> batch.set(0, application().loanAmount(BigDecimal.ZERO).build()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void assertMatchesReference(ColumnarRiskScorer scorer, List<LoanApplication> applications) {
+        ColumnarLoanBatch batch = ColumnarLoanBatch.of(applications);
+        ColumnarRiskScores scores = new ColumnarRiskScores(batch.size());
+        scorer.score(batch, scores, rules);
+
+        for (int i = 0; i < applications.size(); i++) {
+            LoanApplication application = applications.get(i);
+            RiskAssessment expected = reference.calculateRiskAssessment(application);
+            String row = scorer.getClass().getSimpleName() + " row " + i + " of " + application;
+            assertThat(scores.getCreditScoreFactors()[i]).as("credit score factor, %s", row).isEqualTo(expected.getCreditScoreFactor());
+            assertThat(scores.getIncomeFactors()[i]).as("income factor, %s", row).isEqualTo(expected.getIncomeFactor());
+            assertThat(scores.getEmploymentFactors()[i]).as("employment factor, %s", row).isEqualTo(expected.getEmploymentFactor());
+            assertThat(scores.getCollateralFactors()[i]).as("collateral factor, %s", row).isEqualTo(expected.getCollateralFactor());
+            assertThat(scores.getLoanTypeFactors()[i]).as("loan type factor, %s", row).isEqualTo(expected.getLoanTypeFactor());
+            assertThat(scores.getRiskScores()[i]).as("risk score, %s", row).isEqualTo(expected.getRiskScore());
+            assertThat(scores.getApprovalRecommendations()[i]).as("approval, %s", row).isEqualTo(expected.getApprovalRecommendation());
+            // Basis points are the unscaled value of the ratio; the reference may store zero at scale 0
+            assertThat(BigDecimal.valueOf(scores.getDebtToIncomeBasisPoints()[i], 4))
+                    .as("debt-to-income, %s", row).isEqualByComparingTo(expected.getDebtToIncomeRatio());
+            assertThat(BigDecimal.valueOf(scores.getLoanToValueBasisPoints()[i], 4))
+                    .as("loan-to-value, %s", row).isEqualByComparingTo(expected.getLoanToValueRatio());
+        }
+    }
+
+    private static List<LoanApplication> randomApplications() {
+        Random random = new Random(SEED);
+        LoanType[] loanTypes = LoanType.values();
+        List<LoanApplication> applications = new ArrayList<>(APPLICATIONS);
+        for (int i = 0; i < APPLICATIONS; i++) {
+            applications.add(LoanApplication.builder()
+                    .id((long) i)
+                    .loanType(loanTypes[random.nextInt(loanTypes.length)])
+                    .annualIncome(cents(1 + random.nextInt(200_000_000)))
+                    .loanAmount(cents(1 + random.nextInt(500_000_000)))
+                    .creditScore(random.nextInt(20) == 0 ? null : random.nextInt(900))
+                    .employmentYears(random.nextInt(20) == 0 ? null : random.nextInt(45))
+                    .monthlyDebtPayments(random.nextInt(25) == 0 ? null : cents(random.nextInt(6_000_000)))
+                    .downPayment(random.nextInt(25) == 0 ? null : cents(random.nextInt(100_000_000)))
+                    .hasCollateral(random.nextInt(20) == 0 ? null : random.nextInt(3) > 0)
+                    .collateralValue(random.nextInt(25) == 0 ? null : cents(random.nextInt(800_000_000)))
+                    .build());
+        }
+        return applications;
+    }
+
+    /**
+     * Values on, just below and just above every band threshold, and ratios that round half up onto one.
+     */
+    private List<LoanApplication> bandEdgeApplications() {
+        List<LoanApplication> applications = new ArrayList<>();
+        for (long threshold : rules.creditScoreBands().thresholds()) {
+            for (long value = threshold - 1; value <= threshold + 1; value++) {
+                applications.add(application().creditScore((int) value).build());
+            }
+        }
+        for (long threshold : rules.employmentBands().thresholds()) {
+            for (long value = Math.max(0, threshold - 1); value <= threshold + 1; value++) {
+                applications.add(application().employmentYears((int) value).build());
+            }
+        }
+        // With a loan of 200.00 a ratio of (2t - 1) cents is exactly t - 0.5 basis points
+        BigDecimal tieLoan = cents(20_000);
+        for (long threshold : rules.incomeToLoanBands().thresholds()) {
+            applications.add(application().loanAmount(tieLoan).annualIncome(cents(2 * threshold - 1)).build());
+            applications.add(application().loanAmount(tieLoan).annualIncome(cents(2 * threshold - 2)).build());
+            for (long delta = -1; delta <= 1; delta++) {
+                applications.add(application().annualIncome(cents(threshold * 1_000 + delta)).build());
+            }
+        }
+        for (long threshold : rules.collateralToLoanBands().thresholds()) {
+            applications.add(application().loanAmount(tieLoan).collateralValue(cents(2 * threshold - 1)).build());
+            applications.add(application().loanAmount(tieLoan).collateralValue(cents(2 * threshold - 2)).build());
+            for (long delta = -1; delta <= 1; delta++) {
+                applications.add(application().collateralValue(cents(threshold * 1_000 + delta)).build());
+            }
+        }
+        applications.add(application().creditScore(null).employmentYears(null).monthlyDebtPayments(null)
+                .downPayment(null).hasCollateral(null).collateralValue(null).build());
+        applications.add(application().hasCollateral(true).collateralValue(null).build());
+        applications.add(application().hasCollateral(false).build());
+        return applications;
+    }
+
+    // Loan amount of 100000.00, so a ratio threshold t in basis points is an amount of t * 10.00
+    private static LoanApplication.LoanApplicationBuilder application() {
+        return LoanApplication.builder()
+                .id(1L)
+                .loanType(LoanType.MORTGAGE)
+                .annualIncome(new BigDecimal("75000.00"))
+                .loanAmount(new BigDecimal("100000.00"))
+                .creditScore(720)
+                .employmentYears(5)
+                .monthlyDebtPayments(new BigDecimal("1200.00"))
+                .downPayment(new BigDecimal("50000.00"))
+                .hasCollateral(true)
+                .collateralValue(new BigDecimal("300000.00"));
+    }
+
+    private static BigDecimal cents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
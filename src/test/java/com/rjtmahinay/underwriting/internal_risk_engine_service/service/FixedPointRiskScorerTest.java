@@ -0,0 +1,168 @@
+package com.rjtmahinay.underwriting.internal_risk_engine_service.service;
+
+import com.rjtmahinay.underwriting.internal_risk_engine_service.config.RiskEngineProperties;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanApplication;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.LoanType;
+import com.rjtmahinay.underwriting.internal_risk_engine_service.model.RiskAssessment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The fixed-point kernel must produce exactly the assessment of the {@code BigDecimal} reference path, or
+ * decline with {@code null} so that the reference path is used.
+ */
+class FixedPointRiskScorerTest {
+
+    private static final long SEED = 20240611L;
+    private static final int APPLICATIONS = 200_000;
+
+    private final FixedPointRiskScorer fixedPointRiskScorer = new FixedPointRiskScorer();
+    private CompiledRuleSet rules;
+    private RiskScoringService reference;
+    private RiskScoringService fixedPoint;
+
+    @BeforeEach
+    void setUp() {
+        reference = riskScoringService(RiskEngineProperties.ScoringEngine.BIG_DECIMAL);
+        fixedPoint = riskScoringService(RiskEngineProperties.ScoringEngine.FIXED_POINT);
+        rules = new ScoringRuleSetProvider(new RiskEngineProperties(), new DefaultResourceLoader()).current();
+    }
+
+    @Test
+    void matchesReferenceOnRandomizedApplications() {
+        Random random = new Random(SEED);
+        int scored = 0;
+        for (int i = 0; i < APPLICATIONS; i++) {
+            LoanApplication application = randomApplication(random, i);
+            RiskAssessment expected = reference.calculateRiskAssessment(application);
+            RiskAssessment actual = fixedPointRiskScorer.score(application, rules);
+            if (actual != null) {
+                assertSameAssessment(actual, expected, application);
+                scored++;
+            }
+        }
+        // Nearly every application generated is in the fixed-point domain
+        assertThat(scored).isGreaterThan(APPLICATIONS * 9 / 10);
+    }
+
+    @Test
+    void declinesAmountsOutsideTheFixedPointDomainAndFallsBackToReference() {
+        LoanApplication threeDecimals = application().annualIncome(new BigDecimal("75000.125")).build();
+        LoanApplication tooPrecise = application().loanAmount(new BigDecimal("1234567890123456")).build();
+        LoanApplication negativeScale = application().collateralValue(new BigDecimal("3E+5")).build();
+
+        for (LoanApplication application : new LoanApplication[]{threeDecimals, tooPrecise, negativeScale}) {
+            assertThat(fixedPointRiskScorer.score(application, rules)).isNull();
+            assertSameAssessment(fixedPoint.calculateRiskAssessment(application),
+                    reference.calculateRiskAssessment(application), application);
+        }
+    }
+
+    @Test
+    void declinesZeroLoanAmountOnWhichReferenceThrows() {
+        LoanApplication application = application().loanAmount(BigDecimal.ZERO).build();
+
+        assertThat(fixedPointRiskScorer.score(application, rules)).isNull();
+        assertThatThrownBy(() -> reference.calculateRiskAssessment(application)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> fixedPoint.calculateRiskAssessment(application)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void matchesReferenceWithoutCreditScore() {
+        // Only null is a missing score; no real score may be mistaken for it
+        for (Integer creditScore : new Integer[]{null, Integer.MIN_VALUE, Integer.MIN_VALUE + 1, -1, 0, 599, 600, 750,
+                Integer.MAX_VALUE}) {
+            LoanApplication application = application().creditScore(creditScore).build();
+            assertSameAssessment(fixedPointRiskScorer.score(application, rules),
+                    reference.calculateRiskAssessment(application), application);
+        }
+    }
+
+    @Test
+    void matchesReferenceWithMissingOptionalInputs() {
+        LoanApplication application = application()
+                .employmentYears(null)
+                .monthlyDebtPayments(null)
+                .downPayment(null)
+                .hasCollateral(null)
+                .collateralValue(null)
+                .build();
+
+        assertSameAssessment(fixedPointRiskScorer.score(application, rules),
+                reference.calculateRiskAssessment(application), application);
+    }
+
+    private static void assertSameAssessment(RiskAssessment actual, RiskAssessment expected, LoanApplication application) {
+        assertThat(actual).as("fixed-point assessment of %s", application).isNotNull();
+        // Compared field by field, including the scale of every BigDecimal, except the creation time
+        assertThat(actual)
+                .as("assessment of %s", application)
+                .usingRecursiveComparison()
+                .ignoringFields("createdAt")
+                .isEqualTo(expected);
+    }
+
+    private static LoanApplication.LoanApplicationBuilder application() {
+        return LoanApplication.builder()
+                .id(1L)
+                .loanType(LoanType.MORTGAGE)
+                .annualIncome(new BigDecimal("75000.00"))
+                .loanAmount(new BigDecimal("250000.00"))
+                .creditScore(720)
+                .employmentYears(5)
+                .monthlyDebtPayments(new BigDecimal("1200.00"))
+                .downPayment(new BigDecimal("50000.00"))
+                .hasCollateral(true)
+                .collateralValue(new BigDecimal("300000.00"));
+    }
+
+    private static LoanApplication randomApplication(Random random, long id) {
+        LoanType[] loanTypes = LoanType.values();
+        boolean secured = random.nextInt(3) > 0;
+        return LoanApplication.builder()
+                .id(id)
+                .loanType(loanTypes[random.nextInt(loanTypes.length)])
+                .annualIncome(orNull(random, amount(random, 1, 2_000_000)))
+                .loanAmount(amount(random, 1, 5_000_000))
+                .creditScore(random.nextInt(20) == 0 ? null : 250 + random.nextInt(650))
+                .employmentYears(random.nextInt(20) == 0 ? null : random.nextInt(45))
+                .monthlyDebtPayments(orNull(random, amount(random, 0, 60_000)))
+                .downPayment(orNull(random, amount(random, 0, 1_000_000)))
+                .hasCollateral(random.nextInt(20) == 0 ? null : secured)
+                .collateralValue(orNull(random, amount(random, 0, 8_000_000)))
+                .build();
+    }
+
+    /**
+     * An amount with zero to two decimals, including ratios that land exactly on a band threshold or a
+     * rounding tie.
+     */
+    private static BigDecimal amount(Random random, long min, long max) {
+        long cents = min * 100 + (long) (random.nextDouble() * (max - min) * 100);
+        int scale = random.nextInt(3);
+        BigDecimal amount = BigDecimal.valueOf(cents, 2);
+        return scale == 2 ? amount : amount.setScale(scale, RoundingMode.DOWN).max(BigDecimal.valueOf(min));
+    }
+
+    private static BigDecimal orNull(Random random, BigDecimal value) {
+        return random.nextInt(25) == 0 ? null : value;
+    }
+
+    private static RiskScoringService riskScoringService(RiskEngineProperties.ScoringEngine engine) {
+        RiskEngineProperties properties = new RiskEngineProperties();
+        properties.getScoring().setEngine(engine);
+        properties.getScoring().getMemo().setEnabled(false);
+        return new RiskScoringService(properties, new FixedPointRiskScorer(),
+                new ScoreMemoizer(properties, new SimpleMeterRegistry()),
+                new ScoringRuleSetProvider(properties, new DefaultResourceLoader()));
+    }
+}